@@ -0,0 +1,314 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of CrontabScheduler.
+ *
+ * CrontabScheduler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * CrontabScheduler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CrontabScheduler. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.crontab;
+
+import org.ini4j.Ini;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The AdmissionControl limits the rate of job starts with a token bucket and the number of starts
+ * waiting for a token. It is applied in front of the {@link WorkerPools}, so a misconfigured job
+ * like 0/1 * * ? * * * can't start an unlimited number of threads.
+ * <p>
+ * It is configured in the section [admission] of the ini file, like:
+ * <pre>
+ * [admission]
+ * rate = 2
+ * burst = 5
+ * queue = 100
+ * action = delay
+ * </pre>
+ * rate is the number of starts per second, burst the number of starts allowed at once
+ * and queue the maximum number of starts waiting for a token.
+ * Without configuration every start is admitted immediately.
+ */
+public class AdmissionControl {
+
+    private final static Logger log = LoggerFactory.getLogger(AdmissionControl.class);
+
+    /**
+     * What happens with a start if no token is available.
+     */
+    public enum Action {
+
+        /**
+         * The start waits for a token, it's rejected if the queue is full.
+         */
+        DELAY,
+
+        /**
+         * The start is rejected.
+         */
+        DROP,
+
+        /**
+         * The start waits for a token, a further start of the same job is coalesced into the waiting one.
+         */
+        COALESCE;
+
+        /**
+         * Gets an action from a string representation.
+         *
+         * @param value the string representation, like drop or COALESCE
+         * @return the action, DELAY if value is null
+         */
+        public static Action getFromString(String value) {
+            if (value == null) return DELAY;
+            return valueOf(value.trim().toUpperCase());
+        }
+    }
+
+    private static final long RETRY_MILLIS = 100;
+
+    private final double rate;
+    private final double burst;
+    private final int maxQueue;
+    private final Action action;
+
+    private final ArrayDeque<Pending> queue = new ArrayDeque<>();
+    private final AtomicLong rejected = new AtomicLong();
+    private double tokens;
+    private long lastRefill;
+    private Thread releaser;
+    private boolean shutdown = false;
+
+    /**
+     * Constructs an AdmissionControl which admits every start immediately.
+     */
+    public AdmissionControl() {
+        this(0, 0, Integer.MAX_VALUE, Action.DELAY);
+    }
+
+    /**
+     * Constructs an AdmissionControl.
+     *
+     * @param rate     the number of starts per second, 0 for unlimited
+     * @param burst    the number of starts allowed at once, at least 1
+     * @param maxQueue the maximum number of starts waiting for a token
+     * @param action   what happens with a start if no token is available
+     */
+    public AdmissionControl(double rate, int burst, int maxQueue, Action action) {
+        if (rate < 0) throw new RuntimeException("Admission rate must not be negative");
+        if (maxQueue < 0) throw new RuntimeException("Admission queue must not be negative");
+        this.rate = rate;
+        this.burst = Math.max(burst, 1);
+        this.maxQueue = maxQueue;
+        this.action = action;
+        this.tokens = this.burst;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * Constructs an AdmissionControl from the section [admission] of an ini file.
+     *
+     * @param section the admission section, can be null
+     * @return the AdmissionControl
+     */
+    public static AdmissionControl getFromSection(Ini.Section section) {
+        if (section == null) return new AdmissionControl();
+        double rate = Double.parseDouble(section.get("rate", "0").trim());
+        int burst = Integer.parseInt(section.get("burst", Integer.toString((int) Math.ceil(rate))).trim());
+        int maxQueue = Integer.parseInt(section.get("queue", Integer.toString(Integer.MAX_VALUE)).trim());
+        Action action = Action.getFromString(section.get("action"));
+        log.debug("Admission with {} starts per second, burst {}, queue {} and action {}", rate, burst, maxQueue, action);
+        return new AdmissionControl(rate, burst, maxQueue, action);
+    }
+
+    /**
+     * Retrieves an executor which admits the tasks of the given job before they are passed to the target executor.
+     *
+     * @param job    the job
+     * @param target the executor which runs the admitted tasks
+     * @return the executor
+     */
+    public Executor executor(Cronjob job, Executor target) {
+        if (rate == 0) return target;
+        return task -> admit(job, task, target);
+    }
+
+    /**
+     * Admits a start of the given job.
+     *
+     * @param job    the job
+     * @param task   the task to start
+     * @param target the executor which runs the task
+     * @throws RejectedExecutionException if the start is dropped, coalesced or the queue is full
+     */
+    public void admit(Cronjob job, Runnable task, Executor target) {
+        synchronized (queue) {
+            if (shutdown) throw reject(job, "admission is shut down");
+            refill();
+            if (!queue.isEmpty() || tokens < 1) {
+                if (action == Action.DROP) throw reject(job, "start rate exceeded");
+                if (action == Action.COALESCE && contains(job)) throw reject(job, "coalesced into a waiting start");
+                if (queue.size() >= maxQueue) throw reject(job, "admission queue is full");
+                queue.add(new Pending(job, task, target));
+                if (releaser == null) {
+                    releaser = new Thread(this::release, "AdmissionControl");
+                    releaser.setDaemon(true);
+                    releaser.start();
+                }
+                queue.notifyAll();
+                return;
+            }
+            tokens--;
+        }
+        target.execute(task);
+    }
+
+    private boolean contains(Cronjob job) {
+        for (Pending pending : queue) {
+            if (pending.job == job) return true;
+        }
+        return false;
+    }
+
+    private RejectedExecutionException reject(Cronjob job, String reason) {
+        rejected.incrementAndGet();
+        log.warn("Start of job {} rejected, {}", job.getName(), reason);
+        return new RejectedExecutionException("Start of job " + job.getName() + " rejected, " + reason);
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(burst, tokens + (now - lastRefill) * rate / TimeUnit.SECONDS.toNanos(1));
+        lastRefill = now;
+    }
+
+    private void release() {
+        while (true) {
+            Pending pending;
+            synchronized (queue) {
+                try {
+                    while (true) {
+                        if (queue.isEmpty()) {
+                            if (shutdown) return;
+                            queue.wait();
+                            continue;
+                        }
+                        refill();
+                        if (tokens >= 1) break;
+                        // sleep until the next token is available
+                        queue.wait(Math.max(1, (long) Math.ceil((1 - tokens) * 1000 / rate)));
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+                pending = queue.poll();
+                tokens--;
+            }
+
+            try {
+                pending.target.execute(pending.task);
+            } catch (RejectedExecutionException e) {
+                boolean dropped;
+                synchronized (queue) {
+                    dropped = shutdown;
+                    if (!dropped) {
+                        // the pool is busy, the start goes back to the head of the queue
+                        queue.addFirst(pending);
+                        tokens = Math.min(burst, tokens + 1);
+                        try {
+                            queue.wait(RETRY_MILLIS);
+                        } catch (InterruptedException ie) {
+                            return;
+                        }
+                    }
+                }
+                // outside the lock, the job may submit its next execution
+                if (dropped) pending.reject(reject(pending.job, "dropped at shutdown"));
+            }
+        }
+    }
+
+    /**
+     * @return the number of starts waiting for a token
+     */
+    public int getQueueDepth() {
+        synchronized (queue) {
+            return queue.size();
+        }
+    }
+
+    /**
+     * @return the number of rejected starts
+     */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    /**
+     * Stops admitting new starts. Waiting starts are passed to their executors without rate limit,
+     * a start which its executor rejects is dropped and told so if it is {@link Rejectable}.
+     */
+    public void shutdown() {
+        Pending[] waiting;
+        synchronized (queue) {
+            if (shutdown) return;
+            shutdown = true;
+            waiting = queue.toArray(new Pending[0]);
+            queue.clear();
+            queue.notifyAll();
+        }
+        for (Pending pending : waiting) {
+            try {
+                pending.target.execute(pending.task);
+            } catch (RejectedExecutionException e) {
+                pending.reject(reject(pending.job, "dropped at shutdown"));
+            }
+        }
+    }
+
+    /**
+     * A task which is told if its start is dropped after it was queued,
+     * so the caller which waits for it doesn't wait forever.
+     */
+    public interface Rejectable extends Runnable {
+
+        /**
+         * Called instead of {@link #run()} if the start is dropped.
+         *
+         * @param e the reason
+         */
+        void rejected(RejectedExecutionException e);
+    }
+
+    private static class Pending {
+        final Cronjob job;
+        final Runnable task;
+        final Executor target;
+
+        Pending(Cronjob job, Runnable task, Executor target) {
+            this.job = job;
+            this.task = task;
+            this.target = target;
+        }
+
+        void reject(RejectedExecutionException e) {
+            if (task instanceof Rejectable) ((Rejectable) task).rejected(e);
+        }
+    }
+}
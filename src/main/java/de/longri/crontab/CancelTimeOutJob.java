@@ -22,7 +22,10 @@ import javafx.beans.property.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.LocalDateTime;
+import java.util.Set;
 import java.util.concurrent.*;
+import java.util.function.BooleanSupplier;
 
 public abstract class CancelTimeOutJob implements Runnable {
 
@@ -33,10 +36,10 @@ public abstract class CancelTimeOutJob implements Runnable {
     final TimeUnit TIME_OUT_UNIT;
     protected Logger log;
     String JOB_NAME;
-    ExecutorService executor;
-    Future<String> future;
-    long workTimeStart;
-    Duration workDuration = null;
+    // the duration of the last run
+    volatile Duration workDuration = null;
+    // the runs which are started and not finished
+    private final Set<Run> runs = ConcurrentHashMap.newKeySet();
     private final BooleanProperty readyProperty = new SimpleBooleanProperty(false);
 
     protected CancelTimeOutJob(String jobName) {
@@ -70,65 +73,145 @@ public abstract class CancelTimeOutJob implements Runnable {
 
 
     public final void run() {
+        run(TIME_OUT, TIME_OUT_UNIT);
+    }
+
+    /**
+     * Runs this job with the given timeout instead of the timeout of the job.
+     * A run which runs into the timeout or is canceled returns, the abort is reported by
+     * {@link #workTimeOut()} and {@link #workCanceled()}.
+     *
+     * @param timeOut     the timeout value
+     * @param timeOutUnit the time unit of the timeout, or null to run without timeout
+     */
+    public final void run(long timeOut, TimeUnit timeOutUnit) {
+        try {
+            run(timeOut, timeOutUnit, new Run());
+        } catch (JobAbortedException e) {
+            log.debug("Work aborted: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Runs this job with the given timeout as the given run, which can be canceled by {@link #cancel(Run)}
+     * before and while it runs. Every run keeps its own state, so runs of the same job can run side by side.
+     * A run which doesn't finish, because it runs into the timeout or is canceled, throws a {@link JobAbortedException}.
+     *
+     * @param timeOut     the timeout value
+     * @param timeOutUnit the time unit of the timeout, or null to run without timeout
+     * @param run         the run, with the duration after the run
+     */
+    public final void run(long timeOut, TimeUnit timeOutUnit, Run run) {
 
-        executor = Executors.newSingleThreadExecutor();
-        future = executor.submit(new TimeOutTask());
+        ExecutorService executor = JobThreads.newSingleThreadExecutor();
         Throwable runtimeException = null;
-        workTimeStart = System.currentTimeMillis();
-        if (TIME_OUT_UNIT == null) {
-            try {
+        long workTimeStart = System.currentTimeMillis();
+        runs.add(run);
+        try {
+            Future<String> future = run.start(executor, new TimeOutTask(run));
+            if (timeOutUnit == null) {
                 log.debug("Work Started with out timeout");
                 log.debug(future.get(Long.MAX_VALUE, TimeUnit.DAYS));
-                calcWorkDuration();
-                log.debug("Work Finished after {}!", workDuration);
-                workFinished();
-            } catch (TimeoutException | InterruptedException | ExecutionException | CancellationException e) {
-                future.cancel(true);
-                calcWorkDuration();
-                log.debug("Work Terminated after {}!", workDuration);
-                if (e instanceof ExecutionException) runtimeException = e.getCause();
-            }
-            executor.shutdownNow();
-        } else {
-            try {
-                log.debug("Work Started with a timeout value of {} {}", TIME_OUT, TIME_OUT_UNIT);
-                log.debug(future.get(TIME_OUT, TIME_OUT_UNIT));
-                calcWorkDuration();
-                log.debug("Work Finished after {}!", workDuration);
-                workFinished();
-            } catch (TimeoutException | InterruptedException | ExecutionException | CancellationException e) {
-                future.cancel(true);
-                calcWorkDuration();
-                log.debug("Work Terminated after {}!", workDuration);
-                if (e instanceof TimeoutException) workTimeOut();
-                if (e instanceof ExecutionException) runtimeException = e.getCause();
+            } else {
+                log.debug("Work Started with a timeout value of {} {}", timeOut, timeOutUnit);
+                log.debug(future.get(timeOut, timeOutUnit));
             }
+            calcWorkDuration(run, workTimeStart);
+            log.debug("Work Finished after {}!", run.duration);
+            workFinished();
+        } catch (TimeoutException | InterruptedException | ExecutionException | CancellationException e) {
+            run.cancel();
+            calcWorkDuration(run, workTimeStart);
+            log.debug("Work Terminated after {}!", run.duration);
+            if (e instanceof TimeoutException) workTimeOut();
+            runtimeException = abortCause(e);
+        } finally {
+            runs.remove(run);
             executor.shutdownNow();
         }
 
-        executor = null;
-        future = null;
         workReady();
+        if (runtimeException instanceof JobAbortedException) throw (JobAbortedException) runtimeException;
         if (runtimeException != null) {
             runtimeException.printStackTrace();
             throw new RuntimeException(runtimeException);
         }
     }
 
+    private Throwable abortCause(Exception e) {
+        if (e instanceof ExecutionException) return e.getCause();
+        if (e instanceof InterruptedException) Thread.currentThread().interrupt();
+        return new JobAbortedException(JOB_NAME, e instanceof TimeoutException);
+    }
+
+    /**
+     * Runs this job with the given executor.
+     * The returned future completes with the work duration as soon as the job is ready,
+     * or exceptionally if the work throws an exception or the executor rejects the job.
+     *
+     * @param executor the executor to run the job
+     * @return the completion of this run
+     */
+    public CompletableFuture<Duration> runAsync(Executor executor) {
+        CompletableFuture<Duration> completion = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    Run run = new Run();
+                    run(TIME_OUT, TIME_OUT_UNIT, run);
+                    completion.complete(run.getDuration());
+                } catch (Throwable t) {
+                    completion.completeExceptionally(t);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            completion.completeExceptionally(e);
+        }
+        return completion;
+    }
+
+    /**
+     * Cancels all running runs of this job.
+     */
     public void cancel() {
-        if (executor == null || future == null) return;
-        future.cancel(true);
+        if (runs.isEmpty()) return;
+        for (Run run : runs) {
+            run.cancel();
+        }
+        log.debug("Work canceled.");
+        workCanceled();
+    }
+
+    /**
+     * Cancels the given run of this job. A run which isn't started yet doesn't start.
+     *
+     * @param run the run to cancel
+     */
+    public void cancel(Run run) {
+        run.cancel();
         log.debug("Work canceled.");
         workCanceled();
     }
 
-    private void calcWorkDuration() {
+    private void calcWorkDuration(Run run, long workTimeStart) {
         long time = System.currentTimeMillis() - workTimeStart;
-        workDuration = new Duration(time, true);
+        run.duration = new Duration(time, true);
+        workDuration = run.duration;
     }
 
     protected abstract void work() throws RuntimeException, Exception;
 
+    /**
+     * Does the work of the given run. The default calls {@link #work()}, a job which names its results
+     * after the execution time or must not publish the results of a stale run overrides it.
+     *
+     * @param run the run, with its execution time
+     * @throws Exception if the work fails
+     */
+    protected void work(Run run) throws RuntimeException, Exception {
+        work();
+    }
+
     private void workReady() {
         readyProperty.set(true);
     }
@@ -153,7 +236,7 @@ public abstract class CancelTimeOutJob implements Runnable {
     }
 
     public void startNewThread() {
-        new Thread(this).start();
+        JobThreads.start(this, "Job-" + JOB_NAME);
     }
 
     protected void updateMessage(String message) {
@@ -169,9 +252,15 @@ public abstract class CancelTimeOutJob implements Runnable {
     }
 
     class TimeOutTask implements Callable<String> {
+        private final Run run;
+
+        TimeOutTask(Run run) {
+            this.run = run;
+        }
+
         @Override
         public String call() throws Exception {
-            work();
+            work(run);
             return "Ready!";
         }
     }
@@ -200,4 +289,75 @@ public abstract class CancelTimeOutJob implements Runnable {
     public String getProgressMsg() {
         return progressMsgProperty.get();
     }
+
+    /**
+     * A single run of a job. It is created before the run starts, so it can be canceled before and while it runs.
+     */
+    public static final class Run {
+        private final LocalDateTime fireTime;
+        private final BooleanSupplier current;
+        private Future<String> future;
+        private boolean canceled;
+        private volatile Duration duration;
+
+        /**
+         * Constructs a run without execution time.
+         */
+        public Run() {
+            this(null, null);
+        }
+
+        /**
+         * Constructs a run for the given execution time.
+         *
+         * @param fireTime the execution time, or null
+         * @param current  checks if the run still owns its execution time, null if it always does
+         */
+        public Run(LocalDateTime fireTime, BooleanSupplier current) {
+            this.fireTime = fireTime;
+            this.current = current;
+        }
+
+        /**
+         * @return the execution time, or null if the run has none
+         */
+        public LocalDateTime getFireTime() {
+            return fireTime;
+        }
+
+        /**
+         * Checks if the run still owns its execution time. A newer execution of the same job, for example of another
+         * scheduler process after this one was taken for dead, makes it stale. A stale run must not publish any result.
+         *
+         * @return true if no newer execution is registered
+         */
+        public boolean isCurrent() {
+            return current == null || current.getAsBoolean();
+        }
+
+        private synchronized Future<String> start(ExecutorService executor, Callable<String> task) {
+            if (canceled) throw new CancellationException();
+            future = executor.submit(task);
+            return future;
+        }
+
+        private synchronized void cancel() {
+            canceled = true;
+            if (future != null) future.cancel(true);
+        }
+
+        /**
+         * @return true if this run is canceled
+         */
+        public synchronized boolean isCanceled() {
+            return canceled;
+        }
+
+        /**
+         * @return the duration of the work, or null if the run isn't finished
+         */
+        public Duration getDuration() {
+            return duration;
+        }
+    }
 }
@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of CrontabScheduler.
+ *
+ * CrontabScheduler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * CrontabScheduler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CrontabScheduler. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.crontab;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.function.Consumer;
+
+/**
+ * The ClusterMembership keeps track of the live scheduler nodes at a shared directory,
+ * which stands in for a coordination service.
+ * Every node writes a heartbeat file with its current time, a node is dead if its heartbeat
+ * is older than the lease timeout. The live nodes form the {@link ShardRing} of the cluster.
+ */
+public class ClusterMembership {
+
+    private final static Logger log = LoggerFactory.getLogger(ClusterMembership.class);
+
+    /**
+     * The extension of the heartbeat files.
+     */
+    static final String EXTENSION = ".node";
+
+    private final File dir;
+    private final String nodeId;
+    private final long leaseMillis;
+    private Thread thread;
+    private boolean running = false;
+    private ShardRing ring;
+
+    /**
+     * Constructs a ClusterMembership for this node, the directory is created if it doesn't exist.
+     *
+     * @param dir         the shared cluster directory
+     * @param nodeId      the unique id of this node
+     * @param leaseMillis the time after which a node without heartbeat is dead
+     */
+    public ClusterMembership(File dir, String nodeId, long leaseMillis) {
+        if (nodeId == null || !nodeId.matches("[A-Za-z0-9._-]+"))
+            throw new RuntimeException("Node id must be a valid file name: " + nodeId);
+        if (leaseMillis < 3) throw new RuntimeException("Node lease is too short");
+        this.dir = dir.getAbsoluteFile();
+        this.nodeId = nodeId;
+        this.leaseMillis = leaseMillis;
+        if (!this.dir.isDirectory() && !this.dir.mkdirs())
+            throw new RuntimeException("Can't create cluster directory " + this.dir);
+    }
+
+    /**
+     * @return the id of this node
+     */
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Writes the heartbeat of this node.
+     */
+    public void heartbeat() {
+        File file = new File(dir, nodeId + EXTENSION);
+        File tmp = new File(dir, nodeId + EXTENSION + ".tmp");
+        try {
+            // replace the file at once, so nobody reads a half written heartbeat
+            Files.writeString(tmp.toPath(), Long.toString(System.currentTimeMillis()), StandardCharsets.UTF_8);
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.error("Can't write heartbeat of node {}", nodeId, e);
+        }
+    }
+
+    /**
+     * Retrieves the live nodes, this node is always alive.
+     *
+     * @return the ids of the nodes with a heartbeat inside of the lease timeout
+     */
+    public ArrayList<String> getLiveNodes() {
+        ArrayList<String> nodes = new ArrayList<>();
+        nodes.add(nodeId);
+        File[] files = dir.listFiles((d, name) -> name.endsWith(EXTENSION));
+        if (files == null) return nodes;
+        long now = System.currentTimeMillis();
+        for (File file : files) {
+            String id = file.getName().substring(0, file.getName().length() - EXTENSION.length());
+            if (id.equals(nodeId)) continue;
+            try {
+                long beat = Long.parseLong(Files.readString(file.toPath(), StandardCharsets.UTF_8).trim());
+                if (now - beat <= leaseMillis) nodes.add(id);
+            } catch (IOException | NumberFormatException e) {
+                log.debug("Can't read heartbeat {}", file, e);
+            }
+        }
+        return nodes;
+    }
+
+    /**
+     * Writes the heartbeat and retrieves the current ring of the live nodes.
+     *
+     * @return the ring
+     */
+    public synchronized ShardRing update() {
+        heartbeat();
+        ShardRing newRing = new ShardRing(getLiveNodes());
+        if (ring == null || !ring.getNodes().equals(newRing.getNodes())) {
+            log.info("Node {} sees the nodes {}", nodeId, newRing.getNodes());
+            ring = newRing;
+        }
+        return ring;
+    }
+
+    /**
+     * Starts the heartbeat thread, which writes the heartbeat three times per lease timeout
+     * and calls the listener whenever the live nodes change.
+     *
+     * @param listener the listener for the new rings
+     */
+    public synchronized void start(Consumer<ShardRing> listener) {
+        if (running) return;
+        running = true;
+        listener.accept(update());
+        thread = new Thread(() -> {
+            ShardRing last = ring;
+            while (true) {
+                synchronized (this) {
+                    try {
+                        wait(leaseMillis / 3);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    if (!running) return;
+                }
+                ShardRing current = update();
+                if (current != last) {
+                    last = current;
+                    listener.accept(current);
+                }
+            }
+        }, "ClusterMembership");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops the heartbeat thread and removes the heartbeat of this node,
+     * so the other nodes take over its jobs at once.
+     */
+    public void stop() {
+        Thread t;
+        synchronized (this) {
+            if (!running) return;
+            running = false;
+            notifyAll();
+            t = thread;
+        }
+        try {
+            t.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!new File(dir, nodeId + EXTENSION).delete()) log.debug("No heartbeat of node {} to delete", nodeId);
+    }
+}
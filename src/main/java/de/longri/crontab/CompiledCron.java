@@ -0,0 +1,882 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of CrontabScheduler.
+ *
+ * CrontabScheduler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * CrontabScheduler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CrontabScheduler. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.crontab;
+
+import java.text.ParseException;
+import java.time.LocalDateTime;
+import java.time.zone.ZoneRules;
+import java.util.BitSet;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The CompiledCron is the parsed form of a cron expression, with the same syntax and semantics
+ * as the Quartz CronExpression:
+ * <pre>
+ * seconds minutes hours day-of-month month day-of-week [year]
+ * </pre>
+ * with the special characters * ? - , / L W and #.
+ * Like Quartz, it ignores the increment of a range of names and the characters after a name, a value or a range.
+ * Every field is compiled to a bit mask, so the next execution time is found with a few bit scans
+ * per field instead of walking calendars. Times are local wall clock times.
+ * <p>
+ * A CompiledCron is immutable and thread safe, {@link #compile(String)} shares one instance
+ * for all jobs with the same expression.
+ */
+public final class CompiledCron {
+
+    static final int SECOND = 0;
+    static final int MINUTE = 1;
+    static final int HOUR = 2;
+    static final int DAY_OF_MONTH = 3;
+    static final int MONTH = 4;
+    static final int DAY_OF_WEEK = 5;
+    static final int YEAR = 6;
+
+    private static final String[] FIELD_NAMES = {"Second", "Minute", "Hour", "Day-of-Month", "Month", "Day-of-Week", "Year"};
+    private static final int[] MIN = {0, 0, 0, 1, 1, 1, 1970};
+    private static final int[] MAX_INCREMENT = {59, 59, 23, 31, 12, 7, Integer.MAX_VALUE};
+
+    /**
+     * The first year without execution time, like Quartz it is 100 years ahead.
+     */
+    static final int MAX_YEAR = LocalDateTime.now().getYear() + 100;
+
+    private static final String[] MONTH_NAMES = {"JAN", "FEB", "MAR", "APR", "MAY", "JUN", "JUL", "AUG", "SEP", "OCT", "NOV", "DEC"};
+    private static final String[] DAY_NAMES = {"SUN", "MON", "TUE", "WED", "THU", "FRI", "SAT"};
+
+    /**
+     * The result of {@link #nextFireEpochSecond(long, ZoneRules)} if there is no further execution time.
+     */
+    public static final long NONE = Long.MIN_VALUE;
+
+    /**
+     * The interned schedules by normalized expression.
+     */
+    private static final ConcurrentHashMap<String, CompiledCron> CACHE = new ConcurrentHashMap<>();
+
+    private final String expression;
+
+    // bit i is set, if value i is allowed
+    private long seconds;
+    private long minutes;
+    private long hours;
+    private long daysOfMonth;
+    private long months;
+    private long daysOfWeek;
+    private final BitSet years = new BitSet();
+
+    // day-of-month is '?', the day-of-week rule applies
+    private boolean daysOfMonthNoSpec;
+    private boolean daysOfWeekNoSpec;
+    private boolean lastDayOfMonth;
+    private int lastDayOffset;
+    private boolean nearestWeekday;
+    private boolean lastDayOfWeek;
+    private int nthDayOfWeek;
+
+    /**
+     * Compiles a cron expression.
+     *
+     * @param expression the cron expression with 6 or 7 fields
+     * @throws ParseException if the expression isn't valid
+     */
+    public CompiledCron(String expression) throws ParseException {
+        if (expression == null) throw new ParseException("Cron expression is null", 0);
+        this.expression = normalize(expression);
+        String[] fields = this.expression.split(" ");
+        if (fields.length < 6 || fields[0].isEmpty()) throw new ParseException("Unexpected end of expression.", this.expression.length());
+        if (fields.length > 7) throw new ParseException("Too many fields: " + this.expression, 0);
+
+        for (int type = SECOND; type < fields.length; type++) {
+            String field = fields[type];
+            if (type == DAY_OF_MONTH && field.contains("L") && field.length() > 1 && field.contains(","))
+                throw new ParseException("Support for specifying 'L' and 'LW' with other days of the month is not implemented", 0);
+            if (type == DAY_OF_WEEK && field.contains("L") && field.length() > 1 && field.contains(","))
+                throw new ParseException("Support for specifying 'L' with other days of the week is not implemented", 0);
+            // like Quartz, a single nth day in a list applies to the first day of the week of the list
+            if (type == DAY_OF_WEEK && field.indexOf('#') != field.lastIndexOf('#'))
+                throw new ParseException("Support for specifying multiple \"nth\" days is not implemented.", 0);
+            for (String element : field.split(",")) {
+                parseElement(element, type);
+            }
+        }
+        if (fields.length == 6) addRange(YEAR, MIN[YEAR], MAX_YEAR, 1);
+
+        if (daysOfMonthNoSpec == daysOfWeekNoSpec)
+            throw new ParseException("Support for specifying both a day-of-week AND a day-of-month parameter is not implemented.", 0);
+    }
+
+    /**
+     * Retrieves the compiled schedule of an expression. Expressions which differ only in case and
+     * whitespace share one instance, so it is parsed once for all jobs.
+     *
+     * @param expression the cron expression with 6 or 7 fields
+     * @return the shared compiled schedule
+     * @throws ParseException if the expression isn't valid
+     */
+    public static CompiledCron compile(String expression) throws ParseException {
+        if (expression == null) throw new ParseException("Cron expression is null", 0);
+        String key = normalize(expression);
+        CompiledCron compiled = CACHE.get(key);
+        if (compiled == null) {
+            // parse outside of the map, a ParseException isn't cached
+            compiled = new CompiledCron(key);
+            CompiledCron existing = CACHE.putIfAbsent(key, compiled);
+            if (existing != null) compiled = existing;
+        }
+        return compiled;
+    }
+
+    /**
+     * @return the number of interned schedules
+     */
+    static int cacheSize() {
+        return CACHE.size();
+    }
+
+    private static String normalize(String expression) {
+        return expression.trim().replaceAll("\\s+", " ").toUpperCase(Locale.US);
+    }
+
+    private void parseElement(String s, int type) throws ParseException {
+        if (s.isEmpty()) throw new ParseException("Empty value at " + FIELD_NAMES[type], 0);
+        char c = s.charAt(0);
+
+        if (c == '?') {
+            if (s.length() > 1) throw new ParseException("Illegal character after '?': " + s.charAt(1), 1);
+            if (type == DAY_OF_MONTH) {
+                daysOfMonthNoSpec = true;
+            } else if (type == DAY_OF_WEEK) {
+                if (daysOfMonthNoSpec && !lastDayOfMonth)
+                    throw new ParseException("'?' can only be specified for Day-of-Month -OR- Day-of-Week.", 0);
+                daysOfWeekNoSpec = true;
+            } else {
+                throw new ParseException("'?' can only be specified for Day-of-Month or Day-of-Week.", 0);
+            }
+            return;
+        }
+
+        if (c == '*' || c == '/') {
+            int increment = 1;
+            String rest = s.substring(c == '*' ? 1 : 0);
+            if (!rest.isEmpty()) {
+                if (rest.charAt(0) != '/' || rest.length() == 1) throw new ParseException("'/' must be followed by an integer.", 0);
+                increment = parseNumber(rest.substring(1), type);
+                checkIncrement(increment, type);
+            }
+            // like Quartz, every value with an increment of 0
+            addRange(type, MIN[type], maxValue(type), Math.max(1, increment));
+            return;
+        }
+
+        if (c == 'L' && type == DAY_OF_WEEK) {
+            // like Quartz, L-n and LW are the last day of the week too
+            if (s.length() > 1 && !s.equals("LW") && !s.matches("L-[0-9]*W?"))
+                throw new ParseException("Illegal characters for this position: '" + s + "'", 0);
+            daysOfWeek |= 1L << 7;
+            return;
+        }
+        if (c == 'L' && !s.startsWith("LW") && s.length() > 1 && s.charAt(1) != '-')
+            throw new ParseException("Illegal characters for this position: '" + s + "'", 0);
+        if (c == 'L') {
+            if (type != DAY_OF_MONTH) throw new ParseException("'L' option is not valid here.", 0);
+            lastDayOfMonth = true;
+            String rest = s.substring(1);
+            if (rest.startsWith("-")) {
+                int end = digitsEnd(rest, 1);
+                lastDayOffset = parseNumber(rest.substring(1, end), type);
+                if (lastDayOffset > 30) throw new ParseException("Offset from last day must be <= 30", 0);
+                rest = rest.substring(end);
+            }
+            if (rest.equals("W")) {
+                nearestWeekday = true;
+            } else if (!rest.isEmpty()) {
+                throw new ParseException("Illegal characters for this position: '" + s + "'", 0);
+            }
+            return;
+        }
+
+        if (Character.isLetter(c)) {
+            parseName(s, type);
+            return;
+        }
+
+        // a value, a range, an increment or a day with L, W or #
+        int pos = digitsEnd(s, 0);
+        if (pos == 0) throw new ParseException("Unexpected character: " + c, 0);
+        int value = parseNumber(s.substring(0, pos), type);
+        checkValue(value, type);
+        if (pos == s.length()) {
+            addRange(type, value, value, 1);
+            return;
+        }
+
+        char suffix = s.charAt(pos);
+        String rest = s.substring(pos + 1);
+        switch (suffix) {
+            case 'L':
+                if (type != DAY_OF_WEEK) throw new ParseException("'L' option is not valid here.", pos);
+                lastDayOfWeek = true;
+                addRange(type, value, value, 1);
+                return;
+            case 'W':
+                if (type != DAY_OF_MONTH) throw new ParseException("'W' option is not valid here.", pos);
+                nearestWeekday = true;
+                addRange(type, value, value, 1);
+                return;
+            case '#':
+                if (type != DAY_OF_WEEK) throw new ParseException("'#' option is not valid here.", pos);
+                parseNth(rest, pos);
+                addRange(type, value, value, 1);
+                return;
+            case '-': {
+                int end = digitsEnd(rest, 0);
+                int endValue = parseNumber(rest.substring(0, end), type);
+                checkValue(endValue, type);
+                int increment = 1;
+                if (end < rest.length() && rest.charAt(end) == '/') {
+                    int incrementEnd = digitsEnd(rest, end + 1);
+                    increment = parseNumber(rest.substring(end + 1, incrementEnd), type);
+                }
+                // like Quartz, the start value with an increment of 0
+                addRange(type, value, increment == 0 ? value : endValue, Math.max(1, increment));
+                return;
+            }
+            case '/': {
+                if (rest.isEmpty()) throw new ParseException("'/' must be followed by an integer.", pos);
+                int end = digitsEnd(rest, 0);
+                if (end < rest.length()) throw new ParseException("Unexpected character '" + rest.charAt(end) + "' after '/'", pos);
+                int increment = parseNumber(rest, type);
+                checkIncrement(increment, type);
+                addRange(type, value, increment == 0 ? value : maxValue(type), Math.max(1, increment));
+                return;
+            }
+            default:
+                // like Quartz, the characters after a value or range are ignored
+                addRange(type, value, value, 1);
+        }
+    }
+
+    /**
+     * Parses a month or day-of-week name, like Quartz only the first three letters of a name count,
+     * followed by the end of a range, or for the day-of-week the nth day or the last day of the month.
+     * Any other characters, like the rest of MONDAY or the increment of a range of names, are ignored.
+     */
+    private void parseName(String s, int type) throws ParseException {
+        if (type != MONTH && type != DAY_OF_WEEK)
+            throw new ParseException("Illegal characters for this position: '" + s + "'", 0);
+        int value = parseName(s, 0, type);
+        int end = value;
+        if (s.length() > 3) {
+            char next = s.charAt(3);
+            if (next == '-') {
+                end = parseName(s, 4, type);
+            } else if (next == '#' && type == DAY_OF_WEEK) {
+                parseNth(s.substring(4), 3);
+            } else if (next == 'L' && type == DAY_OF_WEEK) {
+                lastDayOfWeek = true;
+            }
+        }
+        addRange(type, value, end, 1);
+    }
+
+    private static int parseName(String s, int from, int type) throws ParseException {
+        String name = s.substring(from, Math.min(from + 3, s.length()));
+        String[] names = type == MONTH ? MONTH_NAMES : DAY_NAMES;
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].equals(name)) return i + 1;
+        }
+        throw new ParseException("Invalid " + FIELD_NAMES[type] + " value: '" + name + "'", from);
+    }
+
+    private void parseNth(String s, int pos) throws ParseException {
+        try {
+            nthDayOfWeek = Integer.parseInt(s);
+        } catch (NumberFormatException e) {
+            nthDayOfWeek = 0;
+        }
+        if (nthDayOfWeek < 1 || nthDayOfWeek > 5)
+            throw new ParseException("A numeric value between 1 and 5 must follow the '#' option", pos);
+    }
+
+    private static int digitsEnd(String s, int from) {
+        int pos = from;
+        while (pos < s.length() && Character.isDigit(s.charAt(pos))) pos++;
+        return pos;
+    }
+
+    private static int parseNumber(String s, int type) throws ParseException {
+        try {
+            return Integer.parseInt(s);
+        } catch (NumberFormatException e) {
+            throw new ParseException("Invalid " + FIELD_NAMES[type] + " value: '" + s + "'", 0);
+        }
+    }
+
+    private static int maxValue(int type) {
+        switch (type) {
+            case SECOND:
+            case MINUTE:
+                return 59;
+            case HOUR:
+                return 23;
+            case DAY_OF_MONTH:
+                return 31;
+            case MONTH:
+                return 12;
+            case DAY_OF_WEEK:
+                return 7;
+            default:
+                return MAX_YEAR;
+        }
+    }
+
+    private static void checkValue(int value, int type) throws ParseException {
+        // like Quartz, any year is valid, a year before 1970 or from MAX_YEAR on has no execution time
+        if (type == YEAR) return;
+        int max = maxValue(type);
+        if (value < MIN[type] || value > max)
+            throw new ParseException(FIELD_NAMES[type] + " values must be between " + MIN[type] + " and " + max, 0);
+    }
+
+    private static void checkIncrement(int increment, int type) throws ParseException {
+        if (increment > MAX_INCREMENT[type])
+            throw new ParseException("Increment > " + (MAX_INCREMENT[type] + 1) + " : " + increment, 0);
+    }
+
+    private void addRange(int type, int start, int end, int increment) throws ParseException {
+        if (increment < 1) throw new ParseException("Increment must be greater than 0", 0);
+        // a range like 22-2 overflows into the next day, month and so on
+        int max = -1;
+        if (end < start) {
+            if (type == YEAR) throw new ParseException("Start year must be less than stop year", 0);
+            max = type == SECOND || type == MINUTE ? 60 : type == HOUR ? 24 : maxValue(type);
+            end += max;
+        }
+        // the years from MAX_YEAR on have no execution time
+        if (type == YEAR) end = Math.min(end, MAX_YEAR);
+        for (int i = start; i <= end; i += increment) {
+            int value = i;
+            if (max != -1) {
+                value = i % max;
+                // 1-based fields don't include 0 but their max
+                if (value == 0 && MIN[type] == 1) value = max;
+            }
+            switch (type) {
+                case SECOND:
+                    seconds |= 1L << value;
+                    break;
+                case MINUTE:
+                    minutes |= 1L << value;
+                    break;
+                case HOUR:
+                    hours |= 1L << value;
+                    break;
+                case DAY_OF_MONTH:
+                    daysOfMonth |= 1L << value;
+                    break;
+                case MONTH:
+                    months |= 1L << value;
+                    break;
+                case DAY_OF_WEEK:
+                    daysOfWeek |= 1L << value;
+                    break;
+                default:
+                    years.set(value);
+            }
+        }
+    }
+
+    /**
+     * Retrieves the next execution time after the given time.
+     *
+     * @param after the time after which the next execution is searched
+     * @return the next execution time, or null if there is no further execution time
+     */
+    public LocalDateTime nextTimeAfter(LocalDateTime after) {
+        long next = nextAfter(after.getYear(), after.getMonthValue(), after.getDayOfMonth(),
+                after.getHour(), after.getMinute(), after.getSecond());
+        if (next < 0) return null;
+        return LocalDateTime.of(year(next), month(next), day(next), hour(next), minute(next), second(next));
+    }
+
+    /**
+     * Retrieves the next execution time after the given instant, without allocating any object.
+     * Execution times in a daylight saving gap run once at the end of the gap,
+     * execution times in an overlap run once with the earlier offset, see {@link ZoneTable}.
+     *
+     * @param afterEpochSecond the epoch seconds after which the next execution time is searched
+     * @param rules            the rules of the time zone of the wall clock
+     * @return the epoch seconds of the next execution time, or {@link #NONE} if there is no further execution time
+     */
+    public long nextFireEpochSecond(long afterEpochSecond, ZoneRules rules) {
+        return nextFireEpochSecond(afterEpochSecond, ZoneTable.of(rules));
+    }
+
+    long nextFireEpochSecond(long afterEpochSecond, ZoneTable zone) {
+        long local = zone.toLocalSecond(afterEpochSecond);
+        while (true) {
+            long days = Math.floorDiv(local, 86400);
+            int secondOfDay = Math.floorMod(local, 86400);
+            // the civil date of the days, see https://howardhinnant.github.io/date_algorithms.html
+            long z = days + 719468;
+            long era = Math.floorDiv(z, 146097);
+            long doe = z - era * 146097;
+            long yoe = (doe - doe / 1460 + doe / 36524 - doe / 146096) / 365;
+            long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+            long mp = (5 * doy + 2) / 153;
+            int day = (int) (doy - (153 * mp + 2) / 5 + 1);
+            int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+            int year = (int) (yoe + era * 400 + (month <= 2 ? 1 : 0));
+
+            long next = nextAfter(year, month, day, secondOfDay / 3600, secondOfDay / 60 % 60, secondOfDay % 60);
+            if (next < 0) return NONE;
+            local = epochSecond(next);
+            long epochSecond = zone.toEpochSecond(local);
+            // the times of a gap resolve to the same instant, the times of an overlap can be before the given instant
+            if (epochSecond > afterEpochSecond) return epochSecond;
+        }
+    }
+
+    /**
+     * Adds the next execution times after the given time to the buffer, in one pass.
+     *
+     * @param after   the time after which the execution times are searched
+     * @param max     the maximum number of execution times to add
+     * @param barrier the time up to which execution times are added, exclusive, or null for no limit
+     * @param buffer  the buffer for the execution times
+     * @return the number of added execution times
+     */
+    public int nextTimes(LocalDateTime after, int max, LocalDateTime barrier, FireTimeBuffer buffer) {
+        long limit = barrier == null ? Long.MAX_VALUE : pack(barrier.getYear(), barrier.getMonthValue(),
+                barrier.getDayOfMonth(), barrier.getHour(), barrier.getMinute(), barrier.getSecond());
+        long next = pack(after.getYear(), after.getMonthValue(), after.getDayOfMonth(),
+                after.getHour(), after.getMinute(), after.getSecond());
+        int count = 0;
+        while (count < max) {
+            // continue at the previous execution time, the search isn't started from scratch
+            next = nextAfter(year(next), month(next), day(next), hour(next), minute(next), second(next));
+            if (next < 0 || next >= limit) break;
+            buffer.add(epochSecond(next));
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Counts the execution times after the given time and before the barrier, without searching them one by one.
+     * Only the matching days are visited, the execution times of a day are the product of the hour,
+     * minute and second cardinalities. So a count costs O(days) even for a job of every second.
+     *
+     * @param after   the time after which the execution times are counted
+     * @param barrier the time up to which execution times are counted, exclusive
+     * @return the number of execution times
+     */
+    public long count(LocalDateTime after, LocalDateTime barrier) {
+        long first = pack(after.getYear(), after.getMonthValue(), after.getDayOfMonth(),
+                after.getHour(), after.getMinute(), after.getSecond());
+        long last = pack(barrier.getYear(), barrier.getMonthValue(), barrier.getDayOfMonth(),
+                barrier.getHour(), barrier.getMinute(), barrier.getSecond());
+        if (last <= first) return 0;
+
+        long perDay = (long) Long.bitCount(hours) * Long.bitCount(minutes) * Long.bitCount(seconds);
+        long firstDay = first >>> 17;
+        long lastDay = last >>> 17;
+        int year = year(first);
+        int month = month(first);
+        int day = day(first);
+        long count = 0;
+        while (true) {
+            int y = years.nextSetBit(year);
+            if (y < 0 || y >= MAX_YEAR) break;
+            if (y != year) {
+                year = y;
+                month = 1;
+                day = 1;
+            }
+            int m = nextBit(months, month);
+            if (m < 0) {
+                year++;
+                month = 1;
+                day = 1;
+                continue;
+            }
+            if (m != month) {
+                month = m;
+                day = 1;
+            }
+            int d = nextDay(year, month, day);
+            if (d < 0) {
+                month++;
+                if (month > 12) {
+                    month = 1;
+                    year++;
+                }
+                day = 1;
+                continue;
+            }
+            long date = pack(year, month, d, 0, 0, 0) >>> 17;
+            if (date > lastDay) break;
+
+            if (date == firstDay && date == lastDay) {
+                count += timesBefore(last) - timesBefore(first) - (matchesTime(first) ? 1 : 0);
+            } else if (date == firstDay) {
+                count += perDay - timesBefore(first) - (matchesTime(first) ? 1 : 0);
+            } else if (date == lastDay) {
+                count += timesBefore(last);
+            } else {
+                count += perDay;
+            }
+
+            day = d + 1;
+            if (day > lengthOfMonth(year, month)) {
+                day = 1;
+                month++;
+                if (month > 12) {
+                    month = 1;
+                    year++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the number of execution times of a day before the time of day of the packed time
+     */
+    private long timesBefore(long packed) {
+        int h = hour(packed);
+        int m = minute(packed);
+        int s = second(packed);
+        long count = (long) Long.bitCount(hours & ((1L << h) - 1)) * Long.bitCount(minutes) * Long.bitCount(seconds);
+        if ((hours & (1L << h)) != 0) {
+            count += (long) Long.bitCount(minutes & ((1L << m) - 1)) * Long.bitCount(seconds);
+            if ((minutes & (1L << m)) != 0) count += Long.bitCount(seconds & ((1L << s) - 1));
+        }
+        return count;
+    }
+
+    private boolean matchesTime(long packed) {
+        return (hours & (1L << hour(packed))) != 0 && (minutes & (1L << minute(packed))) != 0
+                && (seconds & (1L << second(packed))) != 0;
+    }
+
+    /**
+     * Retrieves the next execution time after the given wall clock time, without any allocation.
+     * The result is packed by {@link #pack(int, int, int, int, int, int)}.
+     *
+     * @return the packed next execution time, or -1 if there is no further execution time
+     */
+    long nextAfter(int year, int month, int day, int hour, int minute, int second) {
+        // the next execution is at least one second later
+        second++;
+        if (second > 59) {
+            second = 0;
+            minute++;
+            if (minute > 59) {
+                minute = 0;
+                hour++;
+                if (hour > 23) {
+                    hour = 0;
+                    day++;
+                    if (day > lengthOfMonth(year, month)) {
+                        day = 1;
+                        month++;
+                        if (month > 12) {
+                            month = 1;
+                            year++;
+                        }
+                    }
+                }
+            }
+        }
+
+        while (true) {
+            if (year >= MAX_YEAR) return -1;
+
+            // year
+            int y = years.nextSetBit(year);
+            if (y < 0 || y >= MAX_YEAR) return -1;
+            if (y != year) {
+                year = y;
+                month = 1;
+                day = 1;
+                hour = 0;
+                minute = 0;
+                second = 0;
+            }
+
+            // month
+            int m = nextBit(months, month);
+            if (m < 0) {
+                year++;
+                month = 1;
+                day = 1;
+                hour = 0;
+                minute = 0;
+                second = 0;
+                continue;
+            }
+            if (m != month) {
+                month = m;
+                day = 1;
+                hour = 0;
+                minute = 0;
+                second = 0;
+            }
+
+            // day
+            int d = nextDay(year, month, day);
+            if (d < 0) {
+                month++;
+                if (month > 12) {
+                    month = 1;
+                    year++;
+                }
+                day = 1;
+                hour = 0;
+                minute = 0;
+                second = 0;
+                continue;
+            }
+            if (d != day) {
+                day = d;
+                hour = 0;
+                minute = 0;
+                second = 0;
+            }
+
+            // hour
+            int h = nextBit(hours, hour);
+            if (h < 0) {
+                day++;
+                if (day > lengthOfMonth(year, month)) {
+                    day = 1;
+                    month++;
+                    if (month > 12) {
+                        month = 1;
+                        year++;
+                    }
+                }
+                hour = 0;
+                minute = 0;
+                second = 0;
+                continue;
+            }
+            if (h != hour) {
+                hour = h;
+                minute = 0;
+                second = 0;
+            }
+
+            // minute
+            int mi = nextBit(minutes, minute);
+            if (mi < 0) {
+                hour++;
+                minute = 0;
+                second = 0;
+                if (hour > 23) {
+                    hour = 0;
+                    day++;
+                    if (day > lengthOfMonth(year, month)) {
+                        day = 1;
+                        month++;
+                        if (month > 12) {
+                            month = 1;
+                            year++;
+                        }
+                    }
+                }
+                continue;
+            }
+            if (mi != minute) {
+                minute = mi;
+                second = 0;
+            }
+
+            // second
+            int s = nextBit(seconds, second);
+            if (s < 0) {
+                minute++;
+                second = 0;
+                if (minute > 59) {
+                    minute = 0;
+                    hour++;
+                    if (hour > 23) {
+                        hour = 0;
+                        day++;
+                        if (day > lengthOfMonth(year, month)) {
+                            day = 1;
+                            month++;
+                            if (month > 12) {
+                                month = 1;
+                                year++;
+                            }
+                        }
+                    }
+                }
+                continue;
+            }
+            return pack(year, month, day, hour, minute, s);
+        }
+    }
+
+    /**
+     * Retrieves the first day of the month at or after the given day, which matches
+     * the day-of-month or the day-of-week rule.
+     *
+     * @return the day, or -1 if no further day of this month matches
+     */
+    private int nextDay(int year, int month, int day) {
+        int length = lengthOfMonth(year, month);
+        if (daysOfWeekNoSpec) {
+            // day-of-month rule
+            if (lastDayOfMonth || nearestWeekday) {
+                int target;
+                if (lastDayOfMonth) {
+                    target = length - lastDayOffset;
+                } else {
+                    target = Long.numberOfTrailingZeros(daysOfMonth);
+                }
+                if (target < 1 || target > length) return -1;
+                if (nearestWeekday) {
+                    int dow = dayOfWeek(year, month, target);
+                    if (dow == 7 && target == 1) {
+                        target += 2;
+                    } else if (dow == 7) {
+                        target -= 1;
+                    } else if (dow == 1 && target == length) {
+                        target -= 2;
+                    } else if (dow == 1) {
+                        target += 1;
+                    }
+                }
+                return target >= day ? target : -1;
+            }
+            int d = nextBit(daysOfMonth, day);
+            return d > 0 && d <= length ? d : -1;
+        }
+
+        // day-of-week rule
+        int firstDow = Long.numberOfTrailingZeros(daysOfWeek);
+        if (lastDayOfWeek) {
+            int last = length - Math.floorMod(dayOfWeek(year, month, length) - firstDow, 7);
+            return last >= day ? last : -1;
+        }
+        if (nthDayOfWeek != 0) {
+            int first = 1 + Math.floorMod(firstDow - dayOfWeek(year, month, 1), 7);
+            int nth = first + (nthDayOfWeek - 1) * 7;
+            return nth >= day && nth <= length ? nth : -1;
+        }
+        int dow = dayOfWeek(year, month, day);
+        for (int d = day; d <= length && d < day + 7; d++) {
+            if ((daysOfWeek & (1L << dow)) != 0) return d;
+            dow = dow == 7 ? 1 : dow + 1;
+        }
+        return -1;
+    }
+
+    private static int nextBit(long mask, int from) {
+        if (from > 63) return -1;
+        long m = mask & (-1L << from);
+        return m == 0 ? -1 : Long.numberOfTrailingZeros(m);
+    }
+
+    /**
+     * @return the day of week, 1 is sunday and 7 is saturday
+     */
+    static int dayOfWeek(int year, int month, int day) {
+        // Sakamoto's method
+        int[] t = DOW_TABLE;
+        int y = month < 3 ? year - 1 : year;
+        return (y + y / 4 - y / 100 + y / 400 + t[month - 1] + day) % 7 + 1;
+    }
+
+    private static final int[] DOW_TABLE = {0, 3, 2, 5, 0, 3, 5, 1, 4, 6, 2, 4};
+
+    static int lengthOfMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                return isLeapYear(year) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    static boolean isLeapYear(int year) {
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+
+    /**
+     * Packs a wall clock time into one long, which keeps the order of the times.
+     */
+    static long pack(int year, int month, int day, int hour, int minute, int second) {
+        return ((((((long) year * 16 + month) * 32 + day) * 32 + hour) * 64 + minute) * 64) + second;
+    }
+
+    static int year(long packed) {
+        return (int) (packed >>> 26);
+    }
+
+    static int month(long packed) {
+        return (int) (packed >>> 22) & 15;
+    }
+
+    static int day(long packed) {
+        return (int) (packed >>> 17) & 31;
+    }
+
+    static int hour(long packed) {
+        return (int) (packed >>> 12) & 31;
+    }
+
+    static int minute(long packed) {
+        return (int) (packed >>> 6) & 63;
+    }
+
+    static int second(long packed) {
+        return (int) packed & 63;
+    }
+
+    /**
+     * Converts a packed wall clock time to epoch seconds of the wall clock in UTC, without any allocation.
+     */
+    static long epochSecond(long packed) {
+        // days from the civil date, see https://howardhinnant.github.io/date_algorithms.html
+        int month = month(packed);
+        long y = month <= 2 ? year(packed) - 1 : year(packed);
+        long era = Math.floorDiv(y, 400);
+        long yoe = y - era * 400;
+        long doy = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day(packed) - 1;
+        long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        long days = era * 146097 + doe - 719468;
+        return days * 86400 + hour(packed) * 3600L + minute(packed) * 60L + second(packed);
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+}
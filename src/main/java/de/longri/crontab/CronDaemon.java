@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of CrontabScheduler.
+ *
+ * CrontabScheduler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * CrontabScheduler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CrontabScheduler. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.crontab;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The CronDaemon keeps a loaded {@link CronJobList} in memory and fires every job
+ * as it comes due, until {@link #stop()} is called.
+ * This replaces the one-shot execution window of {@link Main} for long-running processes.
+ * All jobs are scheduled by a single {@link CronDispatcher} thread,
+ * jobs with upstream jobs are started by the {@link JobGraph}.
+ * <p>
+ * With a {@link ClusterMembership} the daemon schedules only the jobs of its shard
+ * and takes over the jobs of dead nodes.
+ */
+public class CronDaemon {
+
+    private final static Logger log = LoggerFactory.getLogger(CronDaemon.class);
+
+    private final CronJobList jobs;
+    private final CronDispatcher dispatcher;
+    private final JobGraph graph;
+    private ClusterMembership membership;
+
+    /**
+     * Constructs a CronDaemon for the given jobs.
+     *
+     * @param jobs the jobs to schedule
+     */
+    public CronDaemon(CronJobList jobs) {
+        this(jobs, new HeapTriggerStore());
+    }
+
+    /**
+     * Constructs a CronDaemon for the given jobs, which keeps the pending triggers in the given store.
+     *
+     * @param jobs  the jobs to schedule
+     * @param store the store for the pending triggers
+     */
+    public CronDaemon(CronJobList jobs, TriggerStore store) {
+        this(jobs, store, new WorkerPools());
+    }
+
+    /**
+     * Constructs a CronDaemon for the given jobs, which keeps the pending triggers in the given store
+     * and runs the due jobs at the given worker pools.
+     *
+     * @param jobs  the jobs to schedule
+     * @param store the store for the pending triggers
+     * @param pools the worker pools which run the due jobs
+     */
+    public CronDaemon(CronJobList jobs, TriggerStore store, WorkerPools pools) {
+        this.jobs = jobs;
+        this.dispatcher = new CronDispatcher(store, pools);
+        this.graph = new JobGraph(jobs, pools);
+    }
+
+    /**
+     * Sets the membership of this node in a cluster of scheduler nodes, before the daemon is started.
+     *
+     * @param membership the membership, or null to schedule all jobs
+     */
+    public void setMembership(ClusterMembership membership) {
+        synchronized (dispatcher) {
+            if (dispatcher.isRunning()) throw new RuntimeException("Daemon is running");
+            this.membership = membership;
+        }
+    }
+
+    /**
+     * Starts scheduling all jobs, or the jobs of the shard of this node.
+     */
+    public void start() {
+        synchronized (dispatcher) {
+            if (dispatcher.isRunning()) return;
+            if (membership == null) {
+                for (Cronjob job : jobs) {
+                    // a dependent job runs after its upstream jobs
+                    if (graph.isDependent(job)) continue;
+                    dispatcher.schedule(job);
+                }
+            }
+            dispatcher.start();
+            log.info("Daemon started with {} jobs", jobs.size());
+        }
+        if (membership != null) membership.start(this::rebalance);
+    }
+
+    /**
+     * Schedules the jobs which belong to this node at the given ring and removes the others.
+     *
+     * @param ring the current ring of the live nodes
+     */
+    void rebalance(ShardRing ring) {
+        synchronized (dispatcher) {
+            if (!dispatcher.isRunning()) return;
+            int count = 0;
+            for (Cronjob job : jobs) {
+                if (graph.isDependent(job)) continue;
+                boolean owned = ring.owns(job, membership.getNodeId());
+                if (owned) count++;
+                if (owned && !dispatcher.isScheduled(job)) {
+                    log.debug("Node {} takes job {}", membership.getNodeId(), job.getName());
+                    dispatcher.schedule(job);
+                } else if (!owned && dispatcher.isScheduled(job)) {
+                    log.debug("Node {} hands job {} over", membership.getNodeId(), job.getName());
+                    dispatcher.remove(job);
+                }
+            }
+            log.info("Node {} schedules {} of {} jobs", membership.getNodeId(), count, jobs.size());
+        }
+    }
+
+    /**
+     * Stops scheduling. Running job executions are not canceled.
+     */
+    public void stop() {
+        synchronized (dispatcher) {
+            if (!dispatcher.isRunning()) return;
+            dispatcher.stop();
+            dispatcher.clear();
+            log.info("Daemon stopped");
+        }
+        if (membership != null) membership.stop();
+    }
+
+    /**
+     * Waits until the daemon is stopped.
+     *
+     * @throws InterruptedException if the waiting thread is interrupted
+     */
+    public void join() throws InterruptedException {
+        dispatcher.join();
+    }
+
+    /**
+     * @return the number of pending triggers
+     */
+    public int size() {
+        return dispatcher.size();
+    }
+
+    /**
+     * @return true if the daemon is started and not stopped
+     */
+    public boolean isRunning() {
+        return dispatcher.isRunning();
+    }
+}
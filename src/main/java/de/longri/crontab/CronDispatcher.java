@@ -0,0 +1,306 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of CrontabScheduler.
+ *
+ * CrontabScheduler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * CrontabScheduler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CrontabScheduler. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.crontab;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * The CronDispatcher schedules any number of {@link Cronjob}s with a single timer thread.
+ * The next execution time of every job is kept in a {@link TriggerStore}, the thread sleeps until
+ * the earliest execution time, dispatches the due jobs and re-inserts them with their next execution time.
+ * Jobs with the same schedule share one compiled expression, so their next execution time is computed once
+ * for all of them in the same time zone.
+ */
+public class CronDispatcher {
+
+    private final static Logger log = LoggerFactory.getLogger(CronDispatcher.class);
+
+    private final TriggerStore store;
+    private final WorkerPools pools;
+    private final HashSet<Cronjob> scheduled = new HashSet<>();
+    private Thread thread;
+    private boolean running = false;
+
+    /**
+     * Constructs a CronDispatcher with the default {@link HeapTriggerStore} and unbounded worker pools.
+     */
+    public CronDispatcher() {
+        this(new HeapTriggerStore());
+    }
+
+    /**
+     * Constructs a CronDispatcher with the given trigger store and unbounded worker pools.
+     *
+     * @param store the store for the pending triggers
+     */
+    public CronDispatcher(TriggerStore store) {
+        this(store, new WorkerPools());
+    }
+
+    /**
+     * Constructs a CronDispatcher with the given trigger store and worker pools.
+     *
+     * @param store the store for the pending triggers
+     * @param pools the worker pools which run the due jobs
+     */
+    public CronDispatcher(TriggerStore store, WorkerPools pools) {
+        this.store = store;
+        this.pools = pools;
+    }
+
+    /**
+     * Adds a job to the schedule. The job is dispatched first at its next execution time after now.
+     * Executions missed since the last execution are dispatched immediately, according to the misfire policy of the job.
+     *
+     * @param job the job to schedule
+     */
+    public void schedule(Cronjob job) {
+        // execution times are compared without the stagger delay of the job
+        LocalDateTime now = job.cronExpression.now().minusSeconds(job.getStaggerSeconds());
+        ArrayList<LocalDateTime> missed = job.getMissedExecutions(job.getMisfireStart(), now);
+        LocalDateTime next = missed.isEmpty() ? job.cronExpression.nextTimeAfter(now) : missed.get(0);
+        if (next == null) {
+            log.debug("Job {} has no further execution time", job.getName());
+            return;
+        }
+        synchronized (store) {
+            scheduled.add(job);
+            add(new Trigger(job, next, false));
+        }
+    }
+
+    /**
+     * Dispatches a job once at the given time, independent of its cron expression.
+     *
+     * @param job the job to dispatch
+     * @param at  the execution time
+     */
+    public void scheduleOnce(Cronjob job, LocalDateTime at) {
+        add(new Trigger(job, at, true));
+    }
+
+    private void add(Trigger trigger) {
+        synchronized (store) {
+            store.add(trigger);
+            // wake up the dispatcher thread, the new trigger could be the earliest one
+            store.notifyAll();
+        }
+    }
+
+    /**
+     * Removes a job from the schedule.
+     *
+     * @param job the job to remove
+     * @return true if the job was scheduled
+     */
+    public boolean remove(Cronjob job) {
+        synchronized (store) {
+            // a trigger which is dispatched right now isn't re-inserted
+            boolean removed = scheduled.remove(job);
+            return store.remove(job) || removed;
+        }
+    }
+
+    /**
+     * Removes all jobs from the schedule.
+     */
+    public void clear() {
+        synchronized (store) {
+            scheduled.clear();
+            store.clear();
+        }
+    }
+
+    /**
+     * @param job the job
+     * @return true if the job is scheduled at its execution times
+     */
+    public boolean isScheduled(Cronjob job) {
+        synchronized (store) {
+            return scheduled.contains(job);
+        }
+    }
+
+    /**
+     * @return the number of pending triggers
+     */
+    public int size() {
+        synchronized (store) {
+            return store.size();
+        }
+    }
+
+    /**
+     * Starts the dispatcher thread.
+     */
+    public void start() {
+        synchronized (store) {
+            if (running) return;
+            running = true;
+            thread = new Thread(this::loop, "CronDispatcher");
+            thread.start();
+        }
+    }
+
+    /**
+     * Stops the dispatcher thread. Running job executions are not canceled.
+     */
+    public void stop() {
+        synchronized (store) {
+            running = false;
+            store.notifyAll();
+        }
+    }
+
+    /**
+     * @return true if the dispatcher is started and not stopped
+     */
+    public boolean isRunning() {
+        synchronized (store) {
+            return running;
+        }
+    }
+
+    /**
+     * Waits until the dispatcher thread is finished.
+     *
+     * @throws InterruptedException if the waiting thread is interrupted
+     */
+    public void join() throws InterruptedException {
+        Thread t;
+        synchronized (store) {
+            t = thread;
+        }
+        if (t != null) t.join();
+    }
+
+    private void loop() {
+        ArrayList<Trigger> due = new ArrayList<>();
+        while (true) {
+            synchronized (store) {
+                while (true) {
+                    if (!running) return;
+                    long now = System.currentTimeMillis();
+                    long nextFireTime = store.nextFireTime();
+                    if (nextFireTime <= now) {
+                        // take all due triggers at once, jobs with the same schedule fire together
+                        Trigger trigger;
+                        while ((trigger = store.pollDue(now)) != null) due.add(trigger);
+                        if (!due.isEmpty()) break;
+                        continue;
+                    }
+                    try {
+                        // sleep exactly until the earliest execution time or a schedule change
+                        store.wait(nextFireTime == Long.MAX_VALUE ? 0 : nextFireTime - now);
+                    } catch (InterruptedException e) {
+                        running = false;
+                        return;
+                    }
+                }
+            }
+            dispatch(due);
+            due.clear();
+        }
+    }
+
+    void dispatch(ArrayList<Trigger> due) {
+        ArrayList<Trigger> next = new ArrayList<>(due.size());
+        // the next execution time is computed once per shared schedule, time zone and execution time
+        HashMap<Schedule, LocalDateTime[]> nextBySchedule = new HashMap<>();
+        for (Trigger trigger : due) {
+            Cronjob job = trigger.job;
+            job.executeAsync(trigger.next, pools.executor(job)).whenComplete((executed, throwable) -> {
+                if (throwable instanceof RejectedExecutionException) {
+                    log.warn("Execution of job {} at {} rejected", job.getName(), trigger.next.format(UTILS.formatter));
+                } else if (throwable != null) {
+                    log.error("Running exception", throwable);
+                }
+            });
+            if (trigger.oneShot) continue;
+
+            Schedule schedule = new Schedule(job.cronExpression);
+            LocalDateTime[] cached = nextBySchedule.get(schedule);
+            if (cached == null || !cached[0].equals(trigger.next)) {
+                cached = new LocalDateTime[]{trigger.next, job.cronExpression.nextTimeAfter(trigger.next)};
+                nextBySchedule.put(schedule, cached);
+            }
+            Trigger reinsert = next(trigger, cached[1]);
+            if (reinsert != null) next.add(reinsert);
+        }
+        if (next.isEmpty()) return;
+        synchronized (store) {
+            for (Trigger trigger : next) {
+                if (scheduled.contains(trigger.job)) store.add(trigger);
+            }
+        }
+    }
+
+    /**
+     * Creates the trigger for the execution time after a dispatched one.
+     * If the dispatcher is late the misfire policy of the job decides about the missed times.
+     *
+     * @return the trigger, or null if the job has no further execution time
+     */
+    private Trigger next(Trigger trigger, LocalDateTime next) {
+        Cronjob job = trigger.job;
+        LocalDateTime now = job.cronExpression.now().minusSeconds(job.getStaggerSeconds());
+        if (next != null && !next.isAfter(now)) {
+            ArrayList<LocalDateTime> missed = job.getMissedExecutions(trigger.next, now);
+            next = missed.isEmpty() ? job.cronExpression.nextTimeAfter(now) : missed.get(0);
+        }
+        if (next == null) {
+            log.debug("Job {} has no further execution time", job.getName());
+            return null;
+        }
+        return new Trigger(job, next, false);
+    }
+
+    /**
+     * A shared schedule in a time zone, the next execution time after a wall clock time depends on both.
+     */
+    private static final class Schedule {
+        final CompiledCron cron;
+        final ZoneId zone;
+
+        Schedule(LocalCronExpression expression) {
+            this.cron = expression.EXPRESSION;
+            this.zone = expression.getZone();
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Schedule)) return false;
+            Schedule schedule = (Schedule) other;
+            return cron == schedule.cron && zone.equals(schedule.zone);
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(cron) * 31 + zone.hashCode();
+        }
+    }
+}
@@ -24,6 +24,8 @@ import org.ini4j.Ini;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
 
 
 public class CronJobList extends ArrayList<Cronjob> {
@@ -47,9 +49,42 @@ public class CronJobList extends ArrayList<Cronjob> {
         }
     }
 
+    /**
+     * Retrieves a section of the ini file, like the worker pool configuration [pools].
+     *
+     * @param name the name of the section
+     * @return the section, or null if the ini file has no section with this name
+     */
+    public Ini.Section getSection(String name) {
+        return ini.get(name);
+    }
+
+    /**
+     * Spreads jobs with the same schedule evenly over the given number of seconds.
+     * Jobs share a schedule if their expressions compile to the same {@link CompiledCron},
+     * an expression with hash token H has the schedule of its replaced values.
+     * The jobs of a group are sorted by name, the first one runs on time and every next one
+     * is delayed by a deterministic offset.
+     *
+     * @param seconds the time span for every group of jobs
+     */
+    public void stagger(int seconds) {
+        IdentityHashMap<CompiledCron, ArrayList<Cronjob>> groups = new IdentityHashMap<>();
+        for (Cronjob job : this) {
+            groups.computeIfAbsent(job.cronExpression.EXPRESSION, key -> new ArrayList<>()).add(job);
+        }
+        for (ArrayList<Cronjob> group : groups.values()) {
+            group.sort(Comparator.comparing(Cronjob::getName));
+            for (int i = 0; i < group.size(); i++) {
+                group.get(i).setStaggerSeconds(seconds * i / group.size());
+            }
+        }
+    }
+
     public void write() throws IOException {
 
-        ini.clear();
+        // keep the other sections, like [pools]
+        ini.remove("jobs");
 
         ini.add("jobs", "count", this.size());
         for (int i = 0; i < this.size(); i++) {
@@ -24,10 +24,21 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.text.ParseException;
+import java.time.DateTimeException;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Locale;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.prefs.BackingStoreException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
 import java.util.prefs.Preferences;
 
 /**
@@ -45,6 +56,36 @@ public class Cronjob {
      */
     final static Logger log = LoggerFactory.getLogger(Cronjob.class);
 
+    /**
+     * The store which registers the executions of all jobs.
+     */
+    private static volatile ExecutionStore executionStore = new PreferencesExecutionStore();
+
+    /**
+     * The history which records the executions of all jobs, or null.
+     */
+    private static volatile ExecutionHistory executionHistory;
+
+    /**
+     * The job option key of the timeout of every execution, a number of seconds or {@link #TIMEOUT_UNTIL_NEXT}.
+     */
+    public static final String TIMEOUT_OPTION = "timeout";
+
+    /**
+     * The timeout option value for a timeout at the next execution time.
+     */
+    public static final String TIMEOUT_UNTIL_NEXT = "untilnext";
+
+    /**
+     * The job option key of the time zone of the cron expression, like tz=Europe/Berlin.
+     */
+    public static final String TZ_OPTION = "tz";
+
+    /**
+     * The number of missed execution times which are read in one pass.
+     */
+    private static final int MISSED_BATCH = 256;
+
     /**
      * The cron expression that defines the schedule for this cron job.
      */
@@ -55,6 +96,36 @@ public class Cronjob {
      */
     public final Job job;
 
+    /**
+     * The optional settings of this cron job.
+     */
+    public final JobOptions options;
+
+    /**
+     * The delay of every execution in seconds, to spread jobs with the same cron expression.
+     */
+    private volatile int staggerSeconds = 0;
+
+    /**
+     * Called after every successful execution with this cron job and the execution time.
+     */
+    private volatile BiConsumer<Cronjob, LocalDateTime> completionListener;
+
+    /**
+     * The run state and the execution waiting behind the running one.
+     */
+    private final AtomicReference<RunStatus> status = new AtomicReference<>(RunStatus.IDLE);
+
+    /**
+     * The number of running executions with the overlap policy ALLOW.
+     */
+    private final AtomicInteger parallelRuns = new AtomicInteger(0);
+
+    /**
+     * The running execution with an overlap policy other than ALLOW, set before the state is RUNNING.
+     */
+    private volatile Execution running;
+
     /**
      * Preference identifier for storing cron job data.
      */
@@ -73,20 +144,100 @@ public class Cronjob {
      * @throws ParseException if there is an error parsing the cron expression
      */
     public Cronjob(String cron, Job job) throws ParseException {
+        this(cron, job, new JobOptions());
+    }
+
+    /**
+     * Constructs a Cronjob instance with the specified cron expression, job and options.
+     *
+     * @param cron    the cron expression
+     * @param job     the job to be executed
+     * @param options the optional settings of this cron job
+     * @throws ParseException if there is an error parsing the cron expression
+     */
+    public Cronjob(String cron, Job job, JobOptions options) throws ParseException {
         this.job = job;
+        this.options = options;
         String[] jobconf = cron.split(SERIALIZE_SEPARATOR);
-        this.cronExpression = new LocalCronExpression(jobconf[0]);
+        this.cronExpression = new LocalCronExpression(jobconf[0], job.getName());
+        String tz = options.get(TZ_OPTION);
+        if (tz != null) {
+            try {
+                this.cronExpression.setZone(ZoneId.of(tz.trim()));
+            } catch (DateTimeException e) {
+                throw new RuntimeException("Unknown time zone of job " + job.getName() + ": " + tz.trim(), e);
+            }
+        }
+        String timeout = options.get(TIMEOUT_OPTION);
+        if (timeout != null && !timeout.trim().equalsIgnoreCase(TIMEOUT_UNTIL_NEXT)) {
+            // a wrong timeout fails at the start and not at every execution
+            long seconds;
+            try {
+                seconds = Long.parseLong(timeout.trim());
+            } catch (NumberFormatException e) {
+                throw new RuntimeException("Wrong timeout of job " + job.getName() + ": " + timeout.trim(), e);
+            }
+            if (seconds < 1) throw new RuntimeException("Wrong timeout of job " + job.getName() + ": " + timeout.trim());
+        }
         this.prefId = "CronJob" + cron + job.getName();
         this.prefs = Preferences.userRoot().node(this.getClass().getName());
     }
 
+    /**
+     * Sets the store which registers the executions of all jobs.
+     *
+     * @param store the execution store
+     */
+    public static void setExecutionStore(ExecutionStore store) {
+        executionStore = store;
+    }
+
+    /**
+     * @return the store which registers the executions of all jobs
+     */
+    public static ExecutionStore getExecutionStore() {
+        return executionStore;
+    }
+
+    /**
+     * Sets the history which records the executions of all jobs.
+     *
+     * @param history the execution history, or null to record nothing
+     */
+    public static void setExecutionHistory(ExecutionHistory history) {
+        executionHistory = history;
+    }
+
+    /**
+     * @return the history which records the executions of all jobs, or null
+     */
+    public static ExecutionHistory getExecutionHistory() {
+        return executionHistory;
+    }
+
     /**
      * Retrieves the last execution time for this cron job.
      *
      * @return the last execution time as a string
      */
     public String getLastExecution() {
-        return prefs.get(this.prefId, "");
+        return executionStore.getLastExecution(this.prefId);
+    }
+
+    /**
+     * Retrieves the last execution time for this cron job.
+     *
+     * @return the last execution time, or null if the job was never executed
+     */
+    public LocalDateTime getLastExecutionTime() {
+        String last = getLastExecution();
+        if (last.isEmpty()) return null;
+        try {
+            return UTILS.parseDateTime(last);
+        } catch (DateTimeParseException e) {
+            log.warn("Can't parse last execution '{}' of job {}", last, getName());
+            return null;
+        }
     }
 
     /**
@@ -109,7 +260,8 @@ public class Cronjob {
         } catch (Exception e) {
             throw new RuntimeException("can't create job instance '" + arr[2].trim() + "' from type '" + arr[1].trim() + "' with arguments [" + arr[3].trim() + "]", e);
         }
-        return new Cronjob(arr[0], jobInstance);
+        JobOptions options = arr.length > 4 ? JobOptions.parse(arr[4]) : new JobOptions();
+        return new Cronjob(arr[0], jobInstance, options);
     }
 
     /**
@@ -128,7 +280,7 @@ public class Cronjob {
      * @return true if the job should run in the next specified minutes, false otherwise
      */
     public boolean isRunNextMin(int min) {
-        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime now = cronExpression.now();
         LocalDateTime inXmin = now.plusMinutes(min);
         LocalDateTime ldt = cronExpression.nextTimeAfter(now);
         return ldt.isBefore(inXmin);
@@ -140,67 +292,369 @@ public class Cronjob {
      * @param waitMinute the number of minutes to wait
      */
     public void waitAndRun(int waitMinute) {
+        waitAndRun(waitMinute, null);
+    }
+
+    /**
+     * Waits for the specified number of minutes and then runs the job at its worker pool.
+     *
+     * @param waitMinute the number of minutes to wait
+     * @param pools      the worker pools to run the job, or null to run it at a new thread
+     */
+    public void waitAndRun(int waitMinute, WorkerPools pools) {
         if (this.job == null) return;
-        LocalDateTime now = LocalDateTime.now();
-        LocalDateTime waitEndTime = now.plusMinutes(waitMinute);
+        runUntil(cronExpression.now().plusMinutes(waitMinute), pools == null ? null : pools.executor(this));
+    }
 
+    /**
+     * Runs every execution of the job up to the given time. A rejected start is skipped,
+     * a blocked execution or an interrupt ends the waiting.
+     *
+     * @param waitEndTime the end of the waiting
+     * @param executor    the executor to run the job, or null to run it at a new thread
+     */
+    void runUntil(LocalDateTime waitEndTime, Executor executor) {
+        if (this.job == null) return;
+        LocalDateTime now = cronExpression.now();
         LocalDateTime next = cronExpression.nextTimeAfter(now);
         if (next.isAfter(waitEndTime)) {
             log.debug("Next execution time is after WaitTime => RETURN");
             return;
         }
 
-        int count = executionCountNextMinute(waitMinute);
-        for (int i = 0; i < count; i++) {
-            now = LocalDateTime.now();
+        // the barrier is exclusive, an execution exactly at the end counts
+        long count = cronExpression.count(now, waitEndTime.plusSeconds(1));
+        for (long i = 0; i < count; i++) {
+            now = cronExpression.now();
             next = cronExpression.nextTimeAfter(now);
             if (next.isAfter(waitEndTime)) {
                 log.debug("Next execution time is after WaitTime => RETURN");
                 return;
             }
 
-            if (blockExecution(next)) {
-                log.debug("This Job is registered for this execution time, so block this execution");
-                return;
+            // a rejected start is shed, the next execution time may be admitted again
+            Start start = start(next, executor);
+            if (start == Start.REJECTED) continue;
+            if (start != Start.STARTED) return;
+        }
+
+    }
+
+    /**
+     * Waits until the given execution time and runs the job once.
+     * The execution is skipped if this execution time is already registered.
+     *
+     * @param next the execution time
+     * @return false if the execution was blocked, the start was rejected or the waiting thread was interrupted,
+     * true otherwise
+     */
+    public boolean runAt(LocalDateTime next) {
+        return runAt(next, null);
+    }
+
+    /**
+     * Waits until the given execution time and runs the job once with the given executor.
+     * The execution is skipped if this execution time is already registered.
+     *
+     * A start which is rejected, for example by a full pool or the admission control, isn't registered,
+     * so the execution time can be run again.
+     *
+     * @param next     the execution time
+     * @param executor the executor to run the job, or null to run it at a new thread
+     * @return false if the execution was blocked, the start was rejected or the waiting thread was interrupted,
+     * true otherwise
+     */
+    public boolean runAt(LocalDateTime next, Executor executor) {
+        return start(next, executor) == Start.STARTED;
+    }
+
+    /**
+     * The result of a start at an execution time.
+     */
+    private enum Start {
+        STARTED, BLOCKED, REJECTED, INTERRUPTED
+    }
+
+    private Start start(LocalDateTime next, Executor executor) {
+        if (this.job == null) return Start.BLOCKED;
+
+        // only a look, the execution time is registered by the worker which runs it
+        if (next.format(UTILS.formatter).equals(getLastExecution())) {
+            log.debug("This Job is registered for this execution time, so block this execution");
+            return Start.BLOCKED;
+        }
+
+        log.info("wait for start job {} at {}", job.getName(), next.format(UTILS.formatter));
+        LocalDateTime start = next.plusSeconds(staggerSeconds);
+        long delay;
+        while ((delay = cronExpression.toEpochMilli(start) - System.currentTimeMillis()) > 0) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return Start.INTERRUPTED;
             }
+        }
 
-            log.info("wait for start job {} at {}", job.getName(), getNextExecution());
-            while (next.isAfter(LocalDateTime.now())) {
-                try {
-                    Thread.sleep(250);
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
+        log.debug("execution job {} at new Thread", job.getName());
+        // a start which is rejected or skipped isn't registered, so it isn't lost
+        CompletableFuture<Boolean> completion = executeAsync(next,
+                executor == null ? JobThreads.executor("Job-" + job.getName()) : executor);
+
+        log.debug("Wait for execution job {} ", job.getName());
+        try {
+            completion.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RejectedExecutionException) {
+                log.warn("Execution of job {} at {} rejected", job.getName(), next.format(UTILS.formatter));
+                return Start.REJECTED;
+            }
+            log.error("Running exception", e.getCause());
+        }
+        return Start.STARTED;
+    }
+
+    /**
+     * Runs the job once for the given execution time at the calling thread.
+     * The execution is skipped if this execution time is already registered.
+     *
+     * @param fireTime the execution time
+     * @return false if the execution was blocked, true otherwise
+     */
+    public boolean execute(LocalDateTime fireTime) {
+        try {
+            return executeAsync(fireTime, Runnable::run).join();
+        } catch (CompletionException e) {
+            log.error("Running exception", e.getCause());
+            return true;
+        }
+    }
+
+    /**
+     * Runs the job once for the given execution time with the given executor.
+     * The execution is skipped if this execution time is already registered.
+     * <p>
+     * The returned future completes as soon as the job is ready, with false if the execution was blocked.
+     * It completes exceptionally if the job throws an exception or the executor rejects the job.
+     *
+     * @param fireTime the execution time
+     * @param executor the executor to run the job
+     * @return the completion of this execution
+     */
+    public CompletableFuture<Boolean> executeAsync(LocalDateTime fireTime, Executor executor) {
+        return executeAsync(fireTime, executor, ExecutionStore.BLOCKED);
+    }
+
+    /**
+     * @param token the fencing token of an execution which is registered already,
+     *              or {@link ExecutionStore#BLOCKED} to register it before it runs
+     */
+    private CompletableFuture<Boolean> executeAsync(LocalDateTime fireTime, Executor executor, long token) {
+        CompletableFuture<Boolean> completion = new CompletableFuture<>();
+        if (this.job == null) {
+            completion.complete(false);
+            return completion;
+        }
+        Execution execution = new Execution(this.prefId, fireTime, executor, token, completion);
+        OverlapPolicy policy = getOverlapPolicy();
+        if (policy == OverlapPolicy.ALLOW) {
+            submit(execution, false);
+            return completion;
+        }
+
+        while (true) {
+            RunStatus current = status.get();
+            // read after the state, a newer running execution changes the state
+            Execution target = running;
+            if (current.state == RunState.IDLE) {
+                if (status.compareAndSet(current, new RunStatus(RunState.QUEUED, null))) {
+                    submit(execution, true);
+                    return completion;
                 }
+                continue;
+            }
+            if (policy == OverlapPolicy.SKIP || (policy == OverlapPolicy.QUEUE && current.waiting != null)) {
+                log.info("Job {} is {}, execution at {} skipped", job.getName(), current.state, fireTime.format(UTILS.formatter));
+                completion.complete(false);
+                return completion;
             }
 
-            log.debug("execution job {} at new Thread", job.getName());
-            AtomicBoolean WAIT = new AtomicBoolean(true);
-
-            Thread thread = new Thread(new Runnable() {
-                @Override
-                public void run() {
-                    try {
-                        job.run();
-                        WAIT.set(false);
-                    } catch (Exception e) {
-                        WAIT.set(false);
-                        log.error("Running exception", e);
-                    }
+            // QUEUE or CANCEL, the new execution waits until the current one is finished
+            boolean cancel = policy == OverlapPolicy.CANCEL && current.state == RunState.RUNNING;
+            if (status.compareAndSet(current, new RunStatus(cancel ? RunState.CANCELLING : current.state, execution))) {
+                if (current.waiting != null) {
+                    log.info("Job {} execution at {} replaced", job.getName(), current.waiting.fireTime.format(UTILS.formatter));
+                    current.waiting.completion.complete(false);
                 }
-            });
-            thread.start();
+                if (cancel) {
+                    log.info("Job {} is running, cancel it for the execution at {}", job.getName(), fireTime.format(UTILS.formatter));
+                    if (target != null) job.cancel(target.run);
+                }
+                return completion;
+            }
+        }
+    }
+
+    private void submit(Execution execution, boolean stateful) {
+        Task task = new Task(execution, stateful);
+        try {
+            execution.executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            task.rejected(e);
+        }
+    }
+
+    /**
+     * The start of an execution. A start which is rejected, also a delayed one of the admission control,
+     * completes the execution exceptionally and frees the job for the next execution.
+     */
+    private final class Task implements AdmissionControl.Rejectable {
+        private final Execution execution;
+        private final boolean stateful;
+
+        Task(Execution execution, boolean stateful) {
+            this.execution = execution;
+            this.stateful = stateful;
+        }
+
+        @Override
+        public void run() {
+            Cronjob.this.run(execution, stateful);
+        }
 
-            log.debug("Wait for execution job {} ", job.getName());
-            while (WAIT.get()) {
+        @Override
+        public void rejected(RejectedExecutionException e) {
+            if (stateful) finished();
+            execution.completion.completeExceptionally(e);
+        }
+    }
+
+    private void run(Execution execution, boolean stateful) {
+        if (stateful) {
+            running = execution;
+            status.updateAndGet(current -> new RunStatus(current.state == RunState.QUEUED ? RunState.RUNNING : current.state, current.waiting));
+        } else {
+            parallelRuns.incrementAndGet();
+        }
+
+        boolean executed = false;
+        Throwable throwable = null;
+        try {
+            if (execution.token == ExecutionStore.BLOCKED && blockExecution(execution)) {
+                log.debug("This Job is registered for this execution time, so block this execution");
+            } else {
+                log.debug("execution job {}", job.getName());
+                boolean success = false;
+                long start = System.currentTimeMillis();
                 try {
-                    Thread.sleep(200);
-                } catch (InterruptedException e) {
-                    throw new RuntimeException(e);
+                    runJob(execution);
+                    success = true;
+                } finally {
+                    executionStore.finished(this.prefId, execution.token, success);
+                    record(execution, start, success);
                 }
+                log.debug("Job {} ready executed", job.getName());
+                completed(execution.fireTime);
+                executed = true;
+            }
+        } catch (Throwable t) {
+            throwable = t;
+        } finally {
+            if (stateful) {
+                running = null;
+                finished();
+            } else {
+                parallelRuns.decrementAndGet();
             }
-            log.debug("Job {} ready executed", job.getName());
         }
 
+        if (throwable != null) {
+            execution.completion.completeExceptionally(throwable);
+        } else {
+            execution.completion.complete(executed);
+        }
+    }
+
+    private void finished() {
+        while (true) {
+            RunStatus current = status.get();
+            if (current.waiting == null) {
+                if (status.compareAndSet(current, RunStatus.IDLE)) return;
+            } else if (status.compareAndSet(current, new RunStatus(RunState.QUEUED, null))) {
+                submit(current.waiting, true);
+                return;
+            }
+        }
+    }
+
+    private void record(Execution execution, long start, boolean success) {
+        ExecutionHistory history = executionHistory;
+        if (history == null) return;
+        LocalDateTime fireTime = execution.fireTime;
+        Duration duration = execution.run.getDuration();
+        long millis = duration == null ? System.currentTimeMillis() - start : duration.MILLIS;
+        long scheduled = cronExpression.toEpochMilli(fireTime.plusSeconds(staggerSeconds));
+        try {
+            history.record(this.prefId, scheduled / 1000, start - scheduled, millis, success);
+        } catch (RuntimeException e) {
+            log.error("Can't record execution of job {}", job.getName(), e);
+        }
+    }
+
+    private void runJob(Execution execution) {
+        String timeout = options.get(TIMEOUT_OPTION);
+        if (timeout == null) {
+            job.run(job.TIME_OUT, job.TIME_OUT_UNIT, execution.run);
+            return;
+        }
+        long millis;
+        if (timeout.trim().equalsIgnoreCase(TIMEOUT_UNTIL_NEXT)) {
+            LocalDateTime next = cronExpression.nextTimeAfter(execution.fireTime);
+            if (next == null) {
+                job.run(job.TIME_OUT, job.TIME_OUT_UNIT, execution.run);
+                return;
+            }
+            millis = Math.max(1, cronExpression.toEpochMilli(next.plusSeconds(staggerSeconds)) - System.currentTimeMillis());
+        } else {
+            millis = TimeUnit.SECONDS.toMillis(Long.parseLong(timeout.trim()));
+        }
+        job.run(millis, TimeUnit.MILLISECONDS, execution.run);
+    }
+
+    /**
+     * @return the state of the executions of this job
+     */
+    public RunState getRunState() {
+        return parallelRuns.get() > 0 ? RunState.RUNNING : status.get().state;
+    }
+
+    /**
+     * Retrieves the overlap policy of this job, set with the job option overlap.
+     *
+     * @return the overlap policy, ALLOW if the option isn't set
+     */
+    public OverlapPolicy getOverlapPolicy() {
+        return OverlapPolicy.getFromString(options.get(OverlapPolicy.OPTION));
+    }
+
+    /**
+     * Sets the listener which is called after every successful execution of this job,
+     * with this job and the execution time.
+     *
+     * @param listener the listener, or null to remove it
+     */
+    public void setCompletionListener(BiConsumer<Cronjob, LocalDateTime> listener) {
+        this.completionListener = listener;
+    }
+
+    private void completed(LocalDateTime fireTime) {
+        BiConsumer<Cronjob, LocalDateTime> listener = completionListener;
+        if (listener == null) return;
+        try {
+            listener.accept(this, fireTime);
+        } catch (RuntimeException e) {
+            log.error("Completion listener of job {} failed", job.getName(), e);
+        }
     }
 
     /**
@@ -210,45 +664,169 @@ public class Cronjob {
      * @return the count of executions in the next specified minutes
      */
     public int executionCountNextMinute(int minute) {
-        LocalDateTime next = LocalDateTime.now();
-        LocalDateTime inMin = next.plusMinutes(minute);
-        int count = 0;
-        while (true) {
-            next = cronExpression.nextTimeAfter(next);
-            if (next.isAfter(inMin)) {
-                break;
-            }
-            count++;
+        LocalDateTime now = cronExpression.now();
+        // the barrier is exclusive, an execution exactly at the end counts
+        LocalDateTime barrier = now.plusMinutes(minute).plusSeconds(1);
+        return (int) Math.min(Integer.MAX_VALUE, cronExpression.count(now, barrier));
+    }
+
+    /**
+     * Retrieves the delay of every execution of this job in seconds.
+     *
+     * @return the delay in seconds
+     */
+    public int getStaggerSeconds() {
+        return staggerSeconds;
+    }
+
+    /**
+     * Sets the delay of every execution of this job, see {@link CronJobList#stagger(int)}.
+     *
+     * @param seconds the delay in seconds
+     */
+    public void setStaggerSeconds(int seconds) {
+        this.staggerSeconds = seconds;
+    }
+
+    /**
+     * Retrieves the recovery policy of this job, set with the job option recover.
+     *
+     * @return the recovery policy, REPORT if the option isn't set
+     */
+    public RecoveryPolicy getRecoveryPolicy() {
+        return RecoveryPolicy.getFromString(options.get(RecoveryPolicy.OPTION));
+    }
+
+    /**
+     * Handles the execution of this job which was interrupted by the end of its scheduler process,
+     * according to the recovery policy. Call it at the start of the scheduler, before the job is scheduled.
+     * <p>
+     * The returned future completes as soon as the interrupted execution is handled,
+     * with true if it was run again.
+     *
+     * @param executor the executor to run the interrupted execution again
+     * @return the completion of the recovery
+     */
+    public CompletableFuture<Boolean> recoverInterrupted(Executor executor) {
+        ExecutionStore.Claim claim = this.job == null ? null : executionStore.takeInterrupted(this.prefId);
+        if (claim == null) return CompletableFuture.completedFuture(false);
+        LocalDateTime fireTime = claim.fireTime;
+        RecoveryPolicy policy = getRecoveryPolicy();
+        if (policy == RecoveryPolicy.RERUN) {
+            log.warn("Execution of job {} at {} was interrupted, run it again", job.getName(), fireTime.format(UTILS.formatter));
+            // the execution time is registered already, the claim is released if the run doesn't start
+            return executeAsync(fireTime, executor, claim.token).whenComplete((executed, throwable) -> {
+                if (throwable instanceof RejectedExecutionException || Boolean.FALSE.equals(executed)) {
+                    log.warn("Execution of job {} at {} wasn't run again", job.getName(), fireTime.format(UTILS.formatter));
+                    executionStore.finished(this.prefId, claim.token, false);
+                }
+            });
         }
-        return count;
+        log.error("Execution of job {} at {} was interrupted, recovery policy {}", job.getName(), fireTime.format(UTILS.formatter), policy);
+        try {
+            if (policy == RecoveryPolicy.CLEANUP) job.cleanUp(fireTime);
+        } catch (RuntimeException e) {
+            log.error("Clean up of job {} failed", job.getName(), e);
+        } finally {
+            executionStore.finished(this.prefId, claim.token, false);
+        }
+        return CompletableFuture.completedFuture(false);
     }
 
     /**
-     * Blocks execution of the job until the specified time.
+     * Retrieves the misfire policy of this job, set with the job option misfire.
      *
-     * @param next the time to allow execution
-     * @return true if execution is blocked, false otherwise
+     * @return the misfire policy
+     */
+    public MisfirePolicy getMisfirePolicy() {
+        return MisfirePolicy.getFromString(options.get(MisfirePolicy.OPTION));
+    }
+
+    /**
+     * Retrieves the missed execution times after the given time up to now, which have to run
+     * according to the misfire policy. SKIP returns none, COALESCE the latest one and
+     * CATCH_UP the latest ones up to the job option misfire.max.
+     *
+     * @param after the last execution time, can be null
+     * @param now   the current time
+     * @return the missed execution times to run, in chronological order
      */
-    private boolean blockExecution(LocalDateTime next) {
-        synchronized (log) {
-            String formattedDateTime = next.format(UTILS.formatter);
-            String lastStr = prefs.get(this.prefId, "");
-            if (formattedDateTime.equals(lastStr)) {
-                log.debug("BLOCK => Last {} == Next {}", lastStr, formattedDateTime);
-                return true;
+    public ArrayList<LocalDateTime> getMissedExecutions(LocalDateTime after, LocalDateTime now) {
+        ArrayList<LocalDateTime> list = new ArrayList<>();
+        if (after == null) return list;
+        int max;
+        switch (getMisfirePolicy()) {
+            case COALESCE:
+                max = 1;
+                break;
+            case CATCH_UP:
+                max = options.getInt(MisfirePolicy.OPTION_MAX, MisfirePolicy.DEFAULT_MAX);
+                break;
+            default:
+                return list;
+        }
+        if (max < 1) return list;
+
+        ArrayDeque<LocalDateTime> latest = new ArrayDeque<>(max);
+        int missed = 0;
+        // read the missed times in batches, a long outage of a frequent job doesn't fill the memory
+        FireTimeBuffer buffer = new FireTimeBuffer(MISSED_BATCH);
+        LocalDateTime barrier = now.plusSeconds(1);
+        LocalDateTime next = after;
+        do {
+            cronExpression.nextTimeAfter(next, MISSED_BATCH, barrier, buffer);
+            missed += buffer.size();
+            // only the latest max times of the batch can be kept
+            for (int i = Math.max(0, buffer.size() - max); i < buffer.size(); i++) {
+                if (latest.size() == max) latest.removeFirst();
+                latest.addLast(buffer.getTime(i));
             }
+            if (!buffer.isEmpty()) next = buffer.getTime(buffer.size() - 1);
+        } while (buffer.size() == MISSED_BATCH);
+        if (missed > 0) {
+            log.info("Job {} missed {} executions after {}, misfire policy {} runs {} of them",
+                    getName(), missed, after.format(UTILS.formatter), getMisfirePolicy(), latest.size());
+        }
+        list.addAll(latest);
+        return list;
+    }
 
-            log.debug("RUN => Last {} == Next {}", lastStr, formattedDateTime);
+    /**
+     * The last execution is stored with minute resolution, so all execution times of this minute count as done.
+     *
+     * @return the time after which execution times are missed, or null if the job was never executed
+     */
+    LocalDateTime getMisfireStart() {
+        LocalDateTime last = getLastExecutionTime();
+        return last == null ? null : last.plusSeconds(59);
+    }
 
-            //register execution time
-            prefs.put(this.prefId, formattedDateTime);
-            try {
-                prefs.flush();
-            } catch (BackingStoreException e) {
-                e.printStackTrace();
-            }
-            return false;
+    /**
+     * Runs the executions missed since the last execution, according to the misfire policy.
+     *
+     * @param pools the worker pools to run the job, or null to run it at a new thread
+     * @return the number of executed runs
+     */
+    public int runMissedExecutions(WorkerPools pools) {
+        int count = 0;
+        for (LocalDateTime missed : getMissedExecutions(getMisfireStart(), cronExpression.now())) {
+            if (runAt(missed, pools == null ? null : pools.executor(this))) count++;
         }
+        return count;
+    }
+
+    /**
+     * Registers the execution time of an execution, the execution keeps the fencing token.
+     *
+     * @param execution the execution to register
+     * @return true if execution is blocked, false otherwise
+     */
+    private boolean blockExecution(Execution execution) {
+        long token = executionStore.acquire(this.prefId, execution.fireTime);
+        if (token == ExecutionStore.BLOCKED) return true;
+        log.debug("Job {} owns execution at {} with token {}", job.getName(), execution.fireTime.format(UTILS.formatter), token);
+        execution.token = token;
+        return false;
     }
 
     /**
@@ -266,7 +844,7 @@ public class Cronjob {
      * @return the next execution time as a string
      */
     public String getNextExecution() {
-        return cronExpression.nextTimeAfter(LocalDateTime.now()).format(UTILS.formatter);
+        return cronExpression.nextTimeAfter(cronExpression.now()).format(UTILS.formatter);
     }
 
     /**
@@ -279,6 +857,7 @@ public class Cronjob {
         sb.append("; ").append(this.job.getType().toIniString());
         sb.append(" ;").append(this.job.getName());
         sb.append(" ;").append(this.job.getArgs());
+        if (!options.isEmpty()) sb.append(" ;").append(options.toIniString());
         return sb.toString();
     }
 
@@ -331,4 +910,40 @@ public class Cronjob {
     public Job getJob() {
         return this.job;
     }
+
+    /**
+     * An immutable run state with the execution waiting behind the current one.
+     */
+    private static final class RunStatus {
+        static final RunStatus IDLE = new RunStatus(RunState.IDLE, null);
+
+        final RunState state;
+        final Execution waiting;
+
+        RunStatus(RunState state, Execution waiting) {
+            this.state = state;
+            this.waiting = waiting;
+        }
+    }
+
+    /**
+     * A requested execution of this job.
+     */
+    private static final class Execution {
+        final LocalDateTime fireTime;
+        final Executor executor;
+        final CompletableFuture<Boolean> completion;
+        // the fencing token, BLOCKED until the execution time is registered
+        volatile long token;
+        // the run of the job, which can be canceled before it starts and is stale after a newer execution
+        final CancelTimeOutJob.Run run;
+
+        Execution(String jobId, LocalDateTime fireTime, Executor executor, long token, CompletableFuture<Boolean> completion) {
+            this.fireTime = fireTime;
+            this.run = new CancelTimeOutJob.Run(fireTime, () -> executionStore.isCurrent(jobId, this.token));
+            this.executor = executor;
+            this.token = token;
+            this.completion = completion;
+        }
+    }
 }
@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of CrontabScheduler.
+ *
+ * CrontabScheduler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * CrontabScheduler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CrontabScheduler. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.crontab;
+
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * The DueIndex maps every minute of a rolling horizon, by default 24 hours, to a bitmap of the jobs
+ * which are due in this minute. The id of a job is its index in the job list.
+ * So all jobs due in a minute or a time span are found by reading bitmaps instead of
+ * evaluating the cron expression of every job.
+ * <p>
+ * {@link #advance(long)} moves the horizon, only the minutes which enter the horizon are indexed,
+ * and only the jobs with an execution time in these minutes are searched.
+ * A DueIndex isn't thread safe.
+ */
+public class DueIndex {
+
+    /**
+     * The default horizon of 24 hours in minutes.
+     */
+    public static final int DEFAULT_HORIZON = 24 * 60;
+
+    private final List<Cronjob> jobs;
+    private final BitSet[] buckets;
+
+    // the next execution time of every job, which isn't indexed yet
+    private final long[] cursors;
+
+    // the first indexed epoch minute, the horizon ends before base + buckets.length
+    private long base;
+
+    /**
+     * Constructs a DueIndex of the given jobs for the next 24 hours.
+     *
+     * @param jobs the jobs, the index of a job in the list is its id
+     */
+    public DueIndex(List<Cronjob> jobs) {
+        this(jobs, DEFAULT_HORIZON, System.currentTimeMillis() / 1000);
+    }
+
+    /**
+     * Constructs a DueIndex of the given jobs.
+     *
+     * @param jobs           the jobs, the index of a job in the list is its id
+     * @param horizonMinutes the number of indexed minutes
+     * @param nowEpochSecond the current time, execution times after it are indexed
+     */
+    public DueIndex(List<Cronjob> jobs, int horizonMinutes, long nowEpochSecond) {
+        if (horizonMinutes < 1) throw new RuntimeException("Horizon must be at least one minute: " + horizonMinutes);
+        this.jobs = jobs;
+        this.buckets = new BitSet[horizonMinutes];
+        for (int i = 0; i < horizonMinutes; i++) {
+            buckets[i] = new BitSet(jobs.size());
+        }
+        this.cursors = new long[jobs.size()];
+        rebuild(nowEpochSecond);
+    }
+
+    private void rebuild(long nowEpochSecond) {
+        for (BitSet bucket : buckets) {
+            bucket.clear();
+        }
+        base = Math.floorDiv(nowEpochSecond, 60);
+        for (int id = 0; id < jobs.size(); id++) {
+            cursors[id] = jobs.get(id).cronExpression.nextFireEpochSecond(nowEpochSecond);
+            fill(id);
+        }
+    }
+
+    /**
+     * Indexes the execution times of a job up to the end of the horizon.
+     */
+    private void fill(int id) {
+        long end = (base + buckets.length) * 60;
+        LocalCronExpression expression = jobs.get(id).cronExpression;
+        long next = cursors[id];
+        while (next != CompiledCron.NONE && next < end) {
+            long minute = Math.floorDiv(next, 60);
+            buckets[Math.floorMod(minute, buckets.length)].set(id);
+            // one bit per minute, the other execution times of this minute don't matter
+            next = expression.nextFireEpochSecond(minute * 60 + 59);
+        }
+        cursors[id] = next;
+    }
+
+    /**
+     * Moves the horizon to the given time. The minutes before it are dropped and the minutes
+     * which enter the horizon are indexed. The index has minute resolution, the minute of the given time
+     * keeps its execution times before the given time.
+     *
+     * @param nowEpochSecond the current time
+     */
+    public void advance(long nowEpochSecond) {
+        long minute = Math.floorDiv(nowEpochSecond, 60);
+        if (minute <= base) return;
+        if (minute - base >= buckets.length) {
+            // the whole horizon is outdated
+            rebuild(nowEpochSecond);
+            return;
+        }
+        for (long m = base; m < minute; m++) {
+            buckets[Math.floorMod(m, buckets.length)].clear();
+        }
+        base = minute;
+        long end = (base + buckets.length) * 60;
+        for (int id = 0; id < cursors.length; id++) {
+            if (cursors[id] != CompiledCron.NONE && cursors[id] < end) fill(id);
+        }
+    }
+
+    /**
+     * Retrieves the jobs which are due in the given minute.
+     *
+     * @param epochMinute the minutes since the epoch
+     * @return a new bitmap of the ids of the due jobs, empty if the minute is outside the horizon
+     */
+    public BitSet getDue(long epochMinute) {
+        if (epochMinute < base || epochMinute >= base + buckets.length) return new BitSet();
+        return (BitSet) buckets[Math.floorMod(epochMinute, buckets.length)].clone();
+    }
+
+    /**
+     * Retrieves the jobs which are due from the minute of the given time for the given number of minutes,
+     * limited to the horizon.
+     *
+     * @param nowEpochSecond the current time
+     * @param minutes        the number of minutes
+     * @return a new bitmap of the ids of the due jobs
+     */
+    public BitSet getDueWithin(long nowEpochSecond, int minutes) {
+        BitSet due = new BitSet(jobs.size());
+        long first = Math.max(base, Math.floorDiv(nowEpochSecond, 60));
+        long last = Math.min(base + buckets.length - 1, Math.floorDiv(nowEpochSecond + minutes * 60L, 60));
+        for (long m = first; m <= last; m++) {
+            due.or(buckets[Math.floorMod(m, buckets.length)]);
+        }
+        return due;
+    }
+
+    /**
+     * @param id the id of a job
+     * @return the job
+     */
+    public Cronjob getJob(int id) {
+        return jobs.get(id);
+    }
+
+    /**
+     * @return the number of indexed minutes
+     */
+    public int getHorizon() {
+        return buckets.length;
+    }
+}
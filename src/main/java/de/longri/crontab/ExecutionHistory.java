@@ -0,0 +1,355 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of CrontabScheduler.
+ *
+ * CrontabScheduler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * CrontabScheduler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CrontabScheduler. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.crontab;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The ExecutionHistory keeps the recent executions of every job in a ring buffer of fixed size,
+ * at a memory-mapped file. Every record holds the execution time, the start latency, the duration
+ * and the outcome of one execution, the oldest record of a job is overwritten by the newest one.
+ * <p>
+ * The statistics of a job, like the percentiles of the duration and the failure rate, are computed
+ * from the ring buffer of this job only, the history of the other jobs isn't read.
+ * The file is locked with {@link FileChannel#lock()} while it is written, so the overlapping
+ * scheduler processes of the one-shot mode can share one history.
+ */
+public class ExecutionHistory implements Closeable {
+
+    private final static Logger log = LoggerFactory.getLogger(ExecutionHistory.class);
+
+    static final int MAGIC = 0x43524A48;
+    static final int VERSION = 1;
+
+    /**
+     * magic, version, capacity and number of jobs (ints)
+     */
+    static final int HEADER_SIZE = 16;
+
+    /**
+     * job hash and number of written records (longs)
+     */
+    static final int JOB_HEADER_SIZE = 16;
+
+    /**
+     * execution time, start latency, duration (longs) and outcome (int), padded to 32 bytes
+     */
+    static final int RECORD_SIZE = 32;
+
+    /**
+     * The default number of executions kept per job.
+     */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private static final int INITIAL_JOBS = 16;
+
+    // a file lock is held by the whole JVM, so the threads of this process are synchronized per history file
+    private static final ConcurrentHashMap<String, Object> LOCKS = new ConcurrentHashMap<>();
+
+    private final File file;
+    private final Object monitor;
+    private final HashMap<Long, Integer> jobs = new HashMap<>();
+    private int scanned;
+    private int capacity;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+
+    /**
+     * Opens or creates the history at the given file, with {@link #DEFAULT_CAPACITY} executions per job.
+     *
+     * @param file the history file
+     */
+    public ExecutionHistory(File file) {
+        this(file, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Opens or creates the history at the given file.
+     * The capacity of an existing history is kept.
+     *
+     * @param file     the history file
+     * @param capacity the number of executions kept per job
+     */
+    public ExecutionHistory(File file, int capacity) {
+        if (capacity < 1) throw new RuntimeException("History capacity must be positive: " + capacity);
+        this.file = file.getAbsoluteFile();
+        this.monitor = LOCKS.computeIfAbsent(this.file.getPath(), key -> new Object());
+        File dir = this.file.getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs())
+            throw new RuntimeException("Can't create history directory " + dir);
+        synchronized (monitor) {
+            try {
+                channel = FileChannel.open(this.file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                FileLock lock = channel.lock();
+                try {
+                    if (channel.size() < HEADER_SIZE) {
+                        this.capacity = capacity;
+                        map(INITIAL_JOBS);
+                        buffer.putInt(0, MAGIC);
+                        buffer.putInt(4, VERSION);
+                        buffer.putInt(8, capacity);
+                    } else {
+                        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+                        if (buffer.getInt(0) != MAGIC)
+                            throw new RuntimeException("File " + this.file + " isn't an execution history");
+                        this.capacity = buffer.getInt(8);
+                    }
+                } finally {
+                    lock.release();
+                }
+            } catch (IOException | RuntimeException e) {
+                try {
+                    if (channel != null) channel.close();
+                } catch (IOException ignored) {
+                }
+                if (e instanceof RuntimeException) throw (RuntimeException) e;
+                throw new RuntimeException("Can't open history " + this.file, e);
+            }
+        }
+        log.debug("History {} with {} executions per job", this.file, this.capacity);
+    }
+
+    private void map(int jobCount) throws IOException {
+        long size = position(jobCount);
+        if (size > Integer.MAX_VALUE) throw new RuntimeException("History " + file + " is too large");
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, channel.size()));
+    }
+
+    private long position(int job) {
+        return HEADER_SIZE + (long) job * (JOB_HEADER_SIZE + (long) capacity * RECORD_SIZE);
+    }
+
+    /**
+     * Reads the jobs which are added by other processes. The caller holds the file lock.
+     */
+    private void refresh() throws IOException {
+        if (channel.size() > buffer.capacity()) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+        }
+        int count = buffer.getInt(12);
+        for (; scanned < count; scanned++) {
+            jobs.put(buffer.getLong((int) position(scanned)), scanned);
+        }
+    }
+
+    private int add(long hash) throws IOException {
+        int count = buffer.getInt(12);
+        if (position(count + 1) > buffer.capacity()) {
+            map(Math.max(count + 1, count * 2));
+        }
+        int pos = (int) position(count);
+        buffer.putLong(pos, hash);
+        buffer.putLong(pos + 8, 0);
+        buffer.putInt(12, count + 1);
+        jobs.put(hash, count);
+        scanned = count + 1;
+        return count;
+    }
+
+    /**
+     * Records an execution of a job.
+     *
+     * @param jobId          the unique id of the job
+     * @param fireTime       the execution time in epoch seconds
+     * @param latencyMillis  the time from the execution time to the start in milliseconds
+     * @param durationMillis the duration of the execution in milliseconds
+     * @param success        false if the execution failed
+     */
+    public void record(String jobId, long fireTime, long latencyMillis, long durationMillis, boolean success) {
+        long hash = ShardRing.hash(jobId);
+        synchronized (monitor) {
+            try {
+                if (buffer == null) throw new RuntimeException("History " + file + " is closed");
+                FileLock lock = channel.lock();
+                try {
+                    refresh();
+                    Integer job = jobs.get(hash);
+                    int pos = (int) position(job == null ? add(hash) : job);
+                    long written = buffer.getLong(pos + 8);
+                    int record = pos + JOB_HEADER_SIZE + (int) (written % capacity) * RECORD_SIZE;
+                    buffer.putLong(record, fireTime);
+                    buffer.putLong(record + 8, latencyMillis);
+                    buffer.putLong(record + 16, durationMillis);
+                    buffer.putInt(record + 24, (success ? ExecutionJournal.Outcome.SUCCEEDED : ExecutionJournal.Outcome.FAILED).ordinal());
+                    // the record counts after it is written completely
+                    buffer.putLong(pos + 8, written + 1);
+                } finally {
+                    lock.release();
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("Can't write history " + file, e);
+            }
+        }
+    }
+
+    /**
+     * Computes the statistics of the recent executions of a job.
+     *
+     * @param jobId the unique id of the job
+     * @return the statistics, without executions if the job has none
+     */
+    public Stats getStats(String jobId) {
+        long hash = ShardRing.hash(jobId);
+        long[] durations;
+        long[] latencies;
+        int failures = 0;
+        synchronized (monitor) {
+            try {
+                if (buffer == null) throw new RuntimeException("History " + file + " is closed");
+                FileLock lock = channel.lock(0, Long.MAX_VALUE, true);
+                try {
+                    refresh();
+                    Integer job = jobs.get(hash);
+                    int pos = job == null ? 0 : (int) position(job);
+                    int n = job == null ? 0 : (int) Math.min(buffer.getLong(pos + 8), capacity);
+                    durations = new long[n];
+                    latencies = new long[n];
+                    for (int i = 0; i < n; i++) {
+                        int record = pos + JOB_HEADER_SIZE + i * RECORD_SIZE;
+                        latencies[i] = buffer.getLong(record + 8);
+                        durations[i] = buffer.getLong(record + 16);
+                        if (buffer.getInt(record + 24) == ExecutionJournal.Outcome.FAILED.ordinal()) failures++;
+                    }
+                } finally {
+                    lock.release();
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("Can't read history " + file, e);
+            }
+        }
+        return new Stats(durations, latencies, failures);
+    }
+
+    /**
+     * @return the number of executions kept per job
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the history file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Writes the history to the disk and releases the file.
+     */
+    @Override
+    public void close() {
+        synchronized (monitor) {
+            if (buffer == null) return;
+            try {
+                buffer.force();
+                buffer = null;
+                channel.close();
+            } catch (IOException e) {
+                throw new RuntimeException("Can't close history " + file, e);
+            }
+        }
+    }
+
+    /**
+     * The statistics of the recent executions of a job.
+     */
+    public static final class Stats {
+        private final long[] durations;
+        private final long[] latencies;
+        private final int failures;
+
+        Stats(long[] durations, long[] latencies, int failures) {
+            Arrays.sort(durations);
+            Arrays.sort(latencies);
+            this.durations = durations;
+            this.latencies = latencies;
+            this.failures = failures;
+        }
+
+        /**
+         * @return the number of recent executions
+         */
+        public int getCount() {
+            return durations.length;
+        }
+
+        /**
+         * @return the number of failed executions
+         */
+        public int getFailures() {
+            return failures;
+        }
+
+        /**
+         * @return the share of failed executions between 0 and 1, 0 without executions
+         */
+        public double getFailureRate() {
+            return durations.length == 0 ? 0 : (double) failures / durations.length;
+        }
+
+        /**
+         * Retrieves a percentile of the durations, like 99 for the duration which 99% of the executions don't exceed.
+         *
+         * @param percentile the percentile between 0 (exclusive) and 100
+         * @return the duration in milliseconds, or -1 without executions
+         */
+        public long getDuration(double percentile) {
+            return percentile(durations, percentile);
+        }
+
+        /**
+         * Retrieves a percentile of the start latencies, the time from the execution time to the start.
+         *
+         * @param percentile the percentile between 0 (exclusive) and 100
+         * @return the latency in milliseconds, or -1 without executions
+         */
+        public long getLatency(double percentile) {
+            return percentile(latencies, percentile);
+        }
+
+        private static long percentile(long[] sorted, double percentile) {
+            if (percentile <= 0 || percentile > 100) throw new RuntimeException("Percentile out of range: " + percentile);
+            if (sorted.length == 0) return -1;
+            // nearest rank
+            int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+            return sorted[Math.max(0, rank - 1)];
+        }
+
+        @Override
+        public String toString() {
+            if (durations.length == 0) return "no executions";
+            return String.format(Locale.ROOT, "%d executions, duration p50 %d ms, p95 %d ms, p99 %d ms, start latency p99 %d ms, failure rate %.1f%%",
+                    getCount(), getDuration(50), getDuration(95), getDuration(99), getLatency(99), getFailureRate() * 100);
+        }
+    }
+}
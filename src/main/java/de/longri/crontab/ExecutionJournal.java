@@ -0,0 +1,450 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of CrontabScheduler.
+ *
+ * CrontabScheduler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * CrontabScheduler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CrontabScheduler. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.crontab;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The ExecutionJournal registers the executions at an append-only, memory-mapped file of fixed-size records.
+ * Every record holds the job, the execution time, the fencing token, the start and end time and the outcome.
+ * The last record of every job is kept in memory, so the duplicate check and {@link #getLastExecution(String)}
+ * are lookups without any file access, and a registration is a write to the mapped file without
+ * serialization. With a commit window the registrations are synced in groups.
+ * The duplicate check is guarded by a lock per job, so unrelated jobs only share the short append to the file.
+ * <p>
+ * The journal is compacted to the last record of every job when it is full.
+ * An execution which is still started when the journal is opened was interrupted by the end of its process,
+ * it is found by {@link #takeInterrupted(String)}.
+ * A journal is used by one process, a second process fails to open it. For several processes
+ * use the {@link LeaseStore}.
+ * <p>
+ * The executions of jobs which aren't in the journal yet are taken over from a fallback store,
+ * like the {@link PreferencesExecutionStore} which was used before.
+ */
+public class ExecutionJournal implements ExecutionStore, Closeable {
+
+    private final static Logger log = LoggerFactory.getLogger(ExecutionJournal.class);
+
+    /**
+     * The outcome of an execution.
+     */
+    public enum Outcome {
+        /**
+         * The execution is registered and runs, or the process crashed while it was running.
+         */
+        STARTED,
+        /**
+         * The execution is finished without an exception.
+         */
+        SUCCEEDED,
+        /**
+         * The execution is finished with an exception.
+         */
+        FAILED
+    }
+
+    static final int MAGIC = 0x43524A4E;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 16;
+
+    /**
+     * job hash, execution time, token, start, end (longs), outcome and checksum (ints)
+     */
+    static final int RECORD_SIZE = 48;
+
+    private static final int INITIAL_RECORDS = 1024;
+
+    /**
+     * The commit window for a journal which doesn't sync the registrations.
+     */
+    public static final long NO_SYNC = -1;
+
+    private final File file;
+    private final ExecutionStore fallback;
+    private final ConcurrentHashMap<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final Set<Long> checked = ConcurrentHashMap.newKeySet();
+    // the jobs which were running when the journal was closed the last time
+    private final Set<Long> interrupted = ConcurrentHashMap.newKeySet();
+    private final GroupCommit commit;
+
+    // the checks of a job are guarded by the lock of the job, only the append to the file by the journal
+    private final LockStripes locks = new LockStripes(64);
+
+    private FileChannel lockChannel;
+    private FileLock lock;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int count;
+
+    /**
+     * Opens or creates the journal at the given file.
+     *
+     * @param file the journal file
+     */
+    public ExecutionJournal(File file) {
+        this(file, null);
+    }
+
+    /**
+     * Opens or creates the journal at the given file.
+     *
+     * @param file     the journal file
+     * @param fallback the store to take over the last execution of jobs which aren't in the journal, can be null
+     */
+    public ExecutionJournal(File file, ExecutionStore fallback) {
+        this(file, fallback, NO_SYNC);
+    }
+
+    /**
+     * Opens or creates the journal at the given file.
+     * With a commit window every registration returns after it is synced to the disk. The registrations
+     * within the commit window are synced together with one {@link MappedByteBuffer#force()}.
+     *
+     * @param file               the journal file
+     * @param fallback           the store to take over the last execution of jobs which aren't in the journal, can be null
+     * @param commitWindowMillis the commit window in milliseconds, or {@link #NO_SYNC} to return without sync
+     */
+    public ExecutionJournal(File file, ExecutionStore fallback, long commitWindowMillis) {
+        this.file = file.getAbsoluteFile();
+        this.fallback = fallback;
+        this.commit = commitWindowMillis < 0 ? null : new GroupCommit(commitWindowMillis, this::force);
+        File dir = this.file.getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs())
+            throw new RuntimeException("Can't create journal directory " + dir);
+        try {
+            lockChannel = FileChannel.open(new File(this.file.getPath() + ".lock").toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            lock = lockChannel.tryLock();
+            if (lock == null) {
+                lockChannel.close();
+                throw new RuntimeException("Journal " + this.file + " is used by another process");
+            }
+            map(INITIAL_RECORDS);
+            load();
+        } catch (IOException e) {
+            throw new RuntimeException("Can't open journal " + this.file, e);
+        }
+        log.debug("Journal {} with {} records of {} jobs", this.file, count, entries.size());
+    }
+
+    private void map(int records) throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = Math.max(channel.size(), HEADER_SIZE + (long) records * RECORD_SIZE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    private void load() {
+        if (buffer.getInt(0) == 0) {
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+        } else if (buffer.getInt(0) != MAGIC) {
+            throw new RuntimeException("File " + file + " isn't an execution journal");
+        }
+        count = 0;
+        for (int pos = HEADER_SIZE; pos + RECORD_SIZE <= buffer.capacity(); pos += RECORD_SIZE) {
+            long hash = buffer.getLong(pos);
+            Entry entry = new Entry(buffer.getLong(pos + 8), buffer.getLong(pos + 16), buffer.getLong(pos + 24),
+                    buffer.getLong(pos + 32), buffer.getInt(pos + 40));
+            // the end of the journal, or a record which wasn't written completely
+            if (entry.outcome < 0 || entry.outcome >= Outcome.values().length
+                    || buffer.getInt(pos + 44) != checksum(hash, entry)) break;
+            entries.put(hash, entry);
+            count++;
+        }
+        for (Map.Entry<Long, Entry> e : entries.entrySet()) {
+            if (e.getValue().outcome == Outcome.STARTED.ordinal()) interrupted.add(e.getKey());
+        }
+    }
+
+    private static int checksum(long hash, Entry entry) {
+        long h = MAGIC;
+        h = h * 0x9E3779B97F4A7C15L + hash;
+        h = h * 0x9E3779B97F4A7C15L + entry.fireTime;
+        h = h * 0x9E3779B97F4A7C15L + entry.token;
+        h = h * 0x9E3779B97F4A7C15L + entry.start;
+        h = h * 0x9E3779B97F4A7C15L + entry.end;
+        h = h * 0x9E3779B97F4A7C15L + entry.outcome;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private void append(long hash, Entry entry) {
+        if (buffer == null) throw new RuntimeException("Journal " + file + " is closed");
+        int pos = HEADER_SIZE + count * RECORD_SIZE;
+        if (pos + RECORD_SIZE > buffer.capacity()) {
+            ensureCapacity();
+            pos = HEADER_SIZE + count * RECORD_SIZE;
+        }
+        buffer.putLong(pos, hash);
+        buffer.putLong(pos + 8, entry.fireTime);
+        buffer.putLong(pos + 16, entry.token);
+        buffer.putLong(pos + 24, entry.start);
+        buffer.putLong(pos + 32, entry.end);
+        buffer.putInt(pos + 40, entry.outcome);
+        // the checksum is written last, a record without it is ignored at the next start
+        buffer.putInt(pos + 44, checksum(hash, entry));
+        entries.put(hash, entry);
+        count++;
+    }
+
+    private void ensureCapacity() {
+        try {
+            int records = (buffer.capacity() - HEADER_SIZE) / RECORD_SIZE;
+            if (entries.size() * 2 <= count) {
+                // most records are outdated
+                compact();
+            }
+            if (HEADER_SIZE + (count + 1) * RECORD_SIZE > buffer.capacity()) {
+                buffer.force();
+                channel.close();
+                map(records * 2);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Can't extend journal " + file, e);
+        }
+    }
+
+    /**
+     * Rewrites the journal with the last record of every job.
+     */
+    public synchronized void compact() {
+        if (buffer == null) throw new RuntimeException("Journal " + file + " is closed");
+        File tmp = new File(file.getPath() + ".tmp");
+        int records = Math.max(INITIAL_RECORDS, entries.size() * 2);
+        try {
+            try (FileChannel out = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer compacted = out.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) records * RECORD_SIZE);
+                compacted.putInt(0, MAGIC);
+                compacted.putInt(4, VERSION);
+                int pos = HEADER_SIZE;
+                for (Map.Entry<Long, Entry> e : entries.entrySet()) {
+                    Entry entry = e.getValue();
+                    compacted.putLong(pos, e.getKey());
+                    compacted.putLong(pos + 8, entry.fireTime);
+                    compacted.putLong(pos + 16, entry.token);
+                    compacted.putLong(pos + 24, entry.start);
+                    compacted.putLong(pos + 32, entry.end);
+                    compacted.putInt(pos + 40, entry.outcome);
+                    compacted.putInt(pos + 44, checksum(e.getKey(), entry));
+                    pos += RECORD_SIZE;
+                }
+                compacted.force();
+            }
+            channel.close();
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            log.debug("Journal {} compacted from {} to {} records", file, count, entries.size());
+            count = entries.size();
+            map(records);
+        } catch (IOException e) {
+            throw new RuntimeException("Can't compact journal " + file, e);
+        }
+    }
+
+    /**
+     * Retrieves the last record of a job, takes over the last execution of the fallback store if the job
+     * isn't in the journal yet. The caller holds the lock of the job.
+     */
+    private Entry lookup(String jobId) {
+        long hash = ShardRing.hash(jobId);
+        Entry entry = entries.get(hash);
+        if (entry != null || fallback == null || !checked.add(hash)) return entry;
+
+        String last = fallback.getLastExecution(jobId);
+        if (last.isEmpty()) return null;
+        try {
+            LocalDateTime fireTime = UTILS.parseDateTime(last);
+            entry = new Entry(fireTime.toEpochSecond(ZoneOffset.UTC), 1, 0, 0, Outcome.SUCCEEDED.ordinal());
+            synchronized (this) {
+                append(hash, entry);
+            }
+            log.debug("Last execution {} of {} taken over", last, jobId);
+            return entry;
+        } catch (DateTimeParseException e) {
+            log.warn("Can't take over last execution '{}' of {}", last, jobId);
+            return null;
+        }
+    }
+
+    @Override
+    public long acquire(String jobId, LocalDateTime fireTime) {
+        long token;
+        long sequence;
+        synchronized (locks.get(jobId)) {
+            Entry last = lookup(jobId);
+            long local = fireTime.toEpochSecond(ZoneOffset.UTC);
+            if (last != null && ExecutionStore.isRegistered(fireTime, LocalDateTime.ofEpochSecond(last.fireTime, 0, ZoneOffset.UTC))) {
+                log.debug("BLOCK => {} is registered already", fireTime.format(UTILS.formatter));
+                return BLOCKED;
+            }
+            token = (last == null ? BLOCKED : last.token) + 1;
+            // a new execution replaces an interrupted one
+            interrupted.remove(ShardRing.hash(jobId));
+            synchronized (this) {
+                append(ShardRing.hash(jobId), new Entry(local, token, System.currentTimeMillis(), 0, Outcome.STARTED.ordinal()));
+            }
+            sequence = commit == null ? 0 : commit.register();
+        }
+        if (commit != null) commit.await(sequence);
+        return token;
+    }
+
+    @Override
+    public void finished(String jobId, long token, boolean success) {
+        long sequence;
+        synchronized (locks.get(jobId)) {
+            long hash = ShardRing.hash(jobId);
+            Entry last = entries.get(hash);
+            // a newer execution is registered already
+            if (last == null || last.token != token) return;
+            synchronized (this) {
+                append(hash, new Entry(last.fireTime, last.token, last.start, System.currentTimeMillis(),
+                        (success ? Outcome.SUCCEEDED : Outcome.FAILED).ordinal()));
+            }
+            sequence = commit == null ? 0 : commit.register();
+        }
+        if (commit != null) commit.await(sequence);
+    }
+
+    @Override
+    public Claim takeInterrupted(String jobId) {
+        synchronized (locks.get(jobId)) {
+            long hash = ShardRing.hash(jobId);
+            if (!interrupted.remove(hash)) return null;
+            Entry last = entries.get(hash);
+            if (last == null || last.outcome != Outcome.STARTED.ordinal()) return null;
+            return new Claim(LocalDateTime.ofEpochSecond(last.fireTime, 0, ZoneOffset.UTC), last.token);
+        }
+    }
+
+    private void force() {
+        MappedByteBuffer current;
+        synchronized (this) {
+            current = buffer;
+        }
+        // an older mapping is forced before it is replaced
+        if (current != null) current.force();
+    }
+
+    /**
+     * @return the number of syncs of a journal with commit window
+     */
+    long getSyncCount() {
+        return commit == null ? 0 : commit.getSyncCount();
+    }
+
+    @Override
+    public String getLastExecution(String jobId) {
+        Entry last;
+        synchronized (locks.get(jobId)) {
+            last = lookup(jobId);
+        }
+        if (last == null) return "";
+        return LocalDateTime.ofEpochSecond(last.fireTime, 0, ZoneOffset.UTC).format(UTILS.formatter);
+    }
+
+    @Override
+    public boolean isCurrent(String jobId, long token) {
+        Entry last;
+        synchronized (locks.get(jobId)) {
+            last = lookup(jobId);
+        }
+        return last != null && last.token == token;
+    }
+
+    /**
+     * Retrieves the outcome of the last execution of a job.
+     *
+     * @param jobId the unique id of the job
+     * @return the outcome, or null if the job has no execution
+     */
+    public Outcome getOutcome(String jobId) {
+        Entry last;
+        synchronized (locks.get(jobId)) {
+            last = lookup(jobId);
+        }
+        return last == null ? null : Outcome.values()[last.outcome];
+    }
+
+    /**
+     * @return the number of records in the journal file
+     */
+    public synchronized int size() {
+        return count;
+    }
+
+    /**
+     * @return the journal file
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Writes the journal to the disk and releases the file.
+     */
+    @Override
+    public synchronized void close() {
+        if (buffer == null) return;
+        try {
+            buffer.force();
+            buffer = null;
+            channel.close();
+            lock.release();
+            lockChannel.close();
+        } catch (IOException e) {
+            throw new RuntimeException("Can't close journal " + file, e);
+        }
+    }
+
+    /**
+     * The last record of a job.
+     */
+    private static final class Entry {
+        final long fireTime;
+        final long token;
+        final long start;
+        final long end;
+        final int outcome;
+
+        Entry(long fireTime, long token, long start, long end, int outcome) {
+            this.fireTime = fireTime;
+            this.token = token;
+            this.start = start;
+            this.end = end;
+            this.outcome = outcome;
+        }
+    }
+}
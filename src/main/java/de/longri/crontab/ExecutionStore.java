@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of CrontabScheduler.
+ *
+ * CrontabScheduler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * CrontabScheduler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CrontabScheduler. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.crontab;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * The ExecutionStore registers the executions of the {@link Cronjob}s,
+ * so every execution time of a job runs only once.
+ * <p>
+ * The default is the {@link PreferencesExecutionStore}, the {@link LeaseStore} registers
+ * the executions at a state directory which is shared by several scheduler processes
+ * and the {@link ExecutionJournal} at a memory-mapped file of one process.
+ * <p>
+ * All stores register the executions with minute resolution and check them with
+ * {@link #isRegistered(LocalDateTime, LocalDateTime)}.
+ */
+public interface ExecutionStore {
+
+    /**
+     * The result of {@link #acquire(String, LocalDateTime)} if the execution is registered already.
+     */
+    long BLOCKED = 0;
+
+    /**
+     * Registers the execution of a job, if it isn't registered already.
+     *
+     * @param jobId    the unique id of the job
+     * @param fireTime the execution time
+     * @return a fencing token greater than {@link #BLOCKED} if the caller owns this execution,
+     * {@link #BLOCKED} if the execution is registered already
+     * @see #isRegistered(LocalDateTime, LocalDateTime)
+     */
+    long acquire(String jobId, LocalDateTime fireTime);
+
+    /**
+     * Retrieves the last registered execution time of a job.
+     *
+     * @param jobId the unique id of the job
+     * @return the execution time formatted with {@link UTILS#formatter}, or an empty string
+     */
+    String getLastExecution(String jobId);
+
+    /**
+     * Checks if the given fencing token belongs to the last registered execution of a job.
+     * An owner with an older token must not publish any result.
+     *
+     * @param jobId the unique id of the job
+     * @param token the fencing token of {@link #acquire(String, LocalDateTime)}
+     * @return true if no newer execution is registered
+     */
+    boolean isCurrent(String jobId, long token);
+
+    /**
+     * Registers the end of an execution, which was registered with {@link #acquire(String, LocalDateTime)}.
+     * The end of an execution with an older token than the last registered one is ignored.
+     * A store which doesn't keep the outcome ignores it.
+     *
+     * @param jobId   the unique id of the job
+     * @param token   the fencing token of the execution
+     * @param success false if the job has thrown an exception
+     */
+    default void finished(String jobId, long token, boolean success) {
+    }
+
+    /**
+     * Takes over the execution of a job which was registered but never finished, because its process died.
+     * The execution is registered as running at this process again, with the same fencing token, until it is
+     * {@link #finished(String, long, boolean)}. A store which doesn't keep the end of the executions
+     * returns null.
+     *
+     * @param jobId the unique id of the job
+     * @return the interrupted execution, or null
+     */
+    default Claim takeInterrupted(String jobId) {
+        return null;
+    }
+
+    /**
+     * The duplicate check of all stores. An execution time in the minute of the last registered execution,
+     * or before it, is registered already, so a process which is behind the others can't execute an old time again.
+     *
+     * @param fireTime the execution time
+     * @param last     the last registered execution time, or null
+     * @return true if the execution time is registered already
+     */
+    static boolean isRegistered(LocalDateTime fireTime, LocalDateTime last) {
+        return last != null && !fireTime.truncatedTo(ChronoUnit.MINUTES).isAfter(last.truncatedTo(ChronoUnit.MINUTES));
+    }
+
+    /**
+     * The duplicate check of all stores, with the last execution time formatted with {@link UTILS#formatter}.
+     *
+     * @param fireTime the execution time
+     * @param last     the last registered execution time, or an empty string
+     * @return true if the execution time is registered already, false if the last execution time can't be read
+     */
+    static boolean isRegistered(LocalDateTime fireTime, String last) {
+        if (last.isEmpty()) return false;
+        try {
+            return isRegistered(fireTime, UTILS.parseDateTime(last));
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    /**
+     * A registered execution of a job, with its execution time and fencing token.
+     */
+    final class Claim {
+        /**
+         * The execution time.
+         */
+        public final LocalDateTime fireTime;
+        /**
+         * The fencing token of the execution.
+         */
+        public final long token;
+
+        public Claim(LocalDateTime fireTime, long token) {
+            this.fireTime = fireTime;
+            this.token = token;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of CrontabScheduler.
+ *
+ * CrontabScheduler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * CrontabScheduler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CrontabScheduler. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.crontab;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+/**
+ * The FireTimeBuffer is a reusable buffer for a batch of execution times, filled by
+ * {@link LocalCronExpression#nextTimeAfter(LocalDateTime, int, FireTimeBuffer)}.
+ * The times are local wall clock times, stored as epoch seconds of the wall clock in UTC,
+ * so a buffer can be filled again and again without allocating objects per execution time.
+ */
+public class FireTimeBuffer {
+
+    private long[] times;
+    private int size;
+
+    /**
+     * Constructs a FireTimeBuffer with a capacity of 16 execution times.
+     */
+    public FireTimeBuffer() {
+        this(16);
+    }
+
+    /**
+     * Constructs a FireTimeBuffer with the given initial capacity, the buffer grows if needed.
+     *
+     * @param capacity the initial capacity
+     */
+    public FireTimeBuffer(int capacity) {
+        times = new long[Math.max(1, capacity)];
+    }
+
+    /**
+     * @return the number of execution times in this buffer
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return true if the buffer has no execution time
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes all execution times, the capacity is kept.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Retrieves an execution time as wall clock epoch seconds.
+     *
+     * @param index the index, 0 is the earliest execution time
+     * @return the wall clock epoch seconds
+     */
+    public long get(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException("Index " + index + " size " + size);
+        return times[index];
+    }
+
+    /**
+     * Retrieves an execution time.
+     *
+     * @param index the index, 0 is the earliest execution time
+     * @return the execution time
+     */
+    public LocalDateTime getTime(int index) {
+        return LocalDateTime.ofEpochSecond(get(index), 0, ZoneOffset.UTC);
+    }
+
+    /**
+     * @return the latest execution time as wall clock epoch seconds, or Long.MIN_VALUE if the buffer is empty
+     */
+    public long last() {
+        return size == 0 ? Long.MIN_VALUE : times[size - 1];
+    }
+
+    void add(long epochSecond) {
+        if (size == times.length) times = Arrays.copyOf(times, size * 2);
+        times[size++] = epochSecond;
+    }
+
+    /**
+     * Converts a wall clock time to the epoch seconds of this buffer.
+     *
+     * @param time the wall clock time
+     * @return the wall clock epoch seconds
+     */
+    public static long toEpochSecond(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC);
+    }
+}
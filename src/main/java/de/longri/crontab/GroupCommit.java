@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of CrontabScheduler.
+ *
+ * CrontabScheduler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * CrontabScheduler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CrontabScheduler. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.crontab;
+
+/**
+ * The GroupCommit makes registered writes durable in batches. A writer registers its write and waits
+ * with {@link #await(long)} until a sync covers it. The first waiting writer becomes the leader,
+ * waits the commit window for more writes and syncs all of them at once, the others wait for this sync.
+ * So a burst of writes needs a few syncs instead of one per write, with the same guarantee:
+ * a writer returns only after its write is durable.
+ */
+final class GroupCommit {
+
+    /**
+     * The sync of all registered writes.
+     */
+    interface Sync {
+        void sync() throws Exception;
+    }
+
+    private final long windowMillis;
+    private final Sync sync;
+
+    private long registered;
+    private long durable;
+    private boolean syncing;
+    private long syncCount;
+
+    /**
+     * Constructs a GroupCommit.
+     *
+     * @param windowMillis the time the leader waits for more writes before it syncs
+     * @param sync         the sync which makes all written data durable
+     */
+    GroupCommit(long windowMillis, Sync sync) {
+        this.windowMillis = windowMillis;
+        this.sync = sync;
+    }
+
+    /**
+     * Registers a write, which is done already. A sync which starts after the registration covers the write.
+     *
+     * @return the sequence number of the write for {@link #await(long)}
+     */
+    synchronized long register() {
+        return ++registered;
+    }
+
+    /**
+     * Waits until the write with the given sequence number is durable.
+     *
+     * @param sequence the sequence number of {@link #register()}
+     */
+    void await(long sequence) {
+        boolean interrupted = false;
+        long target;
+        synchronized (this) {
+            while (true) {
+                if (durable >= sequence) {
+                    if (interrupted) Thread.currentThread().interrupt();
+                    return;
+                }
+                if (!syncing) break;
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    // the write must be durable before the caller continues
+                    interrupted = true;
+                }
+            }
+            syncing = true;
+        }
+
+        // this thread is the leader of the next batch
+        Throwable failure = null;
+        try {
+            if (windowMillis > 0) {
+                try {
+                    Thread.sleep(windowMillis);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            synchronized (this) {
+                target = registered;
+            }
+            sync.sync();
+        } catch (Throwable t) {
+            failure = t;
+            target = -1;
+        }
+        synchronized (this) {
+            syncing = false;
+            if (failure == null) {
+                durable = Math.max(durable, target);
+                syncCount++;
+            }
+            notifyAll();
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+        if (failure != null) throw new RuntimeException("Sync failed", failure);
+    }
+
+    /**
+     * @return the number of syncs
+     */
+    synchronized long getSyncCount() {
+        return syncCount;
+    }
+}
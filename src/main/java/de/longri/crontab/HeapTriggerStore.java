@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of CrontabScheduler.
+ *
+ * CrontabScheduler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * CrontabScheduler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CrontabScheduler. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.crontab;
+
+import java.util.PriorityQueue;
+
+/**
+ * The default {@link TriggerStore}, a min-heap ordered by execution time.
+ * Adding and polling a trigger costs O(log n).
+ */
+public class HeapTriggerStore implements TriggerStore {
+
+    private final PriorityQueue<Trigger> queue = new PriorityQueue<>();
+
+    @Override
+    public void add(Trigger trigger) {
+        queue.add(trigger);
+    }
+
+    @Override
+    public boolean remove(Cronjob job) {
+        return queue.removeIf(trigger -> trigger.job == job);
+    }
+
+    @Override
+    public void clear() {
+        queue.clear();
+    }
+
+    @Override
+    public int size() {
+        return queue.size();
+    }
+
+    @Override
+    public long nextFireTime() {
+        Trigger head = queue.peek();
+        return head == null ? Long.MAX_VALUE : head.fireTime;
+    }
+
+    @Override
+    public Trigger pollDue(long now) {
+        Trigger head = queue.peek();
+        if (head == null || head.fireTime > now) return null;
+        return queue.poll();
+    }
+}
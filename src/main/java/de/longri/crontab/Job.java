@@ -20,6 +20,7 @@ package de.longri.crontab;
 
 import de.longri.crontab.type.JobType;
 
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.concurrent.TimeUnit;
 
@@ -104,4 +105,13 @@ public abstract class Job extends CancelTimeOutJob {
      * @param args the arguments to set for the job
      */
     public abstract void setArgs(String args);
+
+    /**
+     * Removes the partial results of an execution which was interrupted by the end of the scheduler process.
+     * Called for the job option recover=CLEANUP, the default does nothing.
+     *
+     * @param fireTime the execution time of the interrupted execution
+     */
+    public void cleanUp(LocalDateTime fireTime) {
+    }
 }
\ No newline at end of file
@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of CrontabScheduler.
+ *
+ * CrontabScheduler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * CrontabScheduler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CrontabScheduler. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.crontab;
+
+/**
+ * The JobAbortedException is thrown by {@link CancelTimeOutJob#run(long, java.util.concurrent.TimeUnit, CancelTimeOutJob.Run)}
+ * if the work didn't finish, because it ran into the timeout or was canceled.
+ * An aborted run is a failed execution.
+ */
+public class JobAbortedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final boolean timeOut;
+
+    /**
+     * Constructs a JobAbortedException.
+     *
+     * @param jobName the name of the job
+     * @param timeOut true if the work ran into the timeout, false if it was canceled
+     */
+    public JobAbortedException(String jobName, boolean timeOut) {
+        super("Job " + jobName + (timeOut ? " timed out" : " canceled"));
+        this.timeOut = timeOut;
+    }
+
+    /**
+     * @return true if the work ran into the timeout, false if it was canceled
+     */
+    public boolean isTimeOut() {
+        return timeOut;
+    }
+}
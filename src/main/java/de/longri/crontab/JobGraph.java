@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of CrontabScheduler.
+ *
+ * CrontabScheduler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * CrontabScheduler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CrontabScheduler. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.crontab;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The JobGraph runs jobs after other jobs instead of at their own execution times.
+ * A job declares its upstream jobs with the job option after, like:
+ * <pre>
+ * job2 = 0 0 * ? * * *; COPY ;Upload ;-s backup -t remote ;after=Backup|Compress
+ * </pre>
+ * A dependent job starts as soon as all its upstream jobs have completed since its own last run,
+ * with the execution time of the upstream job that completed last.
+ * Independent dependents run concurrently at their worker pools.
+ * The cron expression of a dependent job isn't used for scheduling.
+ * <p>
+ * Unknown upstream jobs and cycles are rejected when the graph is built.
+ */
+public class JobGraph {
+
+    private final static Logger log = LoggerFactory.getLogger(JobGraph.class);
+
+    /**
+     * The job option key of the upstream jobs.
+     */
+    public static final String OPTION = "after";
+
+    /**
+     * Separator between the names of the upstream jobs.
+     */
+    static final String SEPARATOR = "\\|";
+
+    private final WorkerPools pools;
+    private final LinkedHashMap<Cronjob, List<Cronjob>> upstreams = new LinkedHashMap<>();
+    private final HashMap<Cronjob, List<Cronjob>> downstreams = new HashMap<>();
+    private final HashMap<Cronjob, HashSet<Cronjob>> completed = new HashMap<>();
+    private final HashSet<CompletableFuture<Boolean>> running = new HashSet<>();
+
+    /**
+     * Constructs the JobGraph of the given jobs and registers it at the upstream jobs.
+     *
+     * @param jobs  the jobs
+     * @param pools the worker pools which run the dependent jobs
+     * @throws RuntimeException if an upstream job doesn't exist or the dependencies have a cycle
+     */
+    public JobGraph(List<Cronjob> jobs, WorkerPools pools) {
+        this.pools = pools;
+        HashMap<String, Cronjob> byName = new HashMap<>();
+        HashSet<String> duplicates = new HashSet<>();
+        for (Cronjob job : jobs) {
+            if (job.getJob() == null) continue;
+            if (byName.put(job.getName(), job) != null) duplicates.add(job.getName());
+        }
+
+        for (Cronjob job : jobs) {
+            String after = job.options.get(OPTION);
+            if (after == null || job.getJob() == null) continue;
+            ArrayList<Cronjob> list = new ArrayList<>();
+            for (String name : after.split(SEPARATOR)) {
+                if (name.isBlank()) continue;
+                Cronjob upstream = byName.get(name.trim());
+                if (upstream == null)
+                    throw new RuntimeException("Job " + job.getName() + " runs after unknown job " + name.trim());
+                if (duplicates.contains(name.trim()))
+                    throw new RuntimeException("Job " + job.getName() + " runs after ambiguous job name " + name.trim());
+                if (!list.contains(upstream)) list.add(upstream);
+                downstreams.computeIfAbsent(upstream, key -> new ArrayList<>()).add(job);
+            }
+            if (list.isEmpty()) continue;
+            upstreams.put(job, list);
+            completed.put(job, new HashSet<>());
+        }
+
+        checkCycles();
+
+        for (Cronjob upstream : downstreams.keySet()) {
+            upstream.setCompletionListener(this::completed);
+        }
+    }
+
+    private void checkCycles() {
+        HashSet<Cronjob> done = new HashSet<>();
+        for (Cronjob job : upstreams.keySet()) {
+            checkCycles(job, new ArrayList<>(), done);
+        }
+    }
+
+    private void checkCycles(Cronjob job, ArrayList<Cronjob> path, HashSet<Cronjob> done) {
+        if (done.contains(job)) return;
+        if (path.contains(job)) {
+            StringBuilder sb = new StringBuilder();
+            for (Cronjob c : path.subList(path.indexOf(job), path.size())) {
+                sb.append(c.getName()).append(" -> ");
+            }
+            throw new RuntimeException("Cycle at job dependencies: " + sb + job.getName());
+        }
+        path.add(job);
+        for (Cronjob upstream : upstreams.getOrDefault(job, List.of())) {
+            checkCycles(upstream, path, done);
+        }
+        path.remove(path.size() - 1);
+        done.add(job);
+    }
+
+    /**
+     * @param job the job
+     * @return true if the job runs after other jobs instead of at its own execution times
+     */
+    public boolean isDependent(Cronjob job) {
+        return upstreams.containsKey(job);
+    }
+
+    /**
+     * @param job the job
+     * @return the upstream jobs of the job, empty if it isn't dependent
+     */
+    public List<Cronjob> getUpstreams(Cronjob job) {
+        return upstreams.getOrDefault(job, List.of());
+    }
+
+    /**
+     * Called after a successful execution of an upstream job, starts all dependent jobs
+     * whose upstream jobs are completed.
+     *
+     * @param upstream the completed job
+     * @param fireTime the execution time of the completed job
+     */
+    void completed(Cronjob upstream, LocalDateTime fireTime) {
+        ArrayList<Cronjob> ready = new ArrayList<>();
+        synchronized (completed) {
+            for (Cronjob dependent : downstreams.getOrDefault(upstream, List.of())) {
+                HashSet<Cronjob> done = completed.get(dependent);
+                done.add(upstream);
+                if (done.size() == upstreams.get(dependent).size()) {
+                    done.clear();
+                    ready.add(dependent);
+                }
+            }
+        }
+        for (Cronjob dependent : ready) {
+            log.debug("Job {} completed, start job {}", upstream.getName(), dependent.getName());
+            CompletableFuture<Boolean> future = dependent.executeAsync(fireTime, pools.executor(dependent));
+            synchronized (running) {
+                running.add(future);
+            }
+            future.whenComplete((executed, throwable) -> {
+                if (throwable != null) log.error("Running exception of job {}", dependent.getName(), throwable);
+                synchronized (running) {
+                    running.remove(future);
+                    running.notifyAll();
+                }
+            });
+        }
+    }
+
+    /**
+     * Waits until no dependent job is running.
+     *
+     * @throws InterruptedException if the waiting thread is interrupted
+     */
+    public void join() throws InterruptedException {
+        synchronized (running) {
+            while (!running.isEmpty()) {
+                running.wait();
+            }
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of CrontabScheduler.
+ *
+ * CrontabScheduler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * CrontabScheduler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CrontabScheduler. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.crontab;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The JobOptions class holds the optional settings of a {@link Cronjob}.
+ * In the ini file they are the fifth section of a job, a comma separated list of key=value pairs like:
+ * <pre>
+ * job1 = 0 0 * ? * * *; COPY ;Backup ;-s source -t target ;misfire=COALESCE
+ * </pre>
+ */
+public class JobOptions {
+
+    /**
+     * Separator between the options.
+     */
+    static final String SEPARATOR = ",";
+
+    private final LinkedHashMap<String, String> values = new LinkedHashMap<>();
+
+    /**
+     * Constructs empty JobOptions.
+     */
+    public JobOptions() {
+    }
+
+    /**
+     * Parses JobOptions from the ini string.
+     *
+     * @param iniString the comma separated key=value pairs, can be null
+     * @return the parsed options
+     */
+    public static JobOptions parse(String iniString) {
+        JobOptions options = new JobOptions();
+        if (iniString == null) return options;
+        for (String option : iniString.split(SEPARATOR)) {
+            if (option.isBlank()) continue;
+            int pos = option.indexOf('=');
+            if (pos < 0) throw new RuntimeException("Job option must be key=value: " + option.trim());
+            options.set(option.substring(0, pos).trim(), option.substring(pos + 1).trim());
+        }
+        return options;
+    }
+
+    /**
+     * Retrieves the value of an option.
+     *
+     * @param key the key of the option
+     * @return the value, or null if the option isn't set
+     */
+    public String get(String key) {
+        return values.get(key.toLowerCase());
+    }
+
+    /**
+     * Retrieves the value of an option.
+     *
+     * @param key          the key of the option
+     * @param defaultValue the value if the option isn't set
+     * @return the value
+     */
+    public String get(String key, String defaultValue) {
+        String value = get(key);
+        return value == null ? defaultValue : value;
+    }
+
+    /**
+     * Retrieves the integer value of an option.
+     *
+     * @param key          the key of the option
+     * @param defaultValue the value if the option isn't set
+     * @return the value
+     */
+    public int getInt(String key, int defaultValue) {
+        String value = get(key);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    /**
+     * Sets an option. Keys are case-insensitive.
+     *
+     * @param key   the key of the option
+     * @param value the value, null removes the option
+     */
+    public void set(String key, String value) {
+        if (value == null) {
+            values.remove(key.toLowerCase());
+        } else {
+            values.put(key.toLowerCase(), value);
+        }
+    }
+
+    /**
+     * @return true if no option is set
+     */
+    public boolean isEmpty() {
+        return values.isEmpty();
+    }
+
+    /**
+     * Converts these options to the ini string.
+     *
+     * @return the comma separated key=value pairs
+     */
+    public String toIniString() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            if (sb.length() > 0) sb.append(SEPARATOR).append(" ");
+            sb.append(entry.getKey()).append("=").append(entry.getValue());
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return toIniString();
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of CrontabScheduler.
+ *
+ * CrontabScheduler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * CrontabScheduler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CrontabScheduler. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.crontab;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * The JobThreads class creates all threads which execute jobs.
+ * With {@link #setVirtual(boolean)} the scheduler switches from platform threads to virtual threads,
+ * so blocking I/O jobs like {@link Job_Copy} don't hold a platform thread per execution.
+ */
+public class JobThreads {
+
+    private static volatile boolean virtual = false;
+
+    /**
+     * Enables or disables the virtual thread mode.
+     *
+     * @param value true to execute jobs at virtual threads
+     */
+    public static void setVirtual(boolean value) {
+        virtual = value;
+    }
+
+    /**
+     * @return true if jobs are executed at virtual threads
+     */
+    public static boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * @return a thread factory for the current mode
+     */
+    public static ThreadFactory factory() {
+        return virtual ? Thread.ofVirtual().factory() : Thread.ofPlatform().factory();
+    }
+
+    /**
+     * Creates and starts a new thread for the current mode.
+     *
+     * @param runnable the runnable to execute
+     * @param name     the name of the thread
+     * @return the started thread
+     */
+    public static Thread start(Runnable runnable, String name) {
+        return virtual ? Thread.ofVirtual().name(name).start(runnable) : Thread.ofPlatform().name(name).start(runnable);
+    }
+
+    /**
+     * Retrieves an executor which runs every task at a new thread of the current mode.
+     *
+     * @param name the name of the threads
+     * @return the executor
+     */
+    public static Executor executor(String name) {
+        return runnable -> start(runnable, name);
+    }
+
+    /**
+     * Creates an executor for a single task.
+     * In virtual thread mode this is a virtual thread per task executor.
+     *
+     * @return the new executor
+     */
+    public static ExecutorService newSingleThreadExecutor() {
+        return virtual ? Executors.newVirtualThreadPerTaskExecutor() : Executors.newSingleThreadExecutor();
+    }
+}
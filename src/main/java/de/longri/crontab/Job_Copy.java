@@ -23,6 +23,10 @@ import org.apache.commons.cli.*;
 import org.apache.commons.io.FileUtils;
 
 import java.io.*;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.zip.ZipEntry;
@@ -31,6 +35,9 @@ import java.util.zip.ZipOutputStream;
 
 public class Job_Copy extends Job {
 
+    // the copy is written to the target with this extension and renamed when it is complete
+    static final String PART_EXTENSION = ".part";
+
      boolean zip;
      String source;
      String target;
@@ -101,35 +108,79 @@ public class Job_Copy extends Job {
      */
     @Override
     public void work() throws RuntimeException {
+        work(new Run(LocalDateTime.now(), null));
+    }
 
-        String targetPath = this.target;
+    /**
+     * Copies the source, a target with date pattern is named after the execution time.
+     * The copy is written to a part file which replaces the target when it is complete,
+     * so an interrupted copy never damages the last complete target. A stale run doesn't write the target.
+     *
+     * @param run the run, without execution time the target is named after the current time
+     */
+    @Override
+    protected void work(Run run) throws RuntimeException {
 
-        if (dateTimeFormatter != null) {
-            String formatDate = dateTimeFormatter.format(LocalDateTime.now());
-            int pos = target.lastIndexOf(".");
-            String ext = target.substring(pos);
-            String path = target.substring(0, pos);
-            targetPath = path + "_" + formatDate.trim() + ext;
-        }
+        LocalDateTime fireTime = run.getFireTime();
+        String targetPath = getTargetPath(fireTime == null ? LocalDateTime.now() : fireTime);
+        if (!run.isCurrent())
+            throw new RuntimeException("A newer execution of " + getName() + " is registered, " + targetPath + " isn't written");
 
+        File part = new File(targetPath + PART_EXTENSION);
         try {
             if (zip) {
-                FileOutputStream fos = new FileOutputStream(targetPath);
+                FileOutputStream fos = new FileOutputStream(part);
                 ZipOutputStream zipOut = new ZipOutputStream(fos);
                 File fileToZip = new File(source);
                 zipFile(fileToZip, fileToZip.getName(), zipOut);
                 zipOut.close();
                 fos.close();
             } else {
-                FileUtils.copyFile(new File(source), new File(targetPath));
+                FileUtils.copyFile(new File(source), part);
             }
+            if (!run.isCurrent())
+                throw new RuntimeException("A newer execution of " + getName() + " is registered, " + targetPath + " isn't written");
+            replace(part.toPath(), new File(targetPath).toPath());
         } catch (Exception e) {
+            part.delete();
+            if (e instanceof RuntimeException) throw (RuntimeException) e;
             throw new RuntimeException(e);
         }
 
 
     }
 
+    private String getTargetPath(LocalDateTime time) {
+        if (dateTimeFormatter == null) return this.target;
+        String formatDate = dateTimeFormatter.format(time);
+        int pos = target.lastIndexOf(".");
+        String ext = target.substring(pos);
+        String path = target.substring(0, pos);
+        return path + "_" + formatDate.trim() + ext;
+    }
+
+    private static void replace(Path part, Path target) throws IOException {
+        try {
+            Files.move(part, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(part, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Deletes the part file of the interrupted execution. The target is only replaced by a complete copy,
+     * so it is kept.
+     *
+     * @param fireTime the execution time of the interrupted execution
+     */
+    @Override
+    public void cleanUp(LocalDateTime fireTime) {
+        File file = new File(getTargetPath(fireTime) + PART_EXTENSION);
+        if (!file.exists()) return;
+        if (!file.delete()) throw new RuntimeException("Can't delete " + file);
+        log.info("Partial target {} deleted", file);
+    }
+
     @Override
     public JobType getType() {
         return JobType.getFromString("COPY");
@@ -0,0 +1,280 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of CrontabScheduler.
+ *
+ * CrontabScheduler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * CrontabScheduler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CrontabScheduler. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.crontab;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * The LeaseStore registers the executions at a state directory, which can be shared by several
+ * scheduler processes on the same host. Every job has its own lease file, which is locked with
+ * {@link FileChannel#lock()} while the last execution time is compared and written,
+ * so every execution time runs exactly once over all processes.
+ * <p>
+ * Every registered execution gets a fencing token, which increases with every execution of the job.
+ * An execution time at or before the registered one is stale and blocked, so a process which
+ * is behind the others can't execute an old time again, and the end of an execution with an older token
+ * doesn't change the lease of a newer one.
+ * Inside of the process the lease files are guarded per job, so jobs don't wait for each other.
+ * <p>
+ * The lease holds the process id of the running execution until it is finished, so the execution of a process
+ * which died is found by {@link #takeInterrupted(String)}.
+ * <p>
+ * A lease file has two slots, which are written alternately with a sequence number and a checksum.
+ * A write which is torn by a crash leaves the other slot with the last complete lease,
+ * so the fencing token never goes back to an execution which wasn't registered completely.
+ */
+public class LeaseStore implements ExecutionStore {
+
+    private final static Logger log = LoggerFactory.getLogger(LeaseStore.class);
+
+    /**
+     * The extension of the lease files.
+     */
+    static final String EXTENSION = ".lease";
+
+    // the size of a slot of a lease file, the lease is written alternately to one of two slots
+    static final int SLOT_SIZE = 128;
+
+    // a file lock is held by the whole JVM, so the threads of this process are synchronized per lease file
+    private static final ConcurrentHashMap<String, Object> LOCKS = new ConcurrentHashMap<>();
+
+    private final File dir;
+
+    /**
+     * Constructs a LeaseStore at the given state directory, the directory is created if it doesn't exist.
+     *
+     * @param dir the state directory
+     */
+    public LeaseStore(File dir) {
+        this.dir = dir.getAbsoluteFile();
+        if (!this.dir.isDirectory() && !this.dir.mkdirs())
+            throw new RuntimeException("Can't create state directory " + this.dir);
+    }
+
+    /**
+     * @return the state directory
+     */
+    public File getDir() {
+        return dir;
+    }
+
+    @Override
+    public long acquire(String jobId, LocalDateTime fireTime) {
+        String formattedDateTime = fireTime.format(UTILS.formatter);
+        File file = getFile(jobId);
+        synchronized (LOCKS.computeIfAbsent(file.getPath(), key -> new Object())) {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                // closing the channel releases the lock
+                channel.lock();
+                Lease lease = read(channel);
+                if (ExecutionStore.isRegistered(fireTime, lease.fireTime)) {
+                    log.debug("BLOCK => Last {} >= Next {} with token {}", lease.fireTime, formattedDateTime, lease.token);
+                    return BLOCKED;
+                }
+                long token = lease.token + 1;
+                log.debug("RUN => Last {} < Next {} with token {}", lease.fireTime, formattedDateTime, token);
+                write(channel, lease.next(formattedDateTime, token, UTILS.PID));
+                return token;
+            } catch (IOException e) {
+                throw new RuntimeException("Can't register execution of " + jobId + " at " + file, e);
+            }
+        }
+    }
+
+    @Override
+    public void finished(String jobId, long token, boolean success) {
+        File file = getFile(jobId);
+        if (!file.exists()) return;
+        synchronized (LOCKS.computeIfAbsent(file.getPath(), key -> new Object())) {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                channel.lock();
+                Lease lease = read(channel);
+                // a newer execution is registered already
+                if (lease.owner == 0 || lease.token != token) return;
+                write(channel, lease.next(lease.fireTime, lease.token, 0));
+            } catch (IOException e) {
+                throw new RuntimeException("Can't finish execution of " + jobId + " at " + file, e);
+            }
+        }
+    }
+
+    @Override
+    public Claim takeInterrupted(String jobId) {
+        File file = getFile(jobId);
+        if (!file.exists()) return null;
+        synchronized (LOCKS.computeIfAbsent(file.getPath(), key -> new Object())) {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                channel.lock();
+                Lease lease = read(channel);
+                if (lease.owner == 0 || lease.owner == UTILS.PID || UTILS.isAlive(lease.owner)) return null;
+                write(channel, lease.next(lease.fireTime, lease.token, UTILS.PID));
+                log.debug("Execution {} of {} interrupted at process {}", lease.fireTime, jobId, lease.owner);
+                return new Claim(UTILS.parseDateTime(lease.fireTime), lease.token);
+            } catch (IOException e) {
+                throw new RuntimeException("Can't read lease of " + jobId + " at " + file, e);
+            }
+        }
+    }
+
+    @Override
+    public String getLastExecution(String jobId) {
+        return readLease(jobId).fireTime;
+    }
+
+    @Override
+    public boolean isCurrent(String jobId, long token) {
+        return readLease(jobId).token == token;
+    }
+
+    /**
+     * Writes the lease of a job, like an execution which is running at the given process.
+     *
+     * @param jobId    the unique id of the job
+     * @param fireTime the execution time
+     * @param token    the fencing token
+     * @param owner    the process id of the running execution, 0 if it is finished
+     */
+    void writeLease(String jobId, LocalDateTime fireTime, long token, long owner) {
+        File file = getFile(jobId);
+        synchronized (LOCKS.computeIfAbsent(file.getPath(), key -> new Object())) {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                channel.lock();
+                write(channel, read(channel).next(fireTime.format(UTILS.formatter), token, owner));
+            } catch (IOException e) {
+                throw new RuntimeException("Can't write lease of " + jobId + " at " + file, e);
+            }
+        }
+    }
+
+    /**
+     * @param jobId the unique id of the job
+     * @return the process id of the running execution of the job, 0 if it is finished
+     */
+    long getOwner(String jobId) {
+        return readLease(jobId).owner;
+    }
+
+    private Lease readLease(String jobId) {
+        File file = getFile(jobId);
+        if (!file.exists()) return Lease.EMPTY;
+        synchronized (LOCKS.computeIfAbsent(file.getPath(), key -> new Object())) {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                channel.lock();
+                return read(channel);
+            } catch (IOException e) {
+                throw new RuntimeException("Can't read lease of " + jobId + " at " + file, e);
+            }
+        }
+    }
+
+    /**
+     * Retrieves the lease file of a job. The job id contains the cron expression,
+     * so it is reduced to a file name with a hash for uniqueness.
+     *
+     * @param jobId the unique id of the job
+     * @return the lease file
+     */
+    File getFile(String jobId) {
+        String name = jobId.replaceAll("[^A-Za-z0-9._-]", "_");
+        if (name.length() > 64) name = name.substring(0, 64);
+        return new File(dir, name + "-" + Integer.toHexString(jobId.hashCode()) + EXTENSION);
+    }
+
+    /**
+     * Reads the newest complete lease of both slots. A slot which is torn or corrupt is ignored.
+     */
+    private static Lease read(FileChannel channel) throws IOException {
+        Lease newest = Lease.EMPTY;
+        for (int slot = 0; slot < 2; slot++) {
+            ByteBuffer buffer = ByteBuffer.allocate(SLOT_SIZE);
+            channel.read(buffer, (long) slot * SLOT_SIZE);
+            Lease lease = parse(new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8));
+            if (lease != null && lease.seq > newest.seq) newest = lease;
+        }
+        if (newest == Lease.EMPTY && channel.size() > 0) log.warn("Lease file without complete lease, it starts again");
+        return newest;
+    }
+
+    /**
+     * @return the lease of the record, or null if the record is incomplete or corrupt
+     */
+    private static Lease parse(String record) {
+        int end = record.lastIndexOf('\n', record.lastIndexOf('\n') - 1) + 1;
+        if (end <= 0) return null;
+        String[] lines = record.substring(0, end).split("\n");
+        if (lines.length != 4) return null;
+        try {
+            if (Long.parseLong(record.substring(end).trim()) != checksum(record.substring(0, end))) return null;
+            return new Lease(lines[0], Long.parseLong(lines[1]), Long.parseLong(lines[2]), Long.parseLong(lines[3]));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static void write(FileChannel channel, Lease lease) throws IOException {
+        String record = lease.fireTime + "\n" + lease.token + "\n" + lease.owner + "\n" + lease.seq + "\n";
+        byte[] bytes = (record + checksum(record) + "\n").getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(SLOT_SIZE);
+        buffer.put(bytes).rewind();
+        // the other slot keeps the last lease until this one is complete
+        channel.write(buffer, (lease.seq % 2) * SLOT_SIZE);
+        channel.force(false);
+    }
+
+    private static long checksum(String record) {
+        CRC32 crc = new CRC32();
+        crc.update(record.getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
+
+    private static class Lease {
+        static final Lease EMPTY = new Lease("", BLOCKED, 0, 0);
+
+        final String fireTime;
+        final long token;
+        // the process id of the running execution, 0 if it is finished
+        final long owner;
+        // the number of the write, the newer slot has the higher one
+        final long seq;
+
+        Lease(String fireTime, long token, long owner, long seq) {
+            this.fireTime = fireTime;
+            this.token = token;
+            this.owner = owner;
+            this.seq = seq;
+        }
+
+        Lease next(String fireTime, long token, long owner) {
+            return new Lease(fireTime, token, owner, seq + 1);
+        }
+    }
+}
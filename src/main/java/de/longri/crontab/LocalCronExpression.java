@@ -18,17 +18,44 @@
  */
 package de.longri.crontab;
 
-import org.quartz.CronExpression;
-
 import java.text.ParseException;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
+import java.time.zone.ZoneRules;
 import java.util.Date;
 
 public class LocalCronExpression {
 
-    public CronExpression EXPRESSION;
+    /**
+     * The token which maps a field to a stable pseudo-random value derived from the job name.
+     */
+    public static final String HASH_TOKEN = "H";
+
+    /**
+     * The value ranges of the fields for the hash token: seconds, minutes, hours, day-of-month, month, day-of-week.
+     * Day-of-month is limited to 28, so the job runs in every month.
+     */
+    private static final int[][] HASH_RANGES = {{0, 59}, {0, 59}, {0, 23}, {1, 28}, {1, 12}, {1, 7}};
+
+    public CompiledCron EXPRESSION;
+
+    /**
+     * The seed for the hash token, or null.
+     */
+    private final String hashSeed;
+
+    /**
+     * The expression with hash tokens as written, or null if the expression has no hash token.
+     */
+    private String hashExpression;
+
+    /**
+     * The time zone of the wall clock, with its transitions computed in advance.
+     */
+    private ZoneId zone = ZoneId.systemDefault();
+    private ZoneTable zoneTable = ZoneTable.of(zone);
 
     /**
      * Constructs a new <CODE>CronExpression</CODE> based on the specified
@@ -40,6 +67,26 @@ public class LocalCronExpression {
      *                        <CODE>CronExpression</CODE>
      */
     public LocalCronExpression(String cronExpression) throws ParseException {
+        this(cronExpression, null);
+    }
+
+    /**
+     * Constructs a new <CODE>CronExpression</CODE> based on the specified
+     * parameter. A field with the hash token H is replaced by a stable pseudo-random value
+     * derived from the hash seed, like H, H(0-29) or H/15.
+     *
+     * @param cronExpression String representation of the cron expression the
+     *                       new object should represent
+     * @param hashSeed       the seed for the hash token, normally the job name
+     * @throws ParseException if the string expression cannot be parsed into a valid
+     *                        <CODE>CronExpression</CODE>
+     */
+    public LocalCronExpression(String cronExpression, String hashSeed) throws ParseException {
+        this.hashSeed = hashSeed;
+        set(normalize(cronExpression));
+    }
+
+    private static String normalize(String cronExpression) {
 
         String[] sa = cronExpression.split(" ");
 
@@ -51,8 +98,77 @@ public class LocalCronExpression {
         if (sa.length == 6) {
             cronExpression = sa[0] + " " + sa[1] + " " + sa[2] + " " + sa[3] + " " + sa[4] + " ? " + sa[5] + " ";
         }
+        return cronExpression;
+    }
 
-        EXPRESSION = new CronExpression(cronExpression);
+    /**
+     * Replaces the hash tokens of an expression.
+     *
+     * @param expression the expression
+     * @param seed       the hash seed
+     * @return the expression with values instead of hash tokens
+     * @throws ParseException if a hash token has a wrong format
+     */
+    static String replaceHashTokens(String expression, String seed) throws ParseException {
+        String[] fields = expression.trim().split("\\s+");
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) sb.append(" ");
+            if (i >= HASH_RANGES.length) {
+                sb.append(fields[i]);
+                continue;
+            }
+            String[] elements = fields[i].split(",");
+            for (int e = 0; e < elements.length; e++) {
+                if (e > 0) sb.append(",");
+                sb.append(replaceHashToken(elements[e], i, seed));
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String replaceHashToken(String element, int field, String seed) throws ParseException {
+        if (!isHashToken(element)) return element;
+        if (seed == null) throw new ParseException("Hash token without hash seed: " + element, field);
+
+        int min = HASH_RANGES[field][0];
+        int max = HASH_RANGES[field][1];
+        String rest = element.substring(1);
+        try {
+            if (rest.startsWith("(")) {
+                int end = rest.indexOf(')');
+                String[] range = rest.substring(1, end).split("-");
+                min = Integer.parseInt(range[0].trim());
+                max = Integer.parseInt(range[1].trim());
+                rest = rest.substring(end + 1);
+            }
+        } catch (RuntimeException e) {
+            throw new ParseException("Wrong hash range: " + element, field);
+        }
+        if (min > max || min < HASH_RANGES[field][0] || max > HASH_RANGES[field][1])
+            throw new ParseException("Hash range out of field range: " + element, field);
+
+        // a different value per field, stable for the seed on every JVM
+        int hash = (seed + "#" + field).hashCode();
+        if (rest.isEmpty()) {
+            return Integer.toString(min + Math.floorMod(hash, max - min + 1));
+        }
+        if (rest.startsWith("/")) {
+            int step;
+            try {
+                step = Integer.parseInt(rest.substring(1).trim());
+            } catch (NumberFormatException e) {
+                throw new ParseException("Wrong hash step: " + element, field);
+            }
+            if (step < 1) throw new ParseException("Wrong hash step: " + element, field);
+            int start = min + Math.floorMod(hash, Math.min(step, max - min + 1));
+            return start + "-" + max + "/" + step;
+        }
+        throw new ParseException("Wrong hash token: " + element, field);
+    }
+
+    private static boolean isHashToken(String element) {
+        return element.startsWith(HASH_TOKEN) && (element.length() == 1 || element.charAt(1) == '(' || element.charAt(1) == '/');
     }
 
     /**
@@ -61,28 +177,201 @@ public class LocalCronExpression {
      *
      * @param expression The existing cron expression to be copied
      */
-    public LocalCronExpression(CronExpression expression) {
-        EXPRESSION = new CronExpression(expression);
+    public LocalCronExpression(LocalCronExpression expression) {
+        hashSeed = expression.hashSeed;
+        hashExpression = expression.hashExpression;
+        // the compiled expression is immutable
+        EXPRESSION = expression.EXPRESSION;
+        zone = expression.zone;
+        zoneTable = expression.zoneTable;
     }
 
     public static LocalCronExpression createWithoutSeconds(String s) throws ParseException {
         return new LocalCronExpression(s);
     }
 
+    /**
+     * Retrieves the next execution time after the given wall clock time of the time zone of this expression.
+     * Execution times in a daylight saving gap run once at the end of the gap, so the returned time is the end of the gap.
+     * Execution times in an overlap run once, at the first pass.
+     *
+     * @param after the wall clock time after which the next execution time is searched
+     * @return the next execution time, or null if there is no further execution time
+     */
     public LocalDateTime nextTimeAfter(LocalDateTime after) {
-        return toDate(EXPRESSION.getTimeAfter(toDate(after)));
+        long next = EXPRESSION.nextFireEpochSecond(zoneTable.toEpochSecond(after.toEpochSecond(ZoneOffset.UTC)), zoneTable);
+        if (next == CompiledCron.NONE) return null;
+        return LocalDateTime.ofEpochSecond(zoneTable.toLocalSecond(next), 0, ZoneOffset.UTC);
+    }
+
+    /**
+     * @return the time zone of the wall clock of this expression, by default the zone of the system
+     */
+    public ZoneId getZone() {
+        return zone;
+    }
+
+    /**
+     * Sets the time zone of the wall clock of this expression.
+     *
+     * @param zone the time zone
+     */
+    public void setZone(ZoneId zone) {
+        this.zone = zone;
+        this.zoneTable = ZoneTable.of(zone);
+    }
+
+    /**
+     * @return the current wall clock time of the time zone of this expression
+     */
+    public LocalDateTime now() {
+        long millis = System.currentTimeMillis();
+        long second = Math.floorDiv(millis, 1000);
+        return LocalDateTime.ofEpochSecond(zoneTable.toLocalSecond(second), Math.floorMod(millis, 1000) * 1_000_000, ZoneOffset.UTC);
+    }
+
+    /**
+     * Converts a wall clock time of the time zone of this expression to milliseconds since the epoch.
+     *
+     * @param time the wall clock time
+     * @return the milliseconds since the epoch
+     */
+    public long toEpochMilli(LocalDateTime time) {
+        return zoneTable.toEpochSecond(time.toEpochSecond(ZoneOffset.UTC)) * 1000 + time.getNano() / 1_000_000;
+    }
+
+    /**
+     * Retrieves the next execution times after the given time in one pass.
+     * Like {@link #nextTimeAfter(LocalDateTime)}, the execution times in a daylight saving gap are one execution time
+     * at the end of the gap and the execution times in an overlap run at the first pass.
+     *
+     * @param after the time after which the execution times are searched
+     * @param n     the number of execution times
+     * @return a new buffer with up to n execution times, fewer if the expression has no further execution time
+     */
+    public FireTimeBuffer nextTimeAfter(LocalDateTime after, int n) {
+        return nextTimeAfter(after, n, new FireTimeBuffer(n));
     }
 
-    public LocalDateTime nextTimeAfter(LocalDateTime after, int i) {
-        return null;
+    /**
+     * Retrieves the next execution times after the given time in one pass into a reusable buffer.
+     * The buffer is cleared first.
+     *
+     * @param after  the time after which the execution times are searched
+     * @param n      the number of execution times
+     * @param buffer the buffer for the execution times
+     * @return the buffer
+     */
+    public FireTimeBuffer nextTimeAfter(LocalDateTime after, int n, FireTimeBuffer buffer) {
+        return nextTimeAfter(after, n, null, buffer);
     }
 
-    public LocalDateTime nextTimeAfter(LocalDateTime after, LocalDateTime barier) {
-        return null;
+    /**
+     * Retrieves all execution times after the given time and before the barrier in one pass.
+     *
+     * @param after   the time after which the execution times are searched
+     * @param barrier the time up to which execution times are retrieved, exclusive
+     * @return a new buffer with the execution times
+     */
+    public FireTimeBuffer nextTimeAfter(LocalDateTime after, LocalDateTime barrier) {
+        return nextTimeAfter(after, barrier, new FireTimeBuffer());
+    }
+
+    /**
+     * Retrieves all execution times after the given time and before the barrier in one pass into a reusable buffer.
+     * The buffer is cleared first.
+     *
+     * @param after   the time after which the execution times are searched
+     * @param barrier the time up to which execution times are retrieved, exclusive
+     * @param buffer  the buffer for the execution times
+     * @return the buffer
+     */
+    public FireTimeBuffer nextTimeAfter(LocalDateTime after, LocalDateTime barrier, FireTimeBuffer buffer) {
+        return nextTimeAfter(after, Integer.MAX_VALUE, barrier, buffer);
+    }
+
+    /**
+     * Retrieves at most n execution times after the given time and before the barrier in one pass into a reusable buffer.
+     * The buffer is cleared first.
+     *
+     * @param after   the time after which the execution times are searched
+     * @param n       the maximum number of execution times
+     * @param barrier the time up to which execution times are retrieved, exclusive, or null for no limit
+     * @param buffer  the buffer for the execution times
+     * @return the buffer
+     */
+    public FireTimeBuffer nextTimeAfter(LocalDateTime after, int n, LocalDateTime barrier, FireTimeBuffer buffer) {
+        buffer.clear();
+        EXPRESSION.nextTimes(after, n, barrier, buffer);
+        long from = FireTimeBuffer.toEpochSecond(after);
+        if (buffer.isEmpty() || !zoneTable.hasTransition(from, buffer.last())) return buffer;
+
+        // the wall clock jumps, the times are resolved one by one like single execution times
+        buffer.clear();
+        long next = zoneTable.toEpochSecond(from);
+        long limit = barrier == null ? Long.MAX_VALUE : zoneTable.toEpochSecond(FireTimeBuffer.toEpochSecond(barrier));
+        while (buffer.size() < n) {
+            next = EXPRESSION.nextFireEpochSecond(next, zoneTable);
+            if (next == CompiledCron.NONE || next >= limit) break;
+            buffer.add(zoneTable.toLocalSecond(next));
+        }
+        return buffer;
+    }
+
+    /**
+     * Counts the execution times after the given time and before the barrier.
+     * The count is calculated from the fields and the calendar, so it is cheap even for long time spans
+     * like the executions of a month. The execution times in a daylight saving gap count once, like they run.
+     *
+     * @param after   the time after which the execution times are counted
+     * @param barrier the time up to which execution times are counted, exclusive
+     * @return the number of execution times
+     */
+    public long count(LocalDateTime after, LocalDateTime barrier) {
+        long count = EXPRESSION.count(after, barrier);
+        long from = FireTimeBuffer.toEpochSecond(after);
+        long to = FireTimeBuffer.toEpochSecond(barrier);
+        // an overlap runs at the first pass, so only a gap counts differently than the wall clock
+        long afterEpochSecond = zoneTable.toEpochSecond(from);
+        long barrierEpochSecond = zoneTable.toEpochSecond(to);
+        for (int i = zoneTable.nextTransition(from); i < zoneTable.transitionCount() && zoneTable.localStart(i) < to; i++) {
+            if (!zoneTable.isGap(i)) continue;
+            // the times of the gap and the end of the gap are one execution time at the end of the gap
+            long first = Math.max(from, zoneTable.localStart(i) - 1);
+            long last = Math.min(to, zoneTable.localEnd(i) + 1);
+            long times = EXPRESSION.count(LocalDateTime.ofEpochSecond(first, 0, ZoneOffset.UTC),
+                    LocalDateTime.ofEpochSecond(last, 0, ZoneOffset.UTC));
+            long transition = zoneTable.transition(i);
+            boolean runs = times > 0 && transition > afterEpochSecond && transition < barrierEpochSecond;
+            count += (runs ? 1 : 0) - times;
+        }
+        return count;
+    }
+
+    /**
+     * Retrieves the next execution time after the given instant, without allocating any object.
+     *
+     * @param afterEpochSecond the epoch seconds after which the next execution time is searched
+     * @param rules            the rules of the time zone of the wall clock
+     * @return the epoch seconds of the next execution time, or {@link CompiledCron#NONE}
+     */
+    public long nextFireEpochSecond(long afterEpochSecond, ZoneRules rules) {
+        return EXPRESSION.nextFireEpochSecond(afterEpochSecond, rules);
+    }
+
+    /**
+     * Retrieves the next execution time after the given instant in the time zone of this expression,
+     * without allocating any object.
+     *
+     * @param afterEpochSecond the epoch seconds after which the next execution time is searched
+     * @return the epoch seconds of the next execution time, or {@link CompiledCron#NONE}
+     */
+    public long nextFireEpochSecond(long afterEpochSecond) {
+        return EXPRESSION.nextFireEpochSecond(afterEpochSecond, zoneTable);
     }
 
     public String toString() {
-        return EXPRESSION.toString();
+        return hashExpression != null ? hashExpression : EXPRESSION.toString();
     }
 
     static Date toDate(LocalDateTime ldt) {
@@ -91,10 +380,13 @@ public class LocalCronExpression {
     }
 
     static LocalDateTime toDate(Date date) {
+        if (date == null) return null;
         return LocalDateTime.ofInstant(date.toInstant(), ZoneId.systemDefault());
     }
 
     public void set(String expression) throws ParseException {
-        EXPRESSION = new CronExpression(expression);
+        String replaced = replaceHashTokens(expression, hashSeed);
+        hashExpression = replaced.equals(expression.trim().replaceAll("\\s+", " ")) ? null : expression;
+        EXPRESSION = CompiledCron.compile(hashExpression == null ? expression : replaced);
     }
 }
@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of CrontabScheduler.
+ *
+ * CrontabScheduler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * CrontabScheduler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CrontabScheduler. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.crontab;
+
+/**
+ * The LockStripes guard the state of jobs by a fixed number of locks. A job id always maps to the same lock,
+ * so the checks of one job are atomic, while unrelated jobs mostly get different locks and don't wait for each other.
+ */
+final class LockStripes {
+
+    private final Object[] locks;
+
+    /**
+     * Constructs LockStripes.
+     *
+     * @param stripes the number of locks, rounded up to a power of two
+     */
+    LockStripes(int stripes) {
+        int size = stripes <= 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+        locks = new Object[size];
+        for (int i = 0; i < size; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /**
+     * @param key the job id
+     * @return the lock of the job id
+     */
+    Object get(String key) {
+        int h = key.hashCode();
+        // spread the high bits, like HashMap
+        h ^= h >>> 16;
+        return locks[h & (locks.length - 1)];
+    }
+
+    /**
+     * @return the number of locks
+     */
+    int size() {
+        return locks.length;
+    }
+}
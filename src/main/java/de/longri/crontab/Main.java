@@ -28,13 +28,15 @@ import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.net.InetAddress;
 import java.nio.file.Files;
 import java.security.GeneralSecurityException;
-import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Properties;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.CompletableFuture;
 
 
 public class Main {
@@ -74,35 +76,124 @@ public class Main {
             log = LoggerFactory.getLogger(Main.class);
             log.debug("Found {} jobs in Inifile", jobs.size());
 
-            AtomicInteger runningJobs = new AtomicInteger(0);
+            if (cmd.hasOption("history")) {
+                // record the executions at the history file
+                ExecutionHistory history = new ExecutionHistory(new File(cmd.getOptionValue("history").trim()));
+                if (cmd.hasOption("stats")) {
+                    printStats(jobs, history);
+                    history.close();
+                    return;
+                }
+                Runtime.getRuntime().addShutdownHook(new Thread(history::close));
+                Cronjob.setExecutionHistory(history);
+            } else if (cmd.hasOption("stats")) {
+                throw new RuntimeException("Option --stats needs the history file of option --history");
+            }
+
+            if (cmd.hasOption("virtual-threads")) {
+                log.debug("execute jobs at virtual threads");
+                JobThreads.setVirtual(true);
+            }
+
+            if (cmd.hasOption("state-dir") && cmd.hasOption("journal")) {
+                throw new RuntimeException("Option --journal can't be used with the shared directory of option --state-dir");
+            } else if (cmd.hasOption("journal-sync") && !cmd.hasOption("journal")) {
+                throw new RuntimeException("Option --journal-sync needs the journal file of option --journal");
+            }
+
+            if (cmd.hasOption("state-dir")) {
+                // register the executions at a directory shared by all scheduler processes
+                File stateDir = new File(cmd.getOptionValue("state-dir").trim());
+                log.debug("register executions at {}", stateDir);
+                Cronjob.setExecutionStore(new LeaseStore(stateDir));
+            } else if (cmd.hasOption("journal")) {
+                // register the executions at a memory-mapped journal instead of the preferences
+                File journalFile = new File(cmd.getOptionValue("journal").trim());
+                log.debug("register executions at journal {}", journalFile);
+                long window = cmd.hasOption("journal-sync") ? Long.parseLong(cmd.getOptionValue("journal-sync").trim()) : ExecutionJournal.NO_SYNC;
+                ExecutionJournal journal = new ExecutionJournal(journalFile, new PreferencesExecutionStore(), window);
+                Runtime.getRuntime().addShutdownHook(new Thread(journal::close));
+                Cronjob.setExecutionStore(journal);
+            }
+
+            WorkerPools pools = new WorkerPools(jobs.getSection("pools"));
+            pools.setAdmission(AdmissionControl.getFromSection(jobs.getSection("admission")));
+
+            // the executions interrupted by the end of a scheduler process are handled first, according to their recovery policy
+            ArrayList<CompletableFuture<Boolean>> recoveries = new ArrayList<>();
+            for (Cronjob job : jobs) {
+                recoveries.add(job.recoverInterrupted(pools.executor(job)).exceptionally(e -> {
+                    log.error("Recovery of job {} failed", job.getName(), e);
+                    return false;
+                }));
+            }
+
+            if (cmd.hasOption("stagger")) {
+                int stagger = Integer.parseInt(cmd.getOptionValue("stagger").trim());
+                log.debug("spread jobs with the same cron expression over {} seconds", stagger);
+                jobs.stagger(stagger);
+            }
+
+            if (cmd.hasOption('d')) {
+                // resident mode, keep the jobs in memory and fire them until the process is stopped
+                TriggerStore store = TriggerStore.getFromString(cmd.getOptionValue("trigger-store", "heap"));
+                CronDaemon daemon = new CronDaemon(jobs, store, pools);
+                if (cmd.hasOption("cluster-dir")) {
+                    // schedule only the shard of this node
+                    String nodeId = cmd.getOptionValue("node-id", InetAddress.getLocalHost().getHostName()).trim();
+                    long lease = Long.parseLong(cmd.getOptionValue("node-lease", "30").trim()) * 1000;
+                    log.debug("node {} joins cluster {}", nodeId, cmd.getOptionValue("cluster-dir"));
+                    daemon.setMembership(new ClusterMembership(new File(cmd.getOptionValue("cluster-dir").trim()), nodeId, lease));
+                }
+                Runtime.getRuntime().addShutdownHook(new Thread(daemon::stop));
+                daemon.start();
+                daemon.join();
+                pools.shutdown();
+                log.debug("{} job starts rejected", pools.getAdmission().getRejectedCount());
+                log.debug("End of execution \n------------------------------------------------------------");
+                System.out.println("End of execution");
+                return;
+            }
+
+            JobGraph graph = new JobGraph(jobs, pools);
+            // the jobs due in the wait time are read from the index instead of evaluating every job
+            long now = System.currentTimeMillis() / 1000;
+            BitSet due = new DueIndex(jobs, WAIT_TIME + 1, now).getDueWithin(now, WAIT_TIME);
+            ArrayList<CompletableFuture<Void>> runningJobs = new ArrayList<>();
+            runningJobs.add(CompletableFuture.allOf(recoveries.toArray(new CompletableFuture<?>[0])));
             int idx = 0;
             for (Cronjob job : jobs) {
                 idx++;
-                if (job.isRunNextMin(WAIT_TIME)) {
+                if (graph.isDependent(job)) {
+                    log.debug("Job {} runs after {}", "Job" + idx, job.options.get(JobGraph.OPTION));
+                    continue;
+                }
+                // run the executions missed since the last execution first, according to the misfire policy
+                CompletableFuture<Void> missed = job.getMisfirePolicy() == MisfirePolicy.SKIP
+                        ? CompletableFuture.completedFuture(null)
+                        : CompletableFuture.runAsync(() -> job.runMissedExecutions(pools), JobThreads.executor("Job-" + job.getName()));
+
+                if (due.get(idx - 1)) {
                     int count = job.executionCountNextMinute(WAIT_TIME);
                     log.debug("Job {} runs {} times in the next {} minutes", "Job" + idx, count, WAIT_TIME);
-                    runningJobs.incrementAndGet();
-                    new Thread(new Runnable() {
-                        @Override
-                        public void run() {
-                            job.waitAndRun(WAIT_TIME);
-                            runningJobs.decrementAndGet();
-                        }
-                    }).start();
+                    runningJobs.add(missed.thenRunAsync(() -> job.waitAndRun(WAIT_TIME, pools),
+                            JobThreads.executor("Job-" + job.getName())));
                 } else {
-                    String nextExe = DATE_TIME_FORMATTER.format(job.cronExpression.nextTimeAfter(LocalDateTime.now()));
+                    runningJobs.add(missed);
+                    String nextExe = DATE_TIME_FORMATTER.format(job.cronExpression.nextTimeAfter(job.cronExpression.now()));
                     log.debug("Job {} dont run in the next {} minutes! Next execution is: {}", "Job" + idx, WAIT_TIME, nextExe);
                 }
             }
 
-            int ruJo = runningJobs.get();
+            int ruJo = runningJobs.size();
             if (ruJo > 0)
                 log.debug("waiting for " + ruJo + " jobs");
 
             //wait for all running jobs are ready
-            while (runningJobs.get() > 0) {
-                Thread.sleep(250);
-            }
+            CompletableFuture.allOf(runningJobs.toArray(new CompletableFuture<?>[0])).join();
+            graph.join();
+            pools.shutdown();
+            log.debug("{} job starts rejected", pools.getAdmission().getRejectedCount());
             log.debug("End of execution \n------------------------------------------------------------");
             System.out.println("End of execution");
         } catch (Exception e) {
@@ -112,6 +203,12 @@ public class Main {
         }
     }
 
+    private static void printStats(CronJobList jobs, ExecutionHistory history) {
+        for (Cronjob job : jobs) {
+            System.out.println(job.getName() + ": " + history.getStats(job.prefId));
+        }
+    }
+
     private static CommandLine getCMD(String[] args) {
         CommandLineParser parser = new DefaultParser();
         HelpFormatter formatter = new HelpFormatter();
@@ -142,6 +239,54 @@ public class Main {
         logFile.setRequired(false);
         options.addOption(logFile);
 
+        Option daemon = new Option("d", "daemon", false, "Run as resident daemon and fire the jobs until the process is stopped");
+        daemon.setRequired(false);
+        options.addOption(daemon);
+
+        Option triggerStore = new Option("ts", "trigger-store", true, "Store for pending triggers in daemon mode: heap (default) or wheel");
+        triggerStore.setRequired(false);
+        options.addOption(triggerStore);
+
+        Option virtualThreads = new Option("vt", "virtual-threads", false, "Execute jobs at virtual threads");
+        virtualThreads.setRequired(false);
+        options.addOption(virtualThreads);
+
+        Option stagger = new Option("st", "stagger", true, "Spread jobs with the same cron expression over this number of seconds");
+        stagger.setRequired(false);
+        options.addOption(stagger);
+
+
+        Option stateDir = new Option("sd", "state-dir", true, "Shared directory for execution leases, so several scheduler processes run every execution once");
+        stateDir.setRequired(false);
+        options.addOption(stateDir);
+
+        Option journal = new Option("jf", "journal", true, "Journal file for the executions of this process instead of the user preferences");
+        journal.setRequired(false);
+        options.addOption(journal);
+
+        Option journalSync = new Option("js", "journal-sync", true, "Sync every execution to the journal, executions within this commit window in milliseconds are synced together");
+        journalSync.setRequired(false);
+        options.addOption(journalSync);
+
+        Option history = new Option("hf", "history", true, "History file which keeps the recent executions of every job");
+        history.setRequired(false);
+        options.addOption(history);
+
+        Option stats = new Option("s", "stats", false, "Print the duration percentiles and the failure rate of every job from the history file and exit");
+        stats.setRequired(false);
+        options.addOption(stats);
+
+        Option clusterDir = new Option("cd", "cluster-dir", true, "Shared directory of the scheduler nodes in daemon mode, every node schedules only its shard of the jobs");
+        clusterDir.setRequired(false);
+        options.addOption(clusterDir);
+
+        Option nodeId = new Option("ni", "node-id", true, "Unique id of this node in the cluster, default is the host name");
+        nodeId.setRequired(false);
+        options.addOption(nodeId);
+
+        Option nodeLease = new Option("nl", "node-lease", true, "Seconds without heartbeat after which a node is dead and its jobs are taken over (default 30)");
+        nodeLease.setRequired(false);
+        options.addOption(nodeLease);
 
         return options;
     }
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of CrontabScheduler.
+ *
+ * CrontabScheduler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * CrontabScheduler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CrontabScheduler. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.crontab;
+
+/**
+ * The MisfirePolicy defines what happens with the execution times of a {@link Cronjob}
+ * that are missed, because the scheduler was down, paused or busy.
+ * <p>
+ * Set it with the job option misfire, the cap of CATCH_UP with the job option misfire.max.
+ */
+public enum MisfirePolicy {
+
+    /**
+     * Missed execution times are skipped, the job runs at its next execution time.
+     */
+    SKIP,
+
+    /**
+     * All missed execution times are coalesced into one execution.
+     */
+    COALESCE,
+
+    /**
+     * Every missed execution time runs, up to a maximum of the latest ones.
+     */
+    CATCH_UP;
+
+    /**
+     * The job option key of the policy.
+     */
+    public static final String OPTION = "misfire";
+
+    /**
+     * The job option key of the maximum number of missed executions for CATCH_UP.
+     */
+    public static final String OPTION_MAX = "misfire.max";
+
+    /**
+     * The default maximum number of missed executions for CATCH_UP.
+     */
+    public static final int DEFAULT_MAX = 10;
+
+    /**
+     * Gets a policy from a string representation.
+     *
+     * @param value the string representation, like coalesce or CATCH_UP
+     * @return the policy, SKIP if value is null
+     */
+    public static MisfirePolicy getFromString(String value) {
+        if (value == null) return SKIP;
+        return valueOf(value.trim().toUpperCase().replace('-', '_'));
+    }
+}
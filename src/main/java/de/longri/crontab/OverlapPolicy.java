@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of CrontabScheduler.
+ *
+ * CrontabScheduler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * CrontabScheduler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CrontabScheduler. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.crontab;
+
+/**
+ * The OverlapPolicy defines what happens if a {@link Cronjob} is due
+ * while its previous execution is still waiting or running.
+ * <p>
+ * Set it with the job option overlap.
+ */
+public enum OverlapPolicy {
+
+    /**
+     * The executions run side by side.
+     */
+    ALLOW,
+
+    /**
+     * The new execution is skipped.
+     */
+    SKIP,
+
+    /**
+     * One new execution waits until the previous one is finished, further ones are skipped.
+     */
+    QUEUE,
+
+    /**
+     * The previous execution is canceled, the new one starts as soon as it is finished.
+     */
+    CANCEL;
+
+    /**
+     * The job option key of the policy.
+     */
+    public static final String OPTION = "overlap";
+
+    /**
+     * Gets a policy from a string representation.
+     *
+     * @param value the string representation, like skip or QUEUE
+     * @return the policy, ALLOW if value is null
+     */
+    public static OverlapPolicy getFromString(String value) {
+        if (value == null) return ALLOW;
+        return valueOf(value.trim().toUpperCase());
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of CrontabScheduler.
+ *
+ * CrontabScheduler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * CrontabScheduler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CrontabScheduler. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.crontab;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.prefs.Preferences;
+
+/**
+ * The PreferencesExecutionStore registers the executions at the user {@link Preferences}.
+ * It is atomic inside of one process only, guarded by a lock per job.
+ * The executions registered at the same time are flushed together with a {@link GroupCommit}.
+ * <p>
+ * A running execution is registered with the process id, until it is finished, so the execution of a process
+ * which died is found by {@link #takeInterrupted(String)}.
+ */
+public class PreferencesExecutionStore implements ExecutionStore {
+
+    private final static Logger log = LoggerFactory.getLogger(PreferencesExecutionStore.class);
+
+    /**
+     * The suffix of the fencing token keys.
+     */
+    static final String TOKEN_SUFFIX = ".token";
+
+    /**
+     * The suffix of the keys of the process id of the running execution.
+     */
+    static final String OWNER_SUFFIX = ".owner";
+
+    private final Preferences prefs;
+
+    // the executions of a burst are flushed together, outside of the locks of the jobs
+    private final GroupCommit commit;
+
+    private final LockStripes locks = new LockStripes(64);
+
+    /**
+     * Constructs a PreferencesExecutionStore with the preferences node of {@link Cronjob}.
+     */
+    public PreferencesExecutionStore() {
+        this(Preferences.userRoot().node(Cronjob.class.getName()));
+    }
+
+    /**
+     * Constructs a PreferencesExecutionStore with the given preferences node.
+     *
+     * @param prefs the preferences node
+     */
+    public PreferencesExecutionStore(Preferences prefs) {
+        this.prefs = prefs;
+        this.commit = new GroupCommit(0, prefs::flush);
+    }
+
+    @Override
+    public long acquire(String jobId, LocalDateTime fireTime) {
+        long token;
+        long sequence;
+        synchronized (locks.get(jobId)) {
+            String formattedDateTime = fireTime.format(UTILS.formatter);
+            String lastStr = prefs.get(key(jobId, ""), "");
+            if (ExecutionStore.isRegistered(fireTime, lastStr)) {
+                log.debug("BLOCK => Last {} >= Next {}", lastStr, formattedDateTime);
+                return BLOCKED;
+            }
+
+            log.debug("RUN => Last {} < Next {}", lastStr, formattedDateTime);
+
+            //register execution time
+            token = prefs.getLong(key(jobId, TOKEN_SUFFIX), BLOCKED) + 1;
+            prefs.put(key(jobId, ""), formattedDateTime);
+            prefs.putLong(key(jobId, TOKEN_SUFFIX), token);
+            prefs.putLong(key(jobId, OWNER_SUFFIX), UTILS.PID);
+            sequence = commit.register();
+        }
+        flush(jobId, sequence);
+        return token;
+    }
+
+    @Override
+    public void finished(String jobId, long token, boolean success) {
+        long sequence;
+        synchronized (locks.get(jobId)) {
+            // a newer execution is registered already
+            if (prefs.getLong(key(jobId, TOKEN_SUFFIX), BLOCKED) != token) return;
+            prefs.remove(key(jobId, OWNER_SUFFIX));
+            sequence = commit.register();
+        }
+        flush(jobId, sequence);
+    }
+
+    @Override
+    public Claim takeInterrupted(String jobId) {
+        Claim claim;
+        long sequence;
+        synchronized (locks.get(jobId)) {
+            long owner = prefs.getLong(key(jobId, OWNER_SUFFIX), 0);
+            if (owner == 0 || owner == UTILS.PID || UTILS.isAlive(owner)) return null;
+            String last = prefs.get(key(jobId, ""), "");
+            try {
+                claim = new Claim(UTILS.parseDateTime(last), prefs.getLong(key(jobId, TOKEN_SUFFIX), BLOCKED));
+            } catch (DateTimeParseException e) {
+                log.warn("Can't read interrupted execution '{}' of {}", last, jobId);
+                prefs.remove(key(jobId, OWNER_SUFFIX));
+                return null;
+            }
+            if (claim.token == BLOCKED) {
+                // an execution registered without fencing token gets one
+                claim = new Claim(claim.fireTime, BLOCKED + 1);
+                prefs.putLong(key(jobId, TOKEN_SUFFIX), claim.token);
+            }
+            log.debug("Execution {} of {} interrupted at process {}", last, jobId, owner);
+            prefs.putLong(key(jobId, OWNER_SUFFIX), UTILS.PID);
+            sequence = commit.register();
+        }
+        flush(jobId, sequence);
+        return claim;
+    }
+
+    /**
+     * Retrieves the preferences key of a job. The job id contains the cron expression and the job name,
+     * a key longer than {@link Preferences#MAX_KEY_LENGTH} is shortened with a hash for uniqueness.
+     *
+     * @param jobId  the unique id of the job
+     * @param suffix the suffix of the key, or an empty string for the last execution
+     * @return the key
+     */
+    static String key(String jobId, String suffix) {
+        String key = jobId + suffix;
+        if (key.length() <= Preferences.MAX_KEY_LENGTH) return key;
+        String hash = "-" + Integer.toHexString(jobId.hashCode());
+        return jobId.substring(0, Preferences.MAX_KEY_LENGTH - hash.length() - suffix.length()) + hash + suffix;
+    }
+
+    private void flush(String jobId, long sequence) {
+        try {
+            // one flush for all executions registered in the meantime
+            commit.await(sequence);
+        } catch (RuntimeException e) {
+            log.error("Can't flush execution of {}", jobId, e.getCause());
+        }
+    }
+
+    @Override
+    public String getLastExecution(String jobId) {
+        return prefs.get(key(jobId, ""), "");
+    }
+
+    @Override
+    public boolean isCurrent(String jobId, long token) {
+        return prefs.getLong(key(jobId, TOKEN_SUFFIX), BLOCKED) == token;
+    }
+}
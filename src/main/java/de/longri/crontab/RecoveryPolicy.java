@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of CrontabScheduler.
+ *
+ * CrontabScheduler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * CrontabScheduler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CrontabScheduler. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.crontab;
+
+/**
+ * The RecoveryPolicy defines what happens with an execution of a {@link Cronjob}
+ * that was interrupted, because the scheduler process died while the job was running.
+ * The interrupted executions are found at the start of the scheduler.
+ * <p>
+ * Set it with the job option recover.
+ */
+public enum RecoveryPolicy {
+
+    /**
+     * The interrupted execution runs again.
+     */
+    RERUN,
+
+    /**
+     * The job removes the partial results of the interrupted execution, see {@link Job#cleanUp(java.time.LocalDateTime)}.
+     */
+    CLEANUP,
+
+    /**
+     * The interrupted execution is only logged as error.
+     */
+    REPORT;
+
+    /**
+     * The job option key of the policy.
+     */
+    public static final String OPTION = "recover";
+
+    /**
+     * Gets a policy from a string representation.
+     *
+     * @param value the string representation, like rerun or CLEANUP
+     * @return the policy, REPORT if value is null
+     */
+    public static RecoveryPolicy getFromString(String value) {
+        if (value == null) return REPORT;
+        return valueOf(value.trim().toUpperCase().replace('-', '_'));
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of CrontabScheduler.
+ *
+ * CrontabScheduler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * CrontabScheduler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CrontabScheduler. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.crontab;
+
+/**
+ * The RunState is the state of the executions of a {@link Cronjob}.
+ * <pre>
+ * IDLE -&gt; QUEUED -&gt; RUNNING -&gt; IDLE
+ *                     RUNNING -&gt; CANCELLING -&gt; QUEUED
+ * </pre>
+ */
+public enum RunState {
+
+    /**
+     * No execution is waiting or running.
+     */
+    IDLE,
+
+    /**
+     * An execution is waiting for its executor.
+     */
+    QUEUED,
+
+    /**
+     * An execution is running.
+     */
+    RUNNING,
+
+    /**
+     * The running execution is canceled, the next one waits until it is finished.
+     */
+    CANCELLING
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of CrontabScheduler.
+ *
+ * CrontabScheduler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * CrontabScheduler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CrontabScheduler. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.crontab;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * The ShardRing assigns jobs to scheduler nodes with consistent hashing.
+ * Every node is placed with a number of virtual points on a ring of 64 bit hashes,
+ * a job belongs to the first node point after the hash of its name.
+ * If a node leaves the ring, only its jobs move to other nodes.
+ */
+public class ShardRing {
+
+    /**
+     * The number of virtual points of every node.
+     */
+    public static final int VIRTUAL_NODES = 64;
+
+    private final TreeMap<Long, String> ring = new TreeMap<>();
+    private final TreeSet<String> nodes = new TreeSet<>();
+
+    /**
+     * Constructs a ShardRing of the given nodes.
+     *
+     * @param nodes the ids of the nodes
+     */
+    public ShardRing(Collection<String> nodes) {
+        for (String node : nodes) {
+            if (!this.nodes.add(node)) continue;
+            for (int i = 0; i < VIRTUAL_NODES; i++) {
+                ring.put(hash(node + "#" + i), node);
+            }
+        }
+    }
+
+    /**
+     * Retrieves the node which owns the given key.
+     *
+     * @param key the key, like the name of a job
+     * @return the id of the owner node, or null if the ring is empty
+     */
+    public String getOwner(String key) {
+        if (ring.isEmpty()) return null;
+        Map.Entry<Long, String> entry = ring.ceilingEntry(hash(key));
+        return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+    }
+
+    /**
+     * Checks if a job belongs to the given node.
+     *
+     * @param job    the job
+     * @param nodeId the id of the node
+     * @return true if the node owns the job
+     */
+    public boolean owns(Cronjob job, String nodeId) {
+        return nodeId.equals(getOwner(job.getName()));
+    }
+
+    /**
+     * @return the ids of the nodes, sorted
+     */
+    public Set<String> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * The 64 bit FNV-1a hash, it is the same on every JVM.
+     *
+     * @param value the value to hash
+     * @return the hash
+     */
+    static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        // spread the last bytes over the whole value
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return "ShardRing" + nodes;
+    }
+}
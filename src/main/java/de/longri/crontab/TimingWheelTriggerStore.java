@@ -0,0 +1,228 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of CrontabScheduler.
+ *
+ * CrontabScheduler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * CrontabScheduler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CrontabScheduler. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.crontab;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+
+/**
+ * A hashed hierarchical timing wheel {@link TriggerStore} with a resolution of one second.
+ * <p>
+ * The wheel has a second level (60 slots of one second), a minute level (60 slots of one minute),
+ * an hour level (24 slots of one hour) and a day level (365 slots of one day).
+ * A trigger is put into the slot of the lowest level that covers its distance to the current time.
+ * When the current time crosses a minute, hour or day boundary, the slot of the higher level for
+ * the new period is cascaded into the lower levels. Triggers more than 365 days ahead wait
+ * in an overflow list, which is checked once per day.
+ * <p>
+ * Adding a trigger and expiring it costs O(1), independent of the number of pending triggers.
+ */
+public class TimingWheelTriggerStore implements TriggerStore {
+
+    private static final int[] SLOTS = {60, 60, 24, 365};
+    private static final long[] SPAN = {1, 60, 3600, 86400};
+
+    private final Slot[][] wheels = new Slot[SLOTS.length][];
+    private final int[] levelCount = new int[SLOTS.length];
+    private final ArrayList<Trigger> overflow = new ArrayList<>();
+    private final ArrayDeque<Trigger> ready = new ArrayDeque<>();
+
+    /**
+     * The current time of the wheel in seconds since the epoch.
+     * All triggers with an execution time up to this second are in the ready list.
+     */
+    private long current;
+    private int size = 0;
+
+    /**
+     * Constructs a timing wheel starting at the current time.
+     */
+    public TimingWheelTriggerStore() {
+        this(System.currentTimeMillis());
+    }
+
+    /**
+     * Constructs a timing wheel starting at the given time.
+     *
+     * @param startTime the start time in milliseconds since the epoch
+     */
+    TimingWheelTriggerStore(long startTime) {
+        for (int level = 0; level < SLOTS.length; level++) {
+            wheels[level] = new Slot[SLOTS[level]];
+        }
+        current = Math.floorDiv(startTime, 1000);
+    }
+
+    @Override
+    public void add(Trigger trigger) {
+        size++;
+        insert(trigger);
+    }
+
+    private void insert(Trigger trigger) {
+        long second = Math.floorDiv(trigger.fireTime, 1000);
+        long delta = second - current;
+        if (delta <= 0) {
+            ready.add(trigger);
+            return;
+        }
+        for (int level = 0; level < SLOTS.length; level++) {
+            if (delta < SPAN[level] * SLOTS[level]) {
+                int slot = (int) ((second / SPAN[level]) % SLOTS[level]);
+                if (wheels[level][slot] == null) wheels[level][slot] = new Slot();
+                wheels[level][slot].triggers.add(trigger);
+                levelCount[level]++;
+                return;
+            }
+        }
+        overflow.add(trigger);
+    }
+
+    @Override
+    public boolean remove(Cronjob job) {
+        boolean removed = false;
+        for (int level = 0; level < SLOTS.length; level++) {
+            for (Slot slot : wheels[level]) {
+                if (slot == null) continue;
+                Iterator<Trigger> iterator = slot.triggers.iterator();
+                while (iterator.hasNext()) {
+                    if (iterator.next().job == job) {
+                        iterator.remove();
+                        levelCount[level]--;
+                        size--;
+                        removed = true;
+                    }
+                }
+            }
+        }
+        int before = ready.size() + overflow.size();
+        ready.removeIf(trigger -> trigger.job == job);
+        overflow.removeIf(trigger -> trigger.job == job);
+        int count = before - ready.size() - overflow.size();
+        size -= count;
+        return removed || count > 0;
+    }
+
+    @Override
+    public void clear() {
+        for (int level = 0; level < SLOTS.length; level++) {
+            for (Slot slot : wheels[level]) {
+                if (slot != null) slot.triggers.clear();
+            }
+            levelCount[level] = 0;
+        }
+        overflow.clear();
+        ready.clear();
+        size = 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public long nextFireTime() {
+        if (!ready.isEmpty()) return current * 1000;
+        if (size == 0) return Long.MAX_VALUE;
+
+        // triggers of the higher levels are cascaded at the next minute boundary at the earliest
+        long boundary = (Math.floorDiv(current, 60) + 1) * 60;
+        if (levelCount[0] > 0) {
+            for (long second = current + 1; second < boundary; second++) {
+                ArrayDeque<Trigger> deque = triggers(0, (int) (second % 60));
+                if (deque != null && !deque.isEmpty()) return second * 1000;
+            }
+        }
+        return boundary * 1000;
+    }
+
+    @Override
+    public Trigger pollDue(long now) {
+        advance(Math.floorDiv(now, 1000));
+        Trigger trigger = ready.poll();
+        if (trigger != null) size--;
+        return trigger;
+    }
+
+    /**
+     * Moves the current time of the wheel to the given second and collects all expired triggers.
+     * Periods without pending triggers at the lower levels are skipped.
+     */
+    private void advance(long target) {
+        while (current < target) {
+            long next = current + 1;
+            if (levelCount[0] == 0) {
+                // nothing to expire at the second level, jump to the next boundary of a non-empty level
+                int level = 1;
+                while (level < SLOTS.length && levelCount[level] == 0) level++;
+                long span = level < SLOTS.length ? SPAN[level] : SPAN[SLOTS.length - 1];
+                next = Math.min((Math.floorDiv(current, span) + 1) * span, target);
+            }
+            current = next;
+            tick(current);
+        }
+    }
+
+    private void tick(long second) {
+        if (second % SPAN[3] == 0) {
+            cascade(3, second);
+            for (Iterator<Trigger> iterator = overflow.iterator(); iterator.hasNext(); ) {
+                Trigger trigger = iterator.next();
+                if (Math.floorDiv(trigger.fireTime, 1000) - second < SPAN[3] * SLOTS[3]) {
+                    iterator.remove();
+                    insert(trigger);
+                }
+            }
+        }
+        if (second % SPAN[2] == 0) cascade(2, second);
+        if (second % SPAN[1] == 0) cascade(1, second);
+
+        ArrayDeque<Trigger> deque = triggers(0, (int) (second % SLOTS[0]));
+        if (deque != null && !deque.isEmpty()) {
+            levelCount[0] -= deque.size();
+            ready.addAll(deque);
+            deque.clear();
+        }
+    }
+
+    private void cascade(int level, long second) {
+        ArrayDeque<Trigger> deque = triggers(level, (int) ((second / SPAN[level]) % SLOTS[level]));
+        if (deque == null || deque.isEmpty()) return;
+        levelCount[level] -= deque.size();
+        ArrayList<Trigger> list = new ArrayList<>(deque);
+        deque.clear();
+        for (Trigger trigger : list) {
+            insert(trigger);
+        }
+    }
+
+    private ArrayDeque<Trigger> triggers(int level, int slot) {
+        Slot holder = wheels[level][slot];
+        return holder == null ? null : holder.triggers;
+    }
+
+    /**
+     * A slot of a wheel, it is created with the first trigger.
+     */
+    private static final class Slot {
+        final ArrayDeque<Trigger> triggers = new ArrayDeque<>();
+    }
+}
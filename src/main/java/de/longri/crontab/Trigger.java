@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of CrontabScheduler.
+ *
+ * CrontabScheduler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * CrontabScheduler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CrontabScheduler. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.crontab;
+
+import java.time.LocalDateTime;
+
+/**
+ * A Trigger is a scheduled execution of a {@link Cronjob} at a given execution time.
+ */
+public class Trigger implements Comparable<Trigger> {
+
+    /**
+     * The job to execute.
+     */
+    public final Cronjob job;
+
+    /**
+     * The local execution time, the wall clock of the time zone of the job.
+     */
+    public final LocalDateTime next;
+
+    /**
+     * The execution time in milliseconds since the epoch, delayed by the stagger of the job.
+     */
+    public final long fireTime;
+
+    /**
+     * True if this trigger is not re-scheduled after its execution.
+     */
+    public final boolean oneShot;
+
+    /**
+     * Constructs a Trigger for the given job and local execution time.
+     *
+     * @param job     the job to execute
+     * @param next    the local execution time
+     * @param oneShot true if the trigger is not re-scheduled after its execution
+     */
+    public Trigger(Cronjob job, LocalDateTime next, boolean oneShot) {
+        this.job = job;
+        this.next = next;
+        this.fireTime = job.cronExpression.toEpochMilli(next) + job.getStaggerSeconds() * 1000L;
+        this.oneShot = oneShot;
+    }
+
+    @Override
+    public int compareTo(Trigger other) {
+        return Long.compare(this.fireTime, other.fireTime);
+    }
+
+    @Override
+    public String toString() {
+        return "Trigger: " + job.getName() + " at " + next;
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of CrontabScheduler.
+ *
+ * CrontabScheduler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * CrontabScheduler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CrontabScheduler. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.crontab;
+
+/**
+ * A TriggerStore holds the pending {@link Trigger}s of a {@link CronDispatcher}.
+ * Implementations don't need to be thread safe, the dispatcher synchronizes all calls.
+ */
+public interface TriggerStore {
+
+    /**
+     * Adds a trigger.
+     *
+     * @param trigger the trigger to add
+     */
+    void add(Trigger trigger);
+
+    /**
+     * Removes all triggers of the given job.
+     *
+     * @param job the job to remove
+     * @return true if a trigger of the job was removed
+     */
+    boolean remove(Cronjob job);
+
+    /**
+     * Removes all triggers.
+     */
+    void clear();
+
+    /**
+     * @return the number of pending triggers
+     */
+    int size();
+
+    /**
+     * Returns the time in milliseconds since the epoch at which the dispatcher has to call
+     * {@link #pollDue(long)} next. This is never later than the earliest pending execution time.
+     *
+     * @return the next wake-up time, or {@link Long#MAX_VALUE} if the store is empty
+     */
+    long nextFireTime();
+
+    /**
+     * Removes and returns one trigger that is due at the given time.
+     *
+     * @param now the current time in milliseconds since the epoch
+     * @return a due trigger, or null if no trigger is due
+     */
+    Trigger pollDue(long now);
+
+    /**
+     * Creates a trigger store by name.
+     *
+     * @param name "heap" or "wheel"
+     * @return the new trigger store
+     */
+    static TriggerStore getFromString(String name) {
+        switch (name.trim().toLowerCase()) {
+            case "heap":
+                return new HeapTriggerStore();
+            case "wheel":
+                return new TimingWheelTriggerStore();
+            default:
+                throw new RuntimeException("Unknown trigger store: " + name);
+        }
+    }
+}
@@ -52,6 +52,21 @@ public class UTILS {
         return formatter.format(localDateTime);
     }
 
+    /**
+     * The process id of this scheduler process.
+     */
+    public static final long PID = ProcessHandle.current().pid();
+
+    /**
+     * Checks if a process of this host is alive.
+     *
+     * @param pid the process id
+     * @return true if the process is alive
+     */
+    public static boolean isAlive(long pid) {
+        return ProcessHandle.of(pid).map(ProcessHandle::isAlive).orElse(false);
+    }
+
 
 
 }
\ No newline at end of file
@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of CrontabScheduler.
+ *
+ * CrontabScheduler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * CrontabScheduler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CrontabScheduler. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.crontab;
+
+import org.ini4j.Ini;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.concurrent.*;
+
+/**
+ * The WorkerPools class holds the executors which run the due jobs.
+ * There is one global pool and optionally one pool per {@link de.longri.crontab.type.JobType},
+ * each with a maximum number of concurrently running jobs and a queue for the waiting ones.
+ * <p>
+ * The pools are configured in the section [pools] of the ini file, like:
+ * <pre>
+ * [pools]
+ * global = 4
+ * global.queue = 100
+ * COPY = 1
+ * COPY.queue = 20
+ * </pre>
+ * A job type without own pool runs at the global pool. Without configuration the global pool
+ * is unbounded, so every job runs immediately.
+ * <p>
+ * The starts of the jobs are admitted by an {@link AdmissionControl} before they reach their pool.
+ */
+public class WorkerPools {
+
+    private final static Logger log = LoggerFactory.getLogger(WorkerPools.class);
+
+    /**
+     * The name of the global pool.
+     */
+    public static final String GLOBAL = "global";
+
+    /**
+     * The suffix of the queue size keys.
+     */
+    static final String QUEUE_SUFFIX = ".queue";
+
+    private final HashMap<String, ThreadPoolExecutor> pools = new HashMap<>();
+    private volatile AdmissionControl admission = new AdmissionControl();
+
+    /**
+     * Constructs WorkerPools with an unbounded global pool.
+     */
+    public WorkerPools() {
+        pools.put(GLOBAL, new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), JobThreads.factory()));
+    }
+
+    /**
+     * Constructs WorkerPools from the section [pools] of an ini file.
+     *
+     * @param section the pool section, can be null
+     */
+    public WorkerPools(Ini.Section section) {
+        this();
+        if (section == null) return;
+        for (String name : section.keySet()) {
+            if (name.endsWith(QUEUE_SUFFIX)) continue;
+            int max = Integer.parseInt(section.get(name).trim());
+            String queue = section.get(name + QUEUE_SUFFIX);
+            int queueSize = queue == null ? Integer.MAX_VALUE : Integer.parseInt(queue.trim());
+            setPool(name.trim(), max, queueSize);
+        }
+    }
+
+    /**
+     * Sets the pool with the given name.
+     *
+     * @param name           {@link #GLOBAL} or the ini name of a job type
+     * @param maxConcurrency the maximum number of concurrently running jobs
+     * @param queueSize      the maximum number of waiting jobs
+     */
+    public synchronized void setPool(String name, int maxConcurrency, int queueSize) {
+        if (maxConcurrency < 1) throw new RuntimeException("Pool [" + name + "] needs a concurrency of at least 1");
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(maxConcurrency, maxConcurrency, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(Math.max(queueSize, 1)), JobThreads.factory());
+        pool.allowCoreThreadTimeOut(true);
+        ThreadPoolExecutor old = pools.put(name, pool);
+        if (old != null) old.shutdown();
+        log.debug("Pool {} with max {} running jobs and a queue of {}", name, maxConcurrency, queueSize);
+    }
+
+    /**
+     * Sets the admission control for the starts of all jobs.
+     *
+     * @param admission the admission control
+     */
+    public void setAdmission(AdmissionControl admission) {
+        this.admission = admission;
+    }
+
+    /**
+     * @return the admission control for the starts of all jobs
+     */
+    public AdmissionControl getAdmission() {
+        return admission;
+    }
+
+    /**
+     * Retrieves the pool which runs the given job.
+     *
+     * @param job the job
+     * @return the pool of the job type, or the global pool
+     */
+    public synchronized ThreadPoolExecutor getPool(Cronjob job) {
+        ThreadPoolExecutor pool = job.getJob() == null ? null : pools.get(job.getType().toIniString());
+        return pool != null ? pool : pools.get(GLOBAL);
+    }
+
+    /**
+     * Submits a task of the given job to its pool.
+     *
+     * @param job  the job
+     * @param task the task to run
+     * @return the future of the task
+     * @throws RejectedExecutionException if the queue of the pool is full
+     */
+    public Future<?> submit(Cronjob job, Runnable task) {
+        return getPool(job).submit(task);
+    }
+
+    /**
+     * Retrieves an executor which runs the tasks of the given job at its pool,
+     * after they are admitted by the admission control.
+     *
+     * @param job the job
+     * @return the executor
+     */
+    public Executor executor(Cronjob job) {
+        return admission.executor(job, task -> getPool(job).execute(task));
+    }
+
+    /**
+     * @return the number of waiting jobs of all pools
+     */
+    public synchronized int getQueueSize() {
+        int size = 0;
+        for (ThreadPoolExecutor pool : pools.values()) {
+            size += pool.getQueue().size();
+        }
+        return size;
+    }
+
+    /**
+     * @return the number of running jobs of all pools
+     */
+    public synchronized int getActiveCount() {
+        int count = 0;
+        for (ThreadPoolExecutor pool : pools.values()) {
+            count += pool.getActiveCount();
+        }
+        return count;
+    }
+
+    /**
+     * Shuts down all pools, waiting jobs are still executed.
+     */
+    public synchronized void shutdown() {
+        admission.shutdown();
+        for (ThreadPoolExecutor pool : pools.values()) {
+            pool.shutdown();
+        }
+    }
+}
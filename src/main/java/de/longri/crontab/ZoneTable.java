@@ -0,0 +1,231 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of CrontabScheduler.
+ *
+ * CrontabScheduler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * CrontabScheduler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CrontabScheduler. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.crontab;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneOffsetTransitionRule;
+import java.time.zone.ZoneRules;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The ZoneTable holds the offset transitions of a time zone up to {@link CompiledCron#MAX_YEAR}
+ * in primitive arrays, so offsets are found by a binary search without allocating objects
+ * like {@link ZoneRules#getOffset(java.time.Instant)} does.
+ * <p>
+ * Wall clock times around daylight saving changes are resolved by an explicit rule:
+ * <ul>
+ * <li>A time in a gap doesn't exist, it is resolved to the instant at which the clock jumps,
+ * so all times of a gap run once at the end of the gap.</li>
+ * <li>A time in an overlap exists twice, it is resolved to the first one with the earlier offset.</li>
+ * </ul>
+ */
+final class ZoneTable {
+
+    private static final ConcurrentHashMap<ZoneId, ZoneTable> TABLES = new ConcurrentHashMap<>();
+
+    // the tables of the zone rules, equal rules share one table
+    private static final ConcurrentHashMap<ZoneRules, ZoneTable> RULES_TABLES = new ConcurrentHashMap<>();
+
+    // the hash code of zone rules is computed over all transitions, so known instances are found by identity first.
+    // the map is replaced on every change and never modified, it is limited for callers which create new rules
+    private static final int MAX_IDENTITY_TABLES = 64;
+    private static volatile IdentityHashMap<ZoneRules, ZoneTable> identityTables = new IdentityHashMap<>();
+
+    final ZoneRules rules;
+
+    private final int initialOffset;
+
+    // the epoch seconds of the transitions
+    private final long[] transitions;
+
+    // the wall clock seconds at which the gap or overlap of a transition starts
+    private final long[] localStarts;
+
+    private final int[] offsetsBefore;
+    private final int[] offsetsAfter;
+
+    private ZoneTable(ZoneRules rules) {
+        this.rules = rules;
+        List<ZoneOffsetTransition> list = new ArrayList<>(rules.getTransitions());
+        List<ZoneOffsetTransitionRule> transitionRules = rules.getTransitionRules();
+        if (!transitionRules.isEmpty()) {
+            int year = list.isEmpty() ? 1970 : list.get(list.size() - 1).getDateTimeBefore().getYear() + 1;
+            for (; year <= CompiledCron.MAX_YEAR; year++) {
+                for (ZoneOffsetTransitionRule rule : transitionRules) {
+                    list.add(rule.createTransition(year));
+                }
+            }
+        }
+        list.sort(null);
+
+        initialOffset = list.isEmpty() ? rules.getOffset(Instant.EPOCH).getTotalSeconds()
+                : list.get(0).getOffsetBefore().getTotalSeconds();
+        transitions = new long[list.size()];
+        localStarts = new long[list.size()];
+        offsetsBefore = new int[list.size()];
+        offsetsAfter = new int[list.size()];
+        for (int i = 0; i < list.size(); i++) {
+            ZoneOffsetTransition transition = list.get(i);
+            transitions[i] = transition.toEpochSecond();
+            offsetsBefore[i] = transition.getOffsetBefore().getTotalSeconds();
+            offsetsAfter[i] = transition.getOffsetAfter().getTotalSeconds();
+            localStarts[i] = transitions[i] + Math.min(offsetsBefore[i], offsetsAfter[i]);
+        }
+    }
+
+    /**
+     * Retrieves the table of the given zone rules, the table of equal rules is computed once.
+     * Repeated calls with the same rules instance are an identity lookup without allocation,
+     * also if they alternate between zones.
+     *
+     * @param rules the zone rules
+     * @return the table
+     */
+    static ZoneTable of(ZoneRules rules) {
+        ZoneTable table = identityTables.get(rules);
+        if (table != null) return table;
+        table = RULES_TABLES.computeIfAbsent(rules, ZoneTable::new);
+        synchronized (RULES_TABLES) {
+            IdentityHashMap<ZoneRules, ZoneTable> tables = identityTables.size() < MAX_IDENTITY_TABLES
+                    ? new IdentityHashMap<>(identityTables) : new IdentityHashMap<>();
+            tables.put(rules, table);
+            identityTables = tables;
+        }
+        return table;
+    }
+
+    /**
+     * Retrieves the table of the given zone, every zone is computed once.
+     *
+     * @param zone the zone
+     * @return the table
+     */
+    static ZoneTable of(ZoneId zone) {
+        return TABLES.computeIfAbsent(zone, key -> of(key.getRules()));
+    }
+
+    /**
+     * @param epochSecond the epoch seconds
+     * @return the offset in seconds at the given instant
+     */
+    int offsetAt(long epochSecond) {
+        int index = Arrays.binarySearch(transitions, epochSecond);
+        // the transition itself has the new offset
+        int last = index >= 0 ? index : -index - 2;
+        return last < 0 ? initialOffset : offsetsAfter[last];
+    }
+
+    /**
+     * Converts wall clock seconds to epoch seconds. A time in a gap is resolved to the end of the gap,
+     * a time in an overlap gets the earlier offset.
+     *
+     * @param localSecond the wall clock epoch seconds
+     * @return the epoch seconds
+     */
+    long toEpochSecond(long localSecond) {
+        int index = Arrays.binarySearch(localStarts, localSecond);
+        int last = index >= 0 ? index : -index - 2;
+        if (last < 0) return localSecond - initialOffset;
+        if (localSecond < transitions[last] + Math.max(offsetsBefore[last], offsetsAfter[last])) {
+            // the time doesn't exist, the clock jumps at the transition
+            if (offsetsAfter[last] > offsetsBefore[last]) return transitions[last];
+            // the time exists twice, the first one counts
+            return localSecond - offsetsBefore[last];
+        }
+        return localSecond - offsetsAfter[last];
+    }
+
+    /**
+     * @param epochSecond the epoch seconds
+     * @return the wall clock epoch seconds
+     */
+    long toLocalSecond(long epochSecond) {
+        return epochSecond + offsetAt(epochSecond);
+    }
+
+    /**
+     * Retrieves the first transition whose gap or overlap ends after the given wall clock time.
+     *
+     * @param localSecond the wall clock epoch seconds
+     * @return the index of the transition, or {@link #transitionCount()} if there is none
+     */
+    int nextTransition(long localSecond) {
+        int index = Arrays.binarySearch(localStarts, localSecond);
+        int next = index >= 0 ? index : -index - 1;
+        // the time can be in the gap or overlap of the previous transition
+        if (next > 0 && localSecond < localEnd(next - 1)) next--;
+        return next;
+    }
+
+    /**
+     * Checks if a gap or an overlap is within the given wall clock times.
+     *
+     * @param fromLocalSecond the first wall clock epoch second
+     * @param toLocalSecond   the last wall clock epoch second
+     * @return true if the wall clock isn't continuous between the given times
+     */
+    boolean hasTransition(long fromLocalSecond, long toLocalSecond) {
+        int next = nextTransition(fromLocalSecond);
+        return next < transitions.length && localStarts[next] <= toLocalSecond;
+    }
+
+    int transitionCount() {
+        return transitions.length;
+    }
+
+    /**
+     * @return the epoch seconds of the transition, the end of a gap
+     */
+    long transition(int index) {
+        return transitions[index];
+    }
+
+    /**
+     * @return the wall clock seconds at which the gap or overlap of the transition starts
+     */
+    long localStart(int index) {
+        return localStarts[index];
+    }
+
+    /**
+     * @return the wall clock seconds at which the gap or overlap of the transition ends, exclusive
+     */
+    long localEnd(int index) {
+        return transitions[index] + Math.max(offsetsBefore[index], offsetsAfter[index]);
+    }
+
+    /**
+     * @return true if the wall clock jumps forward at the transition
+     */
+    boolean isGap(int index) {
+        return offsetsAfter[index] > offsetsBefore[index];
+    }
+
+    @Override
+    public String toString() {
+        return "ZoneTable " + (rules.isFixedOffset() ? ZoneOffset.ofTotalSeconds(initialOffset) : transitions.length + " transitions");
+    }
+}
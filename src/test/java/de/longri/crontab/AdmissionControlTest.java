@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of CrontabScheduler.
+ *
+ * CrontabScheduler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * CrontabScheduler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CrontabScheduler. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.crontab;
+
+import org.ini4j.Ini;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdmissionControlTest {
+
+    private final Executor direct = Runnable::run;
+
+    @Test
+    void drop() throws Exception {
+        AdmissionControl admission = new AdmissionControl(1, 2, 10, AdmissionControl.Action.DROP);
+        Cronjob job = new Cronjob("* * * ? * * *", new Job_Logging("AdmissionDrop", "msg"));
+        AtomicInteger runs = new AtomicInteger(0);
+        Executor executor = admission.executor(job, direct);
+
+        // the burst is admitted, the next start is dropped
+        executor.execute(runs::incrementAndGet);
+        executor.execute(runs::incrementAndGet);
+        assertThrows(RejectedExecutionException.class, () -> executor.execute(runs::incrementAndGet));
+        assertEquals(2, runs.get());
+        assertEquals(1, admission.getRejectedCount());
+        assertEquals(0, admission.getQueueDepth());
+    }
+
+    @Test
+    void delay() throws Exception {
+        AdmissionControl admission = new AdmissionControl(10, 1, 3, AdmissionControl.Action.DELAY);
+        Cronjob job = new Cronjob("* * * ? * * *", new Job_Logging("AdmissionDelay", "msg"));
+        CountDownLatch runs = new CountDownLatch(4);
+        Executor executor = admission.executor(job, direct);
+
+        long start = System.nanoTime();
+        executor.execute(runs::countDown);
+        executor.execute(runs::countDown);
+        executor.execute(runs::countDown);
+        executor.execute(runs::countDown);
+        assertTrue(admission.getQueueDepth() >= 2);
+        assertThrows(RejectedExecutionException.class, () -> {
+            // fill the queue until it is full
+            for (int i = 0; i < 3; i++) executor.execute(() -> {
+            });
+        });
+        assertEquals(1, admission.getRejectedCount());
+
+        assertTrue(runs.await(5, TimeUnit.SECONDS));
+        // three delayed starts with 10 starts per second
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 250);
+        admission.shutdown();
+        assertEquals(0, admission.getQueueDepth());
+    }
+
+    @Test
+    void coalesce() throws Exception {
+        AdmissionControl admission = new AdmissionControl(5, 1, 10, AdmissionControl.Action.COALESCE);
+        Cronjob job1 = new Cronjob("* * * ? * * *", new Job_Logging("AdmissionCoalesce1", "msg"));
+        Cronjob job2 = new Cronjob("* * * ? * * *", new Job_Logging("AdmissionCoalesce2", "msg"));
+        CountDownLatch runs = new CountDownLatch(3);
+
+        admission.admit(job1, runs::countDown, direct);
+        admission.admit(job1, runs::countDown, direct);
+        // the waiting start of job1 takes the next one
+        assertThrows(RejectedExecutionException.class, () -> admission.admit(job1, runs::countDown, direct));
+        admission.admit(job2, runs::countDown, direct);
+        assertEquals(2, admission.getQueueDepth());
+        assertEquals(1, admission.getRejectedCount());
+
+        assertTrue(runs.await(5, TimeUnit.SECONDS));
+        admission.shutdown();
+    }
+
+    @Test
+    void droppedStartKeepsWaiting() throws Exception {
+        AdmissionControl admission = new AdmissionControl(0.5, 1, 10, AdmissionControl.Action.DROP);
+        AtomicInteger runs = new AtomicInteger(0);
+        Cronjob job = new Cronjob("* * * ? * * *", new Job_Logging("AdmissionDropWait", "msg") {
+            @Override
+            public void work() {
+                runs.incrementAndGet();
+            }
+        });
+        job.prefs.remove(job.prefId);
+        try {
+            // the token is taken, so the next start is dropped and a later one of the window runs
+            admission.admit(job, () -> {
+            }, direct);
+            job.runUntil(job.cronExpression.now().plusSeconds(4), admission.executor(job, direct));
+            assertTrue(admission.getRejectedCount() >= 1);
+            assertEquals(1, runs.get());
+        } finally {
+            job.prefs.remove(job.prefId);
+        }
+    }
+
+    @Test
+    void droppedAtShutdown() throws Exception {
+        AdmissionControl admission = new AdmissionControl(0.1, 1, 10, AdmissionControl.Action.DELAY);
+        Cronjob job = new Cronjob("0 * * ? * * *", new Job_Logging("AdmissionShutdown", "msg"), JobOptions.parse("overlap=skip"));
+        job.prefs.remove(job.prefId);
+        try {
+            // the start waits for a token, the pool is shut down meanwhile
+            admission.admit(job, () -> {
+            }, direct);
+            CompletableFuture<Boolean> completion = job.executeAsync(LocalDateTime.of(2024, 5, 1, 10, 0, 0),
+                    admission.executor(job, task -> {
+                        throw new RejectedExecutionException("pool is shut down");
+                    }));
+            assertEquals(1, admission.getQueueDepth());
+            assertEquals(RunState.QUEUED, job.getRunState());
+
+            admission.shutdown();
+            ExecutionException e = assertThrows(ExecutionException.class, () -> completion.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(RejectedExecutionException.class, e.getCause());
+            assertEquals(RunState.IDLE, job.getRunState());
+            assertEquals(1, admission.getRejectedCount());
+        } finally {
+            job.prefs.remove(job.prefId);
+        }
+    }
+
+    @Test
+    void fromIniSection() throws Exception {
+        assertEquals(0, AdmissionControl.getFromSection(null).getRejectedCount());
+
+        Ini ini = new Ini();
+        ini.put("admission", "rate", 1);
+        ini.put("admission", "action", "drop");
+        WorkerPools pools = new WorkerPools(null);
+        pools.setAdmission(AdmissionControl.getFromSection(ini.get("admission")));
+
+        Cronjob job = new Cronjob("* * * ? * * *", new Job_Logging("AdmissionIni", "msg"));
+        CountDownLatch run = new CountDownLatch(1);
+        pools.executor(job).execute(run::countDown);
+        assertThrows(RejectedExecutionException.class, () -> pools.executor(job).execute(run::countDown));
+        assertTrue(run.await(5, TimeUnit.SECONDS));
+        assertEquals(1, pools.getAdmission().getRejectedCount());
+        pools.shutdown();
+    }
+}
@@ -205,6 +205,36 @@ class Job_CopyTest {
         clearList.add(path);
     }
 
+    @Test
+    void targetOfFireTime() throws Exception {
+        Job_Copy jc = new Job_Copy("TestName", "-s ./change.txt -target \"./TestFolder/TEST/fireTime.txt\" -dp \"yyyy MM dd HH mm\"");
+        LocalDateTime fireTime = LocalDateTime.of(2024, 5, 1, 10, 0);
+        String path = "./TestFolder/TEST/fireTime_2024 05 01 10 00.txt";
+        clearList.add(path);
+
+        // the target is named after the execution time, not after the start
+        jc.run(0, null, new CancelTimeOutJob.Run(fireTime, null));
+        File targetFile = new File(path);
+        assertTrue(targetFile.exists());
+
+        assertFalse(new File(path + Job_Copy.PART_EXTENSION).exists());
+
+        // the clean up of an interrupted copy removes only its part file, the complete target is kept
+        File part = new File(path + Job_Copy.PART_EXTENSION);
+        Files.writeString(part.toPath(), "partial");
+        jc.cleanUp(fireTime.plusMinutes(1));
+        assertTrue(part.exists(), "the part of another execution is kept");
+        jc.cleanUp(fireTime);
+        assertFalse(part.exists());
+        assertTrue(targetFile.exists());
+
+        // a stale run doesn't write the target
+        assertTrue(targetFile.delete());
+        assertThrows(RuntimeException.class, () -> jc.run(0, null, new CancelTimeOutJob.Run(fireTime, () -> false)));
+        assertFalse(targetFile.exists());
+        assertFalse(part.exists());
+    }
+
 
     final Job_Copy DUMMY;
     final String ARGS = "-s ./src -target ./TestFolder/TEST/source.zip -z -dp \"yyyy MM dd\"";
@@ -21,6 +21,11 @@ package de.longri.crontab;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -144,6 +149,27 @@ class CancelTimeOutJobTest {
         assertTrue(timeOutCalled.get());
     }
 
+    @Test
+    void abortReturns() {
+        AtomicBoolean timeOutCalled = new AtomicBoolean(false);
+        CancelTimeOutJob job = new CancelTimeOutJob("abort test job", new Duration(100)) {
+            @Override
+            protected void work() throws InterruptedException {
+                Thread.sleep(5000);
+            }
+
+            @Override
+            public void workTimeOut() {
+                timeOutCalled.set(true);
+            }
+        };
+
+        // only the run of a given Run throws the abort
+        assertDoesNotThrow(() -> job.run());
+        assertTrue(timeOutCalled.get());
+        assertThrows(JobAbortedException.class, () -> job.run(100, TimeUnit.MILLISECONDS, new CancelTimeOutJob.Run()));
+    }
+
     @Test
     void work() throws InterruptedException {
         final AtomicInteger count = new AtomicInteger(0);
@@ -254,4 +280,106 @@ class CancelTimeOutJobTest {
         assertTrue(finishCalled.get());
         assertFalse(timeOutCalled.get());
     }
-}
\ No newline at end of file
+
+    @Test
+    void runAsync() throws Exception {
+        CancelTimeOutJob job = new CancelTimeOutJob("async test job") {
+            @Override
+            protected void work() throws InterruptedException {
+                Thread.sleep(100);
+            }
+        };
+
+        CompletableFuture<Duration> completion = job.runAsync(JobThreads.executor("async test job"));
+        AtomicBoolean chained = new AtomicBoolean(false);
+        CompletableFuture<Void> followUp = completion.thenRun(() -> chained.set(true));
+
+        Duration duration = completion.get(5, TimeUnit.SECONDS);
+        followUp.get(5, TimeUnit.SECONDS);
+        assertTrue(duration.MILLIS >= 100);
+        assertTrue(chained.get());
+        assertTrue(job.getReadyProperty().get());
+    }
+
+    @Test
+    void runAsyncException() {
+        CancelTimeOutJob job = new CancelTimeOutJob("async exception test job") {
+            @Override
+            protected void work() {
+                throw new IllegalStateException("work exception");
+            }
+        };
+
+        CompletableFuture<Duration> completion = job.runAsync(JobThreads.executor("async exception test job"));
+        ExecutionException e = assertThrows(ExecutionException.class, () -> completion.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, e.getCause().getCause());
+    }
+
+    @Test
+    void runAsyncRejected() {
+        CancelTimeOutJob job = new CancelTimeOutJob("rejected test job") {
+            @Override
+            protected void work() {
+            }
+        };
+
+        CompletableFuture<Duration> completion = job.runAsync(runnable -> {
+            throw new RejectedExecutionException("queue full");
+        });
+        assertTrue(completion.isCompletedExceptionally());
+    }
+
+    @Test
+    void cancelBeforeStart() {
+        AtomicInteger works = new AtomicInteger(0);
+        AtomicBoolean cancelCalled = new AtomicBoolean(false);
+        CancelTimeOutJob job = new CancelTimeOutJob("cancel before start test job") {
+            @Override
+            protected void work() {
+                works.incrementAndGet();
+            }
+
+            @Override
+            public void workCanceled() {
+                cancelCalled.set(true);
+            }
+        };
+
+        CancelTimeOutJob.Run run = new CancelTimeOutJob.Run();
+        job.cancel(run);
+        assertTrue(cancelCalled.get());
+        JobAbortedException e = assertThrows(JobAbortedException.class, () -> job.run(0, null, run));
+        assertFalse(e.isTimeOut());
+        assertEquals(0, works.get(), "a canceled run doesn't start");
+        assertNotNull(run.getDuration());
+    }
+
+    @Test
+    void parallelRuns() throws Exception {
+        CountDownLatch started = new CountDownLatch(2);
+        CancelTimeOutJob job = new CancelTimeOutJob("parallel test job") {
+            @Override
+            protected void work() throws InterruptedException {
+                started.countDown();
+                started.await();
+                Thread.sleep(200);
+            }
+        };
+
+        CancelTimeOutJob.Run canceled = new CancelTimeOutJob.Run();
+        CancelTimeOutJob.Run finished = new CancelTimeOutJob.Run();
+        CompletableFuture<Void> first = CompletableFuture.runAsync(() -> job.run(0, null, canceled));
+        CompletableFuture<Void> second = CompletableFuture.runAsync(() -> job.run(0, null, finished));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // only the given run is canceled, every run has its own duration
+        job.cancel(canceled);
+        ExecutionException e = assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(JobAbortedException.class, e.getCause());
+        second.get(5, TimeUnit.SECONDS);
+        assertTrue(canceled.isCanceled());
+        assertFalse(finished.isCanceled());
+        assertTrue(canceled.getDuration().MILLIS < 200, canceled.getDuration().toString());
+        assertTrue(finished.getDuration().MILLIS >= 200, finished.getDuration().toString());
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of CrontabScheduler.
+ *
+ * CrontabScheduler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * CrontabScheduler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CrontabScheduler. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.crontab;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClusterMembershipTest {
+
+    @TempDir
+    File dir;
+
+    @Test
+    void leaseTimeout() throws Exception {
+        ClusterMembership node1 = new ClusterMembership(dir, "node1", 60000);
+        ClusterMembership node2 = new ClusterMembership(dir, "node2", 60000);
+        assertEquals(List.of("node1"), node1.getLiveNodes());
+
+        node2.heartbeat();
+        assertEquals(List.of("node1", "node2"), List.copyOf(node1.update().getNodes()));
+
+        // a heartbeat older than the lease timeout is dead
+        Files.writeString(new File(dir, "node2" + ClusterMembership.EXTENSION).toPath(),
+                Long.toString(System.currentTimeMillis() - 61000));
+        assertEquals(List.of("node1"), List.copyOf(node1.update().getNodes()));
+
+        assertThrows(RuntimeException.class, () -> new ClusterMembership(dir, "../node", 60000));
+    }
+
+    @Test
+    void takeOverJobs() throws Exception {
+        CronJobList list = new CronJobList(new File("./notExistingClusterTest.ini"));
+        for (int i = 0; i < 20; i++) {
+            list.add(new Cronjob("0 0 0 1 1 ? 2099", new Job_Logging("ClusterJob" + i, "msg")));
+        }
+
+        CronDaemon daemon1 = new CronDaemon(list);
+        CronDaemon daemon2 = new CronDaemon(list);
+        ClusterMembership node1 = new ClusterMembership(dir, "node1", 60000);
+        ClusterMembership node2 = new ClusterMembership(dir, "node2", 60000);
+        daemon1.setMembership(node1);
+        daemon2.setMembership(node2);
+        daemon1.start();
+        daemon2.start();
+
+        // both nodes see each other after the next heartbeat, every job is scheduled once
+        daemon1.rebalance(node1.update());
+        int size1 = daemon1.size();
+        int size2 = daemon2.size();
+        assertEquals(20, size1 + size2);
+        assertTrue(size1 > 0 && size2 > 0);
+
+        // node2 stops, node1 takes over its jobs
+        daemon2.stop();
+        daemon1.rebalance(node1.update());
+        assertEquals(20, daemon1.size());
+
+        daemon1.stop();
+        daemon1.join();
+        daemon2.join();
+    }
+}
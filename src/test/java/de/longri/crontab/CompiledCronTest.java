@@ -0,0 +1,297 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of CrontabScheduler.
+ *
+ * CrontabScheduler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * CrontabScheduler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CrontabScheduler. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.crontab;
+
+import org.junit.jupiter.api.Test;
+import org.quartz.CronExpression;
+
+import java.lang.management.ManagementFactory;
+import java.text.ParseException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneRules;
+import java.util.Date;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class CompiledCronTest {
+
+    private static final String[] EXPRESSIONS = {
+            "0 0 * ? * * *",
+            "* * * ? * *",
+            "*/7 */13 */5 ? * *",
+            "15/20 5-50/15 22-2 ? * *",
+            "0 0 12 L * ?",
+            "0 30 8 L-3 * ?",
+            "0 0 6 LW * ?",
+            "0 0 6 L-2W * ?",
+            "0 0 7 1W * ?",
+            "0 0 7 15W * ?",
+            "0 0 7 31W * ?",
+            "0 0 0 31 * ?",
+            "0 0 0 29 2 ?",
+            "0 0 0 30 JAN-MAR,NOV ?",
+            "0 0 0 ? * MON-FRI",
+            "0 0 0 ? * FRI-MON",
+            "0 0 0 ? * 6L",
+            "0 0 0 ? * FRIL",
+            "0 0 0 ? * L",
+            "0 0 0 ? * 6#3",
+            "0 0 0 ? * 1#1",
+            "0 0 0 ? * 4#5",
+            "0 0 0 ? * 2/3",
+            "0 0 0 1,15 NOV-FEB ?",
+            "0 0 0 1/10 */4 ?",
+            "0 0 0 1 1 ? 2030",
+            "0 0 0 1 1 ? 2026-2040/4",
+            "59 59 23 31 DEC ? *",
+            // the quirks of Quartz: the increment of names, an increment of 0 and the characters after a value are ignored
+            "0 0 0 ? * MON-FRI/2",
+            "0 0 0 1 JAN-MAR/5 ?",
+            "0 0 0 1 JAN/3 ?",
+            "0 0 0 ? * MONDAY",
+            "0 0 0 1 JANUARY,JUNE ?",
+            "0 0 0 5-10W * ?",
+            "0 0 0 5X * ?",
+            "0 0 0 5-20/5X * ?",
+            "0 5/0 * * * ?",
+            "0 */0 0 * * ?",
+            "0 0 0 ? * 2-6/0",
+            // a single nth day in a list applies to the first day of the list, L-n is the last day of the week
+            "0 0 0 ? * MON,WED#2",
+            "0 0 0 ? * 5,3#1",
+            "0 0 0 ? * L-2",
+            "0 0 0 ? * LW",
+            // years without execution time
+            "0 0 0 1 1 ? 1969",
+            "0 0 0 1 1 ? 1960-2030",
+            "0 0 0 1 1 ? 3000",
+    };
+
+    @Test
+    void sameAsQuartz() throws ParseException {
+        Random random = new Random(4711);
+        for (String expression : EXPRESSIONS) {
+            CompiledCron compiled = new CompiledCron(expression);
+            CronExpression quartz = new CronExpression(expression);
+            // both without daylight saving time
+            quartz.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+            LocalDateTime time = LocalDateTime.of(2024, 1, 1, 0, 0);
+            for (int i = 0; i < 200; i++) {
+                LocalDateTime start = time.plusSeconds(random.nextInt(400 * 24 * 3600));
+                LocalDateTime expected = next(quartz, start);
+                assertEquals(expected, compiled.nextTimeAfter(start), expression + " after " + start);
+
+                // a sequence of execution times
+                LocalDateTime t = start;
+                for (int n = 0; n < 5 && t != null; n++) {
+                    t = compiled.nextTimeAfter(t);
+                    assertEquals(expected, t, expression + " sequence after " + start);
+                    expected = expected == null ? null : next(quartz, expected);
+                }
+            }
+        }
+    }
+
+    @Test
+    void randomExpressions() throws ParseException {
+        Random random = new Random(815);
+        for (int i = 0; i < 500; i++) {
+            String expression = field(random, 0, 59) + " " + field(random, 0, 59) + " " + field(random, 0, 23) + " "
+                    + (random.nextBoolean() ? field(random, 1, 31) + " " + field(random, 1, 12) + " ?"
+                    : "? " + field(random, 1, 12) + " " + field(random, 1, 7));
+            CompiledCron compiled = new CompiledCron(expression);
+            CronExpression quartz = new CronExpression(expression);
+            quartz.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+            LocalDateTime start = LocalDateTime.of(2024, 1, 1, 0, 0).plusSeconds(random.nextInt(400 * 24 * 3600));
+            assertEquals(next(quartz, start), compiled.nextTimeAfter(start), expression + " after " + start);
+        }
+    }
+
+    private static String field(Random random, int min, int max) {
+        int a = min + random.nextInt(max - min + 1);
+        int b = min + random.nextInt(max - min + 1);
+        switch (random.nextInt(5)) {
+            case 0:
+                return "*";
+            case 1:
+                return Integer.toString(a);
+            case 2:
+                return a + "," + b;
+            case 3:
+                return Math.min(a, b) + "-" + Math.max(a, b);
+            default:
+                return a + "/" + (1 + random.nextInt(max - min));
+        }
+    }
+
+    private static LocalDateTime next(CronExpression quartz, LocalDateTime after) {
+        Date next = quartz.getTimeAfter(Date.from(after.toInstant(ZoneOffset.UTC)));
+        return next == null ? null : LocalDateTime.ofInstant(next.toInstant(), ZoneOffset.UTC);
+    }
+
+    @Test
+    void count() throws ParseException {
+        Random random = new Random(42);
+        FireTimeBuffer buffer = new FireTimeBuffer();
+        for (String expression : EXPRESSIONS) {
+            CompiledCron compiled = new CompiledCron(expression);
+            for (int i = 0; i < 50; i++) {
+                LocalDateTime after = LocalDateTime.of(2024, 1, 1, 0, 0).plusSeconds(random.nextInt(400 * 24 * 3600));
+                // short windows within a day and long ones over months
+                LocalDateTime barrier = after.plusSeconds(random.nextBoolean() ? random.nextInt(7200) : random.nextInt(90 * 24 * 3600));
+                buffer.clear();
+                long expected = compiled.nextTimes(after, Integer.MAX_VALUE, barrier, buffer);
+                assertEquals(expected, compiled.count(after, barrier), expression + " from " + after + " to " + barrier);
+            }
+        }
+
+        // capacity planning for a month
+        CompiledCron everySecond = new CompiledCron("* * * ? * *");
+        LocalDateTime june = LocalDateTime.of(2024, 6, 1, 0, 0);
+        assertEquals(30L * 24 * 3600 - 1, everySecond.count(june, june.plusMonths(1)));
+        assertEquals(30L * 24 * 3600, everySecond.count(june.minusSeconds(1), june.plusMonths(1)));
+        assertEquals(0, everySecond.count(june, june));
+        assertEquals(0, everySecond.count(june, june.minusDays(1)));
+        assertEquals(366L * 24 * 3600, everySecond.count(LocalDateTime.of(2023, 12, 31, 23, 59, 59), LocalDateTime.of(2025, 1, 1, 0, 0)));
+        assertEquals(12, new CompiledCron("0 0 12 L * ?").count(LocalDateTime.of(2024, 1, 1, 0, 0), LocalDateTime.of(2025, 1, 1, 0, 0)));
+    }
+
+    @Test
+    void epochSeconds() throws ParseException {
+        Random random = new Random(99);
+        for (String name : new String[]{"UTC", "Europe/Berlin", "America/New_York", "Australia/Lord_Howe"}) {
+            ZoneId zone = ZoneId.of(name);
+            for (String expression : EXPRESSIONS) {
+                CompiledCron compiled = new CompiledCron(expression);
+                for (int i = 0; i < 50; i++) {
+                    long after = 1_700_000_000L + random.nextInt(100_000_000);
+                    assertEquals(expectedEpochSecond(compiled, after, zone), compiled.nextFireEpochSecond(after, zone.getRules()),
+                            expression + " " + name + " after " + after);
+                }
+            }
+            // every second over a daylight saving change
+            CompiledCron everySecond = new CompiledCron("* * * ? * *");
+            long after = LocalDateTime.of(2030, 3, 31, 0, 0).atZone(zone).toEpochSecond();
+            for (int i = 0; i < 4 * 3600; i++) {
+                long next = everySecond.nextFireEpochSecond(after, zone.getRules());
+                assertEquals(expectedEpochSecond(everySecond, after, zone), next, name + " after " + after);
+                after = next;
+            }
+        }
+        assertEquals(CompiledCron.NONE, new CompiledCron("0 0 0 1 1 ? 2030").nextFireEpochSecond(1_900_000_000L, ZoneOffset.UTC.getRules()));
+    }
+
+    private static long expectedEpochSecond(CompiledCron compiled, long after, ZoneId zone) {
+        LocalDateTime next = LocalDateTime.ofInstant(Instant.ofEpochSecond(after), zone);
+        while (true) {
+            next = compiled.nextTimeAfter(next);
+            if (next == null) return CompiledCron.NONE;
+            long epochSecond = ZoneTableTest.toEpochSecond(next, zone);
+            if (epochSecond > after) return epochSecond;
+        }
+    }
+
+    @Test
+    void noAllocation() throws ParseException {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        CompiledCron compiled = new CompiledCron("*/7 */13 8-18 ? * MON-FRI *");
+        ZoneRules rules = ZoneId.of("Europe/Berlin").getRules();
+        long threadId = Thread.currentThread().threadId();
+        long sum = 0;
+        for (int round = 0; round < 3; round++) {
+            long after = 1_700_000_000L;
+            long before = threads.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < 100_000; i++) {
+                after = compiled.nextFireEpochSecond(after, rules);
+                sum += after;
+            }
+            long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+            // the first rounds warm up the JIT
+            if (round == 2) assertTrue(allocated < 1000, "allocated " + allocated + " bytes in 100000 calls");
+        }
+        assertNotEquals(0, sum);
+    }
+
+    @Test
+    void interned() throws ParseException {
+        CompiledCron compiled = CompiledCron.compile("0 0 12 ? * mon-fri *");
+        assertSame(compiled, CompiledCron.compile(" 0  0 12 ? * MON-FRI * "));
+        assertEquals("0 0 12 ? * MON-FRI *", compiled.toString());
+        assertNotSame(compiled, CompiledCron.compile("0 0 13 ? * MON-FRI *"));
+
+        int size = CompiledCron.cacheSize();
+        assertThrows(ParseException.class, () -> CompiledCron.compile("0 0 25 ? * * *"));
+        assertEquals(size, CompiledCron.cacheSize(), "an invalid expression isn't cached");
+
+        // every job with the expression shares the compiled schedule
+        LocalCronExpression expression1 = new LocalCronExpression("0 0 12 ? * MON-FRI *");
+        LocalCronExpression expression2 = new LocalCronExpression("0 0 12 ? * mon-fri *");
+        assertSame(compiled, expression1.EXPRESSION);
+        assertSame(compiled, expression2.EXPRESSION);
+    }
+
+    @Test
+    void invalid() {
+        String[] invalid = {
+                "0 0 0 * * *",
+                "0 0 0 ? * ?",
+                "60 0 0 * * ?",
+                "0 0 24 * * ?",
+                "0 0 0 32 * ?",
+                "0 0 0 * 13 ?",
+                "0 0 0 ? * 8",
+                "0 0 0 L,15 * ?",
+                "0 0 0 ? * 1#6",
+                "0 0 0 ? * 1#1,2#2",
+                "0 0 0 L-31 * ?",
+                "0 0 0 * FOO ?",
+                "0 0 0 ? * LX",
+                "0 0 0 5/2X * ?",
+                "0 0 0 1 JA ?",
+                "0 0 0 ? * MON-FR",
+                "0 0 0 1 1 ? 2030-2020",
+                "0 0 0 * *",
+        };
+        for (String expression : invalid) {
+            assertThrows(ParseException.class, () -> new CompiledCron(expression), expression);
+        }
+    }
+
+    @Test
+    void calendar() {
+        for (int year = 1970; year < 2100; year++) {
+            for (int month = 1; month <= 12; month++) {
+                LocalDateTime first = LocalDateTime.of(year, month, 1, 0, 0);
+                assertEquals(first.getDayOfWeek().getValue() % 7 + 1, CompiledCron.dayOfWeek(year, month, 1));
+                assertEquals(first.toLocalDate().lengthOfMonth(), CompiledCron.lengthOfMonth(year, month));
+            }
+        }
+    }
+}
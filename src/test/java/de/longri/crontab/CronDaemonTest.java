@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of CrontabScheduler.
+ *
+ * CrontabScheduler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * CrontabScheduler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CrontabScheduler. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.crontab;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CronDaemonTest {
+
+    @Test
+    void startAndStop() throws Exception {
+        AtomicInteger runChk = new AtomicInteger(0);
+        Cronjob cronjob = new Cronjob("* * * ? * * *", new Job_Logging("DaemonTestJob", "daemon test") {
+            @Override
+            public void work() {
+                runChk.incrementAndGet();
+            }
+        });
+
+        // remove last execution, so the next execution isn't blocked
+        cronjob.prefs.remove(cronjob.prefId);
+
+        CronJobList list = new CronJobList(new File("./notExistingDaemonTest.ini"));
+        list.add(cronjob);
+
+        CronDaemon daemon = new CronDaemon(list);
+        daemon.start();
+        assertTrue(daemon.isRunning());
+
+        long end = System.currentTimeMillis() + 5000;
+        while (runChk.get() == 0 && System.currentTimeMillis() < end) {
+            Thread.sleep(50);
+        }
+
+        daemon.stop();
+        daemon.join();
+        assertFalse(daemon.isRunning());
+        assertTrue(runChk.get() > 0);
+        cronjob.prefs.remove(cronjob.prefId);
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of CrontabScheduler.
+ *
+ * CrontabScheduler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * CrontabScheduler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CrontabScheduler. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.crontab;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CronDispatcherTest {
+
+    @Test
+    void scheduleAndRemove() throws Exception {
+        CronDispatcher dispatcher = new CronDispatcher();
+        Cronjob job1 = new Cronjob("0 0 12 ? * * *", new Job_Logging("DispatcherJob1", "msg"));
+        Cronjob job2 = new Cronjob("0 0 13 ? * * *", new Job_Logging("DispatcherJob2", "msg"));
+        dispatcher.schedule(job1);
+        dispatcher.schedule(job2);
+        assertEquals(2, dispatcher.size());
+
+        assertTrue(dispatcher.remove(job1));
+        assertFalse(dispatcher.remove(job1));
+        assertEquals(1, dispatcher.size());
+
+        dispatcher.clear();
+        assertEquals(0, dispatcher.size());
+    }
+
+    @Test
+    void dispatchWithOneThread() throws Exception {
+        AtomicInteger runChk = new AtomicInteger(0);
+        ArrayList<Cronjob> jobs = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            Cronjob cronjob = new Cronjob("* * * ? * * *", new Job_Logging("DispatcherTestJob" + i, "dispatcher test") {
+                @Override
+                public void work() {
+                    runChk.incrementAndGet();
+                }
+            });
+            // remove last execution, so the next execution isn't blocked
+            cronjob.prefs.remove(cronjob.prefId);
+            jobs.add(cronjob);
+        }
+
+        // the jobs share one compiled schedule and fire together
+        for (Cronjob cronjob : jobs) {
+            assertSame(jobs.get(0).cronExpression.EXPRESSION, cronjob.cronExpression.EXPRESSION);
+        }
+
+        CronDispatcher dispatcher = new CronDispatcher();
+        for (Cronjob cronjob : jobs) {
+            dispatcher.schedule(cronjob);
+        }
+        dispatcher.start();
+
+        long end = System.currentTimeMillis() + 5000;
+        while (runChk.get() < jobs.size() && System.currentTimeMillis() < end) {
+            Thread.sleep(50);
+        }
+
+        // all jobs are scheduled by the dispatcher thread
+        long dispatcherThreads = Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().equals("CronDispatcher")).count();
+        assertEquals(1, dispatcherThreads);
+        assertEquals(jobs.size(), dispatcher.size());
+
+        dispatcher.stop();
+        dispatcher.join();
+        assertTrue(runChk.get() >= jobs.size());
+
+        for (Cronjob cronjob : jobs) {
+            cronjob.prefs.remove(cronjob.prefId);
+        }
+    }
+
+    @Test
+    void scheduleOnceWithTimingWheel() throws Exception {
+        AtomicInteger runChk = new AtomicInteger(0);
+        Cronjob cronjob = new Cronjob("0 0 12 ? * * *", new Job_Logging("DispatcherWheelJob", "dispatcher test") {
+            @Override
+            public void work() {
+                runChk.incrementAndGet();
+            }
+        });
+        cronjob.prefs.remove(cronjob.prefId);
+
+        CronDispatcher dispatcher = new CronDispatcher(TriggerStore.getFromString("wheel"));
+        dispatcher.start();
+        dispatcher.scheduleOnce(cronjob, LocalDateTime.now().plusSeconds(1).withNano(0));
+
+        long end = System.currentTimeMillis() + 5000;
+        while (runChk.get() == 0 && System.currentTimeMillis() < end) {
+            Thread.sleep(50);
+        }
+        dispatcher.stop();
+        dispatcher.join();
+
+        assertEquals(1, runChk.get());
+        // a one shot trigger isn't re-scheduled
+        assertEquals(0, dispatcher.size());
+        cronjob.prefs.remove(cronjob.prefId);
+    }
+
+    @Test
+    void sharedScheduleInTimeZones() throws Exception {
+        ExecutionStore executionStore = Cronjob.getExecutionStore();
+        // nothing runs, only the next execution times are computed
+        Cronjob.setExecutionStore(new ExecutionStore() {
+            @Override
+            public long acquire(String jobId, LocalDateTime fireTime) {
+                return BLOCKED;
+            }
+
+            @Override
+            public String getLastExecution(String jobId) {
+                return "";
+            }
+
+            @Override
+            public boolean isCurrent(String jobId, long token) {
+                return false;
+            }
+        });
+        try {
+            Cronjob berlin = new Cronjob("0 30 2 ? * * *", new Job_Logging("DispatcherBerlin", "msg"), JobOptions.parse("tz=Europe/Berlin"));
+            Cronjob lagos = new Cronjob("0 30 2 ? * * *", new Job_Logging("DispatcherLagos", "msg"), JobOptions.parse("tz=Africa/Lagos"));
+            assertSame(berlin.cronExpression.EXPRESSION, lagos.cronExpression.EXPRESSION);
+
+            HeapTriggerStore store = new HeapTriggerStore();
+            CronDispatcher dispatcher = new CronDispatcher(store);
+            dispatcher.schedule(berlin);
+            dispatcher.schedule(lagos);
+            store.clear();
+
+            // both fire at the same wall clock time, the next day has a daylight saving gap in Berlin only
+            // (a future date, a time in the past is handled by the misfire policy)
+            LocalDateTime fire = LocalDateTime.of(2099, 3, 28, 2, 30);
+            ArrayList<Trigger> due = new ArrayList<>();
+            due.add(new Trigger(berlin, fire, false));
+            due.add(new Trigger(lagos, fire, false));
+            dispatcher.dispatch(due);
+
+            HashMap<Cronjob, LocalDateTime> next = new HashMap<>();
+            Trigger trigger;
+            while ((trigger = store.pollDue(Long.MAX_VALUE)) != null) {
+                next.put(trigger.job, trigger.next);
+            }
+            assertEquals(LocalDateTime.of(2099, 3, 29, 3, 0), next.get(berlin));
+            assertEquals(LocalDateTime.of(2099, 3, 29, 2, 30), next.get(lagos));
+        } finally {
+            Cronjob.setExecutionStore(executionStore);
+        }
+    }
+}
@@ -0,0 +1,459 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of CrontabScheduler.
+ *
+ * CrontabScheduler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * CrontabScheduler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CrontabScheduler. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.crontab;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CronjobTest {
+
+    @Test
+    void executeAsync() throws Exception {
+        AtomicInteger runChk = new AtomicInteger(0);
+        ArrayList<Cronjob> jobs = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Cronjob cronjob = new Cronjob("0 0 12 ? * * *", new Job_Logging("AsyncTestJob" + i, "msg") {
+                @Override
+                public void work() {
+                    runChk.incrementAndGet();
+                }
+            });
+            cronjob.prefs.remove(cronjob.prefId);
+            jobs.add(cronjob);
+        }
+
+        // wait on many jobs at once
+        LocalDateTime fireTime = LocalDateTime.now();
+        ArrayList<CompletableFuture<Boolean>> completions = new ArrayList<>();
+        for (Cronjob cronjob : jobs) {
+            completions.add(cronjob.executeAsync(fireTime, JobThreads.executor(cronjob.getName())));
+        }
+        CompletableFuture.allOf(completions.toArray(new CompletableFuture<?>[0])).get(5, TimeUnit.SECONDS);
+        for (CompletableFuture<Boolean> completion : completions) {
+            assertTrue(completion.get());
+        }
+        assertEquals(jobs.size(), runChk.get());
+
+        // the same execution time is blocked
+        assertFalse(jobs.get(0).executeAsync(fireTime, JobThreads.executor("blocked")).get(5, TimeUnit.SECONDS));
+        assertEquals(jobs.size(), runChk.get());
+
+        for (Cronjob cronjob : jobs) {
+            cronjob.prefs.remove(cronjob.prefId);
+        }
+    }
+
+    @Test
+    void executeAsyncException() throws Exception {
+        Cronjob cronjob = new Cronjob("0 0 12 ? * * *", new Job_Logging("AsyncExceptionTestJob", "msg") {
+            @Override
+            public void work() {
+                throw new IllegalStateException("work exception");
+            }
+        });
+        cronjob.prefs.remove(cronjob.prefId);
+
+        CompletableFuture<Boolean> completion = cronjob.executeAsync(LocalDateTime.now(), JobThreads.executor("exception"));
+        CompletableFuture<String> handled = completion.handle((executed, throwable) -> throwable == null ? "ok" : "failed");
+        assertEquals("failed", handled.get(5, TimeUnit.SECONDS));
+        cronjob.prefs.remove(cronjob.prefId);
+    }
+
+    @Test
+    void missedExecutions() throws Exception {
+        LocalDateTime last = LocalDateTime.of(2024, 5, 1, 10, 0, 0);
+        LocalDateTime now = LocalDateTime.of(2024, 5, 1, 10, 30, 30);
+
+        // every 5 minutes, 6 executions are missed between 10:00 and 10:30:30
+        Cronjob skip = new Cronjob("0 0/5 * ? * * *", new Job_Logging("MisfireSkip", "msg"));
+        assertTrue(skip.getMissedExecutions(last, now).isEmpty());
+
+        Cronjob coalesce = new Cronjob("0 0/5 * ? * * *", new Job_Logging("MisfireCoalesce", "msg"),
+                JobOptions.parse("misfire=COALESCE"));
+        assertEquals(List.of(LocalDateTime.of(2024, 5, 1, 10, 30, 0)), coalesce.getMissedExecutions(last, now));
+
+        Cronjob catchUp = new Cronjob("0 0/5 * ? * * *", new Job_Logging("MisfireCatchUp", "msg"),
+                JobOptions.parse("misfire=CATCH_UP, misfire.max=3"));
+        assertEquals(List.of(LocalDateTime.of(2024, 5, 1, 10, 20, 0),
+                LocalDateTime.of(2024, 5, 1, 10, 25, 0),
+                LocalDateTime.of(2024, 5, 1, 10, 30, 0)), catchUp.getMissedExecutions(last, now));
+
+        Cronjob catchUpAll = new Cronjob("0 0/5 * ? * * *", new Job_Logging("MisfireCatchUpAll", "msg"),
+                JobOptions.parse("misfire=catch-up"));
+        assertEquals(6, catchUpAll.getMissedExecutions(last, now).size());
+
+        // nothing is missed without a last execution or if it is recent
+        assertTrue(catchUpAll.getMissedExecutions(null, now).isEmpty());
+        assertTrue(catchUpAll.getMissedExecutions(now.minusSeconds(10), now).isEmpty());
+    }
+
+    @Test
+    void runMissedExecutions() throws Exception {
+        AtomicInteger runChk = new AtomicInteger(0);
+        Cronjob cronjob = new Cronjob("0 * * ? * * *", new Job_Logging("MisfireRunTestJob", "msg") {
+            @Override
+            public void work() {
+                runChk.incrementAndGet();
+            }
+        }, JobOptions.parse("misfire=COALESCE"));
+
+        // the last execution was an hour ago
+        cronjob.prefs.put(cronjob.prefId, LocalDateTime.now().minusHours(1).format(UTILS.formatter));
+        assertEquals(1, cronjob.runMissedExecutions(null));
+        assertEquals(1, runChk.get());
+
+        // now the coalesced execution is registered, nothing is missed
+        assertEquals(0, cronjob.runMissedExecutions(null));
+        assertEquals(1, runChk.get());
+        cronjob.prefs.remove(cronjob.prefId);
+    }
+
+    private Cronjob blockingJob(String name, String options, CountDownLatch started, CountDownLatch release,
+                                AtomicInteger runChk) throws Exception {
+        Cronjob cronjob = new Cronjob("0 * * ? * * *", new Job_Logging(name, "msg") {
+            @Override
+            public void work() {
+                runChk.incrementAndGet();
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }, JobOptions.parse(options));
+        cronjob.prefs.remove(cronjob.prefId);
+        return cronjob;
+    }
+
+    @Test
+    void overlapSkip() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger runChk = new AtomicInteger(0);
+        Cronjob cronjob = blockingJob("OverlapSkipJob", "overlap=skip", started, release, runChk);
+        assertEquals(OverlapPolicy.SKIP, cronjob.getOverlapPolicy());
+        assertEquals(RunState.IDLE, cronjob.getRunState());
+
+        LocalDateTime fire = LocalDateTime.of(2024, 5, 1, 10, 0, 0);
+        CompletableFuture<Boolean> first = cronjob.executeAsync(fire, JobThreads.executor("OverlapSkip"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertEquals(RunState.RUNNING, cronjob.getRunState());
+
+        // the second execution is skipped while the first one is running
+        assertFalse(cronjob.executeAsync(fire.plusMinutes(1), JobThreads.executor("OverlapSkip")).get(5, TimeUnit.SECONDS));
+
+        release.countDown();
+        assertTrue(first.get(5, TimeUnit.SECONDS));
+        assertEquals(RunState.IDLE, cronjob.getRunState());
+        assertEquals(1, runChk.get());
+        cronjob.prefs.remove(cronjob.prefId);
+    }
+
+    @Test
+    void overlapQueue() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger runChk = new AtomicInteger(0);
+        Cronjob cronjob = blockingJob("OverlapQueueJob", "overlap=queue", started, release, runChk);
+
+        LocalDateTime fire = LocalDateTime.of(2024, 5, 1, 10, 0, 0);
+        CompletableFuture<Boolean> first = cronjob.executeAsync(fire, JobThreads.executor("OverlapQueue"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // one execution waits, the next one is skipped
+        CompletableFuture<Boolean> second = cronjob.executeAsync(fire.plusMinutes(1), JobThreads.executor("OverlapQueue"));
+        assertFalse(cronjob.executeAsync(fire.plusMinutes(2), JobThreads.executor("OverlapQueue")).get(5, TimeUnit.SECONDS));
+        assertFalse(second.isDone());
+        assertEquals(1, runChk.get());
+
+        release.countDown();
+        assertTrue(first.get(5, TimeUnit.SECONDS));
+        assertTrue(second.get(5, TimeUnit.SECONDS));
+        assertEquals(2, runChk.get());
+        assertEquals(RunState.IDLE, cronjob.getRunState());
+        cronjob.prefs.remove(cronjob.prefId);
+    }
+
+    @Test
+    void overlapCancel() throws Exception {
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger runChk = new AtomicInteger(0);
+        Cronjob cronjob = blockingJob("OverlapCancelJob", "overlap=cancel", started, release, runChk);
+
+        LocalDateTime fire = LocalDateTime.of(2024, 5, 1, 10, 0, 0);
+        CompletableFuture<Boolean> first = cronjob.executeAsync(fire, JobThreads.executor("OverlapCancel"));
+        long end = System.currentTimeMillis() + 5000;
+        while (runChk.get() == 0 && System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+        }
+
+        // the first execution is canceled, the second one starts as soon as it is finished
+        CompletableFuture<Boolean> second = cronjob.executeAsync(fire.plusMinutes(1), JobThreads.executor("OverlapCancel"));
+        // the canceled execution failed
+        ExecutionException canceled = assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(JobAbortedException.class, canceled.getCause());
+        assertFalse(((JobAbortedException) canceled.getCause()).isTimeOut());
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertEquals(2, runChk.get());
+        assertEquals(RunState.RUNNING, cronjob.getRunState());
+
+        release.countDown();
+        assertTrue(second.get(5, TimeUnit.SECONDS));
+        assertEquals(RunState.IDLE, cronjob.getRunState());
+        cronjob.prefs.remove(cronjob.prefId);
+    }
+
+    @Test
+    void timeoutUntilNext() throws Exception {
+        AtomicInteger timeOut = new AtomicInteger(0);
+        Cronjob cronjob = new Cronjob("* * * ? * * *", new Job_Logging("TimeoutUntilNextJob", "msg") {
+            @Override
+            public void work() {
+                try {
+                    Thread.sleep(10000);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+
+            @Override
+            public void workTimeOut() {
+                timeOut.incrementAndGet();
+            }
+        }, JobOptions.parse("timeout=untilNext"));
+        cronjob.prefs.remove(cronjob.prefId);
+
+        long start = System.currentTimeMillis();
+        assertTrue(cronjob.execute(LocalDateTime.now().withNano(0)));
+        assertTrue(System.currentTimeMillis() - start < 5000, "the execution must end at the next execution time");
+        assertEquals(1, timeOut.get());
+        cronjob.prefs.remove(cronjob.prefId);
+    }
+
+    @Test
+    void timeoutOption() throws Exception {
+        new Cronjob("0 0 12 ? * * *", new Job_Logging("TimeoutJob", "msg"), JobOptions.parse("timeout=5"));
+        new Cronjob("0 0 12 ? * * *", new Job_Logging("TimeoutJob", "msg"), JobOptions.parse("timeout=untilNext"));
+        assertThrows(RuntimeException.class, () -> new Cronjob("0 0 12 ? * * *", new Job_Logging("TimeoutJob", "msg"), JobOptions.parse("timeout=5s")));
+        assertThrows(RuntimeException.class, () -> new Cronjob("0 0 12 ? * * *", new Job_Logging("TimeoutJob", "msg"), JobOptions.parse("timeout=0")));
+    }
+
+    @Test
+    void rejectedStartIsNotRegistered() throws Exception {
+        AtomicInteger runChk = new AtomicInteger(0);
+        Cronjob cronjob = new Cronjob("0 0 12 ? * * *", new Job_Logging("RejectedStartJob", "msg") {
+            @Override
+            public void work() {
+                runChk.incrementAndGet();
+            }
+        });
+        cronjob.prefs.remove(cronjob.prefId);
+        try {
+            // like admission control which drops the start
+            LocalDateTime fire = LocalDateTime.now().withNano(0).minusSeconds(1);
+            assertFalse(cronjob.runAt(fire, command -> {
+                throw new RejectedExecutionException("dropped");
+            }));
+            assertEquals("", cronjob.getLastExecution(), "a dropped start isn't registered");
+            assertEquals(0, cronjob.prefs.getLong(cronjob.prefId + PreferencesExecutionStore.OWNER_SUFFIX, 0));
+
+            // so it runs at the next try
+            assertTrue(cronjob.runAt(fire, Runnable::run));
+            assertEquals(1, runChk.get());
+            assertEquals(fire.format(UTILS.formatter), cronjob.getLastExecution());
+            assertFalse(cronjob.runAt(fire, Runnable::run));
+            assertEquals(1, runChk.get());
+        } finally {
+            cronjob.prefs.remove(cronjob.prefId);
+            cronjob.prefs.remove(cronjob.prefId + PreferencesExecutionStore.OWNER_SUFFIX);
+        }
+    }
+
+    @Test
+    void timeoutIsFailure() throws Exception {
+        Cronjob cronjob = new Cronjob("0 0 12 ? * * *", new Job_Logging("TimeoutFailureJob", "msg") {
+            @Override
+            public void work() {
+                try {
+                    Thread.sleep(10000);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }, JobOptions.parse("timeout=1"));
+        cronjob.prefs.remove(cronjob.prefId);
+        AtomicInteger completed = new AtomicInteger(0);
+        cronjob.setCompletionListener((job, fireTime) -> completed.incrementAndGet());
+        ArrayList<Boolean> outcomes = new ArrayList<>();
+        ExecutionStore store = Cronjob.getExecutionStore();
+        Cronjob.setExecutionStore(new ExecutionStore() {
+            @Override
+            public long acquire(String jobId, LocalDateTime fireTime) {
+                return store.acquire(jobId, fireTime);
+            }
+
+            @Override
+            public String getLastExecution(String jobId) {
+                return store.getLastExecution(jobId);
+            }
+
+            @Override
+            public boolean isCurrent(String jobId, long token) {
+                return store.isCurrent(jobId, token);
+            }
+
+            @Override
+            public void finished(String jobId, long token, boolean success) {
+                outcomes.add(success);
+                store.finished(jobId, token, success);
+            }
+        });
+        try {
+            CompletableFuture<Boolean> completion = cronjob.executeAsync(LocalDateTime.now(), Runnable::run);
+            ExecutionException e = assertThrows(ExecutionException.class, () -> completion.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(JobAbortedException.class, e.getCause());
+            assertTrue(((JobAbortedException) e.getCause()).isTimeOut());
+            assertEquals(List.of(false), outcomes);
+            assertEquals(0, completed.get(), "a timed out execution isn't completed");
+        } finally {
+            Cronjob.setExecutionStore(store);
+            cronjob.prefs.remove(cronjob.prefId);
+        }
+    }
+
+    @Test
+    void staleExecution() throws Exception {
+        LocalDateTime fireTime = LocalDateTime.of(2024, 5, 1, 10, 0);
+        Cronjob[] cronjob = new Cronjob[1];
+        ArrayList<Boolean> current = new ArrayList<>();
+        cronjob[0] = new Cronjob("0 0 12 ? * * *", new Job_Logging("StaleJob", "msg") {
+            @Override
+            protected void work(Run run) {
+                current.add(run.isCurrent());
+                // another process registers a newer execution, this one is stale
+                Cronjob.getExecutionStore().acquire(cronjob[0].prefId, fireTime.plusMinutes(1));
+                current.add(run.isCurrent());
+            }
+        });
+        cronjob[0].prefs.remove(cronjob[0].prefId);
+        try {
+            assertTrue(cronjob[0].executeAsync(fireTime, Runnable::run).get(5, TimeUnit.SECONDS));
+            assertEquals(List.of(true, false), current);
+            // the end of the stale execution doesn't finish the newer one
+            assertEquals(UTILS.PID, cronjob[0].prefs.getLong(cronjob[0].prefId + PreferencesExecutionStore.OWNER_SUFFIX, 0));
+        } finally {
+            cronjob[0].prefs.remove(cronjob[0].prefId);
+            cronjob[0].prefs.remove(cronjob[0].prefId + PreferencesExecutionStore.OWNER_SUFFIX);
+        }
+    }
+
+    @Test
+    void recoverInterrupted() throws Exception {
+        LocalDateTime fireTime = LocalDateTime.of(2024, 5, 1, 10, 0);
+        AtomicInteger runs = new AtomicInteger(0);
+        AtomicInteger cleanUps = new AtomicInteger(0);
+        ArrayList<Cronjob> jobs = new ArrayList<>();
+        for (RecoveryPolicy policy : RecoveryPolicy.values()) {
+            Cronjob cronjob = new Cronjob("0 0 12 ? * * *", new Job_Logging("Recover" + policy, "msg") {
+                @Override
+                public void work() {
+                    runs.incrementAndGet();
+                }
+
+                @Override
+                public void cleanUp(LocalDateTime time) {
+                    assertEquals(fireTime, time);
+                    cleanUps.incrementAndGet();
+                }
+            }, JobOptions.parse("recover=" + policy));
+            assertEquals(policy, cronjob.getRecoveryPolicy());
+            jobs.add(cronjob);
+        }
+        long deadPid = deadPid();
+        try {
+            for (Cronjob cronjob : jobs) {
+                // the process died while the execution was running
+                cronjob.prefs.put(cronjob.prefId, fireTime.format(UTILS.formatter));
+                cronjob.prefs.putLong(cronjob.prefId + PreferencesExecutionStore.OWNER_SUFFIX, deadPid);
+            }
+
+            assertTrue(jobs.get(0).recoverInterrupted(Runnable::run).get(5, TimeUnit.SECONDS));
+            assertEquals(1, runs.get());
+            assertFalse(jobs.get(1).recoverInterrupted(Runnable::run).get(5, TimeUnit.SECONDS));
+            assertEquals(1, cleanUps.get());
+            assertFalse(jobs.get(2).recoverInterrupted(Runnable::run).get(5, TimeUnit.SECONDS));
+            assertEquals(1, runs.get());
+            assertEquals(1, cleanUps.get());
+
+            for (Cronjob cronjob : jobs) {
+                // handled once
+                assertEquals(0, cronjob.prefs.getLong(cronjob.prefId + PreferencesExecutionStore.OWNER_SUFFIX, 0));
+                assertFalse(cronjob.recoverInterrupted(Runnable::run).get(5, TimeUnit.SECONDS));
+                assertEquals(fireTime.format(UTILS.formatter), cronjob.getLastExecution());
+            }
+
+            // a rerun which doesn't start releases the claim
+            Cronjob rejected = jobs.get(0);
+            rejected.prefs.putLong(rejected.prefId + PreferencesExecutionStore.OWNER_SUFFIX, deadPid);
+            CompletableFuture<Boolean> rerun = rejected.recoverInterrupted(command -> {
+                throw new RejectedExecutionException("dropped");
+            });
+            assertThrows(ExecutionException.class, () -> rerun.get(5, TimeUnit.SECONDS));
+            assertEquals(0, rejected.prefs.getLong(rejected.prefId + PreferencesExecutionStore.OWNER_SUFFIX, 0));
+            assertEquals(1, runs.get());
+
+            // a running execution of this process isn't interrupted
+            Cronjob running = jobs.get(0);
+            running.prefs.putLong(running.prefId + PreferencesExecutionStore.OWNER_SUFFIX, UTILS.PID);
+            assertFalse(running.recoverInterrupted(Runnable::run).get(5, TimeUnit.SECONDS));
+        } finally {
+            for (Cronjob cronjob : jobs) {
+                cronjob.prefs.remove(cronjob.prefId);
+                cronjob.prefs.remove(cronjob.prefId + PreferencesExecutionStore.OWNER_SUFFIX);
+            }
+        }
+        assertEquals(1, runs.get());
+    }
+
+    /**
+     * @return the process id of a process which is finished
+     */
+    static long deadPid() throws Exception {
+        Process process = new ProcessBuilder(Paths.get(System.getProperty("java.home"), "bin", "java").toString(), "-version")
+                .redirectErrorStream(true).start();
+        process.getInputStream().readAllBytes();
+        process.waitFor();
+        assertFalse(UTILS.isAlive(process.pid()));
+        return process.pid();
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of CrontabScheduler.
+ *
+ * CrontabScheduler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * CrontabScheduler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CrontabScheduler. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.crontab;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.BitSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DueIndexTest {
+
+    private static final String[] EXPRESSIONS = {"* * * ? * * *", "0 */15 * ? * * *", "30 0 12 ? * MON-FRI *", "0 0 3 L * ? *",
+            "0 5,35 8-18 ? * * *", "0 0 0 1 1 ? 2031", "0 59 23 ? * SUN *"};
+
+    private static ArrayList<Cronjob> jobs() throws Exception {
+        ArrayList<Cronjob> jobs = new ArrayList<>();
+        for (int i = 0; i < EXPRESSIONS.length; i++) {
+            Cronjob job = new Cronjob(EXPRESSIONS[i], new Job_Logging("DueIndexJob" + i, "msg"));
+            job.cronExpression.setZone(ZoneOffset.UTC);
+            jobs.add(job);
+        }
+        return jobs;
+    }
+
+    @Test
+    void sameAsCronExpressions() throws Exception {
+        ArrayList<Cronjob> jobs = jobs();
+        long now = Instant.parse("2031-02-27T10:17:23Z").getEpochSecond();
+        DueIndex index = new DueIndex(jobs, DueIndex.DEFAULT_HORIZON, now);
+
+        // advance incremental in steps of some minutes over more than two days
+        for (int step = 0; step < 700; step++) {
+            // the current minute keeps the execution times before now, the index has minute resolution
+            for (long minute = now / 60 + 1; minute < now / 60 + index.getHorizon(); minute += 7) {
+                assertEquals(expected(jobs, now, minute), index.getDue(minute), "minute " + minute + " at " + now);
+            }
+            now += 293;
+            index.advance(now);
+        }
+
+        // a jump over the horizon rebuilds the index
+        now += 3 * 24 * 3600;
+        index.advance(now);
+        for (long minute = now / 60; minute < now / 60 + index.getHorizon(); minute += 11) {
+            assertEquals(expected(jobs, now, minute), index.getDue(minute));
+        }
+        assertTrue(index.getDue(now / 60 - 1).isEmpty(), "past minutes are dropped");
+        assertTrue(index.getDue(now / 60 + index.getHorizon()).isEmpty(), "the horizon ends");
+    }
+
+    /**
+     * The jobs with an execution time after now in the given minute.
+     */
+    private static BitSet expected(ArrayList<Cronjob> jobs, long now, long minute) {
+        BitSet due = new BitSet();
+        for (int id = 0; id < jobs.size(); id++) {
+            long next = jobs.get(id).cronExpression.nextFireEpochSecond(Math.max(now, minute * 60 - 1));
+            if (next != CompiledCron.NONE && next / 60 == minute) due.set(id);
+        }
+        return due;
+    }
+
+    @Test
+    void dueWithin() throws Exception {
+        ArrayList<Cronjob> jobs = jobs();
+        // a monday 11:55:00 UTC
+        long now = Instant.parse("2031-03-03T11:55:00Z").getEpochSecond();
+        DueIndex index = new DueIndex(jobs, 10, now);
+        // 11:55 - 11:58 only the job of every second
+        BitSet due = index.getDueWithin(now, 3);
+        assertTrue(due.get(0));
+        assertEquals(1, due.cardinality());
+
+        // the horizon ends at 12:04, 12:00:00 and 12:00:30 on a weekday
+        BitSet later = index.getDueWithin(now, 60);
+        assertEquals(3, later.cardinality());
+        assertTrue(later.get(1));
+        assertTrue(later.get(2));
+
+        // 12:01 - 12:10, 12:05 between 8 and 18
+        index.advance(now + 6 * 60);
+        BitSet next = index.getDueWithin(now + 6 * 60, 9);
+        assertEquals(2, next.cardinality());
+        assertTrue(next.get(4));
+        assertSame(jobs.get(2), index.getJob(2));
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of CrontabScheduler.
+ *
+ * CrontabScheduler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * CrontabScheduler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CrontabScheduler. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.crontab;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExecutionHistoryTest {
+
+    @TempDir
+    File dir;
+
+    @Test
+    void percentiles() {
+        try (ExecutionHistory history = new ExecutionHistory(new File(dir, "executions.history"))) {
+            ExecutionHistory.Stats empty = history.getStats("job");
+            assertEquals(0, empty.getCount());
+            assertEquals(-1, empty.getDuration(50));
+            assertEquals(0, empty.getFailureRate());
+
+            // recorded in reverse order, the percentiles don't depend on the order
+            for (int i = 100; i > 0; i--) {
+                history.record("job", 1_700_000_000L + i * 60, i * 2, i, i % 10 != 0);
+            }
+            history.record("other", 1_700_000_000L, 0, 5000, false);
+
+            ExecutionHistory.Stats stats = history.getStats("job");
+            assertEquals(100, stats.getCount());
+            assertEquals(10, stats.getFailures());
+            assertEquals(0.1, stats.getFailureRate(), 1e-9);
+            assertEquals(1, stats.getDuration(1));
+            assertEquals(50, stats.getDuration(50));
+            assertEquals(95, stats.getDuration(95));
+            assertEquals(99, stats.getDuration(99));
+            assertEquals(100, stats.getDuration(100));
+            assertEquals(198, stats.getLatency(99));
+            assertThrows(RuntimeException.class, () -> stats.getDuration(0));
+
+            assertEquals(1, history.getStats("other").getCount());
+            assertEquals(1.0, history.getStats("other").getFailureRate());
+        }
+    }
+
+    @Test
+    void ringBuffer() {
+        File file = new File(dir, "executions.history");
+        try (ExecutionHistory history = new ExecutionHistory(file, 10)) {
+            for (int i = 1; i <= 25; i++) {
+                history.record("job", i, 0, i, true);
+            }
+            // the last 10 executions are kept
+            ExecutionHistory.Stats stats = history.getStats("job");
+            assertEquals(10, stats.getCount());
+            assertEquals(16, stats.getDuration(1));
+            assertEquals(20, stats.getDuration(50));
+            assertEquals(25, stats.getDuration(100));
+        }
+
+        // the capacity of the file is kept
+        try (ExecutionHistory history = new ExecutionHistory(file, 100)) {
+            assertEquals(10, history.getCapacity());
+            assertEquals(10, history.getStats("job").getCount());
+            assertEquals(25, history.getStats("job").getDuration(100));
+        }
+    }
+
+    @Test
+    void sharedFile() {
+        File file = new File(dir, "executions.history");
+        // like two scheduler processes
+        try (ExecutionHistory first = new ExecutionHistory(file, 8);
+             ExecutionHistory second = new ExecutionHistory(file)) {
+            assertEquals(8, second.getCapacity());
+            // more jobs than the initial size of the file
+            for (int i = 0; i < 40; i++) {
+                first.record("job" + i, 0, 0, i, true);
+            }
+            second.record("job3", 0, 0, 100, false);
+            for (int i = 0; i < 40; i++) {
+                assertEquals(i == 3 ? 2 : 1, second.getStats("job" + i).getCount());
+            }
+            assertEquals(100, first.getStats("job3").getDuration(100));
+            assertEquals(1, first.getStats("job3").getFailures());
+        }
+    }
+
+    @Test
+    void cronjob() throws Exception {
+        AtomicBoolean fail = new AtomicBoolean();
+        Cronjob cronjob = new Cronjob("0 0 12 ? * * *", new Job_Logging("HistoryTestJob", "msg") {
+            @Override
+            public void work() {
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (fail.get()) throw new IllegalStateException("work exception");
+            }
+        });
+        cronjob.prefs.remove(cronjob.prefId);
+        try (ExecutionHistory history = new ExecutionHistory(new File(dir, "executions.history"))) {
+            Cronjob.setExecutionHistory(history);
+            LocalDateTime fireTime = LocalDateTime.now();
+            assertTrue(cronjob.execute(fireTime));
+            fail.set(true);
+            cronjob.execute(fireTime.plusMinutes(1));
+
+            ExecutionHistory.Stats stats = history.getStats(cronjob.prefId);
+            assertEquals(2, stats.getCount());
+            assertEquals(1, stats.getFailures());
+            assertTrue(stats.getDuration(50) >= 20, stats.toString());
+        } finally {
+            Cronjob.setExecutionHistory(null);
+            cronjob.prefs.remove(cronjob.prefId);
+        }
+    }
+}
@@ -0,0 +1,294 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of CrontabScheduler.
+ *
+ * CrontabScheduler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * CrontabScheduler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CrontabScheduler. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.crontab;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExecutionJournalTest {
+
+    @TempDir
+    File dir;
+
+    @Test
+    void acquireAndReopen() {
+        File file = new File(dir, "executions.journal");
+        LocalDateTime fireTime = LocalDateTime.of(2024, 5, 1, 10, 0, 0);
+        try (ExecutionJournal journal = new ExecutionJournal(file)) {
+            assertEquals("", journal.getLastExecution("job"));
+            assertNull(journal.getOutcome("job"));
+
+            long token = journal.acquire("job", fireTime);
+            assertTrue(token > ExecutionStore.BLOCKED);
+            assertEquals(ExecutionStore.BLOCKED, journal.acquire("job", fireTime), "the execution time is registered");
+            assertEquals(fireTime.format(UTILS.formatter), journal.getLastExecution("job"));
+            assertEquals(ExecutionJournal.Outcome.STARTED, journal.getOutcome("job"));
+            assertTrue(journal.isCurrent("job", token));
+
+            journal.finished("job", token, false);
+            assertEquals(ExecutionJournal.Outcome.FAILED, journal.getOutcome("job"));
+
+            long next = journal.acquire("job", fireTime.plusMinutes(1));
+            assertEquals(token + 1, next);
+            assertFalse(journal.isCurrent("job", token));
+            journal.finished("job", token, true);
+            assertEquals(ExecutionJournal.Outcome.STARTED, journal.getOutcome("job"), "an older execution doesn't change the state");
+            journal.finished("job", next, true);
+
+            assertThrows(RuntimeException.class, () -> new ExecutionJournal(file), "used by this journal");
+        }
+
+        // the state is read from the file
+        try (ExecutionJournal journal = new ExecutionJournal(file)) {
+            assertEquals(fireTime.plusMinutes(1).format(UTILS.formatter), journal.getLastExecution("job"));
+            assertEquals(ExecutionJournal.Outcome.SUCCEEDED, journal.getOutcome("job"));
+            assertEquals(ExecutionStore.BLOCKED, journal.acquire("job", fireTime.plusMinutes(1)));
+            assertEquals(4, journal.size());
+        }
+    }
+
+    @Test
+    void tornRecord() throws Exception {
+        File file = new File(dir, "executions.journal");
+        LocalDateTime fireTime = LocalDateTime.of(2024, 5, 1, 10, 0, 0);
+        try (ExecutionJournal journal = new ExecutionJournal(file)) {
+            journal.acquire("job", fireTime);
+            journal.acquire("job", fireTime.plusMinutes(1));
+        }
+        // a crash while the second record was written, its checksum doesn't match
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(ExecutionJournal.HEADER_SIZE + ExecutionJournal.RECORD_SIZE + 8);
+            raf.writeLong(12345);
+        }
+        try (ExecutionJournal journal = new ExecutionJournal(file)) {
+            assertEquals(1, journal.size());
+            assertEquals(fireTime.format(UTILS.formatter), journal.getLastExecution("job"));
+        }
+    }
+
+    @Test
+    void compactAndGrow() {
+        File file = new File(dir, "executions.journal");
+        LocalDateTime fireTime = LocalDateTime.of(2024, 5, 1, 10, 0, 0);
+        HashMap<String, LocalDateTime> last = new HashMap<>();
+        try (ExecutionJournal journal = new ExecutionJournal(file)) {
+            // more records than the initial capacity, most of them outdated
+            for (int i = 0; i < 5000; i++) {
+                String job = "job" + (i % 10);
+                LocalDateTime time = fireTime.plusMinutes(i);
+                journal.finished(job, journal.acquire(job, time), true);
+                last.put(job, time);
+            }
+            assertTrue(journal.size() < 2048, "compacted: " + journal.size());
+
+            // many jobs let the journal grow
+            for (int i = 0; i < 3000; i++) {
+                journal.acquire("other" + i, fireTime);
+                last.put("other" + i, fireTime);
+            }
+            assertTrue(journal.size() >= 3000);
+            for (String job : last.keySet()) {
+                assertEquals(last.get(job).format(UTILS.formatter), journal.getLastExecution(job));
+            }
+        }
+        try (ExecutionJournal journal = new ExecutionJournal(file)) {
+            for (String job : last.keySet()) {
+                assertEquals(last.get(job).format(UTILS.formatter), journal.getLastExecution(job));
+            }
+            journal.compact();
+            assertEquals(last.size(), journal.size());
+            assertEquals(ExecutionJournal.Outcome.SUCCEEDED, journal.getOutcome("job3"));
+            assertEquals(ExecutionJournal.Outcome.STARTED, journal.getOutcome("other3"));
+        }
+    }
+
+    @Test
+    void groupCommit() throws Exception {
+        File file = new File(dir, "executions.journal");
+        LocalDateTime fireTime = LocalDateTime.of(2024, 5, 1, 10, 0, 0);
+        try (ExecutionJournal journal = new ExecutionJournal(file, null, 5)) {
+            // a burst of jobs which fire at the same second
+            ArrayList<Thread> threads = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                String job = "burst" + i;
+                Thread thread = new Thread(() -> {
+                    journal.finished(job, journal.acquire(job, fireTime), true);
+                });
+                thread.start();
+                threads.add(thread);
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            assertEquals(80, journal.size());
+            assertTrue(journal.getSyncCount() > 0);
+            assertTrue(journal.getSyncCount() < 40, "syncs: " + journal.getSyncCount());
+        }
+        try (ExecutionJournal journal = new ExecutionJournal(file)) {
+            for (int i = 0; i < 40; i++) {
+                assertEquals(ExecutionJournal.Outcome.SUCCEEDED, journal.getOutcome("burst" + i));
+            }
+        }
+    }
+
+    @Test
+    void takeOverFromPreferences() {
+        LocalDateTime fireTime = LocalDateTime.of(2024, 5, 1, 10, 0, 0);
+        ExecutionStore fallback = new ExecutionStore() {
+            @Override
+            public long acquire(String jobId, LocalDateTime fireTime) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public String getLastExecution(String jobId) {
+                return jobId.equals("old") ? fireTime.format(UTILS.formatter) : "";
+            }
+
+            @Override
+            public boolean isCurrent(String jobId, long token) {
+                return false;
+            }
+        };
+        try (ExecutionJournal journal = new ExecutionJournal(new File(dir, "executions.journal"), fallback)) {
+            assertEquals(ExecutionStore.BLOCKED, journal.acquire("old", fireTime));
+            assertEquals(fireTime.format(UTILS.formatter), journal.getLastExecution("old"));
+            assertEquals("", journal.getLastExecution("new"));
+            assertTrue(journal.acquire("old", fireTime.plusMinutes(1)) > ExecutionStore.BLOCKED);
+        }
+    }
+
+    @Test
+    void unrelatedJobsDontWait() throws Exception {
+        LocalDateTime fireTime = LocalDateTime.of(2024, 5, 1, 10, 0, 0);
+        assertNotSame(new LockStripes(64).get("slow"), new LockStripes(64).get("fast"));
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutionStore fallback = new ExecutionStore() {
+            @Override
+            public long acquire(String jobId, LocalDateTime fireTime) {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public String getLastExecution(String jobId) {
+                if (jobId.equals("slow")) {
+                    // a slow disk
+                    reading.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return "";
+            }
+
+            @Override
+            public boolean isCurrent(String jobId, long token) {
+                return false;
+            }
+        };
+        try (ExecutionJournal journal = new ExecutionJournal(new File(dir, "executions.journal"), fallback)) {
+            CompletableFuture<Long> slow = CompletableFuture.supplyAsync(() -> journal.acquire("slow", fireTime));
+            assertTrue(reading.await(5, TimeUnit.SECONDS));
+
+            // the other job isn't blocked by the read of the slow job
+            long fast = CompletableFuture.supplyAsync(() -> journal.acquire("fast", fireTime)).get(5, TimeUnit.SECONDS);
+            assertTrue(fast > ExecutionStore.BLOCKED);
+            assertFalse(slow.isDone());
+
+            release.countDown();
+            assertTrue(slow.get(5, TimeUnit.SECONDS) > ExecutionStore.BLOCKED);
+        }
+    }
+
+    @Test
+    void concurrentDuplicates() throws Exception {
+        LocalDateTime fireTime = LocalDateTime.of(2024, 5, 1, 10, 0, 0);
+        try (ExecutionJournal journal = new ExecutionJournal(new File(dir, "executions.journal"))) {
+            AtomicInteger runs = new AtomicInteger();
+            CountDownLatch start = new CountDownLatch(1);
+            ArrayList<Thread> threads = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                // every job fires twice
+                String job = "job" + (i / 2);
+                Thread thread = new Thread(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    if (journal.acquire(job, fireTime) > ExecutionStore.BLOCKED) runs.incrementAndGet();
+                });
+                thread.start();
+                threads.add(thread);
+            }
+            start.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            assertEquals(32, runs.get());
+            assertEquals(32, journal.size());
+        }
+    }
+
+    @Test
+    void interrupted() {
+        File file = new File(dir, "executions.journal");
+        LocalDateTime fireTime = LocalDateTime.of(2024, 5, 1, 10, 0, 0);
+        try (ExecutionJournal journal = new ExecutionJournal(file)) {
+            journal.acquire("crashed", fireTime);
+            journal.finished("finished", journal.acquire("finished", fireTime), true);
+            journal.acquire("replaced", fireTime);
+            // running executions of this process aren't interrupted
+            assertNull(journal.takeInterrupted("crashed"));
+        }
+
+        // the journal isn't closed by a crash, but the records are the same
+        try (ExecutionJournal journal = new ExecutionJournal(file)) {
+            assertTrue(journal.acquire("replaced", fireTime.plusMinutes(1)) > ExecutionStore.BLOCKED);
+            assertNull(journal.takeInterrupted("replaced"), "a new execution replaces the interrupted one");
+            assertNull(journal.takeInterrupted("finished"));
+            assertNull(journal.takeInterrupted("unknown"));
+
+            ExecutionStore.Claim claim = journal.takeInterrupted("crashed");
+            assertEquals(fireTime, claim.fireTime);
+            assertNull(journal.takeInterrupted("crashed"), "taken once");
+            journal.finished("crashed", claim.token, false);
+            assertEquals(ExecutionJournal.Outcome.FAILED, journal.getOutcome("crashed"));
+        }
+        try (ExecutionJournal journal = new ExecutionJournal(file)) {
+            assertNull(journal.takeInterrupted("crashed"));
+            assertEquals(fireTime.plusMinutes(1), journal.takeInterrupted("replaced").fireTime);
+        }
+    }
+}
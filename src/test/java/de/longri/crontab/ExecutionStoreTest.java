@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of CrontabScheduler.
+ *
+ * CrontabScheduler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * CrontabScheduler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CrontabScheduler. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.crontab;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.util.prefs.BackingStoreException;
+import java.util.prefs.Preferences;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExecutionStoreTest {
+
+    @TempDir
+    File dir;
+
+    @Test
+    void sameDuplicateCheck() throws BackingStoreException {
+        Preferences prefs = Preferences.userRoot().node(ExecutionStoreTest.class.getName());
+        try (ExecutionJournal journal = new ExecutionJournal(new File(dir, "executions.journal"))) {
+            ExecutionStore[] stores = {new PreferencesExecutionStore(prefs), new LeaseStore(dir), journal};
+            LocalDateTime fireTime = LocalDateTime.of(2024, 5, 1, 10, 0, 0);
+            for (ExecutionStore store : stores) {
+                String name = store.getClass().getSimpleName();
+                assertTrue(store.acquire("job", fireTime) > ExecutionStore.BLOCKED, name);
+                // the executions are registered with minute resolution
+                assertEquals(ExecutionStore.BLOCKED, store.acquire("job", fireTime.plusSeconds(30)), name);
+                // an older execution time doesn't run again
+                assertEquals(ExecutionStore.BLOCKED, store.acquire("job", fireTime.minusMinutes(5)), name);
+                assertEquals(fireTime.format(UTILS.formatter), store.getLastExecution("job"), name);
+                assertTrue(store.acquire("job", fireTime.plusMinutes(1)) > ExecutionStore.BLOCKED, name);
+            }
+        } finally {
+            prefs.removeNode();
+        }
+
+        assertTrue(ExecutionStore.isRegistered(LocalDateTime.of(2024, 5, 1, 10, 0, 59), "2024-05-01 10:00"));
+        assertFalse(ExecutionStore.isRegistered(LocalDateTime.of(2024, 5, 1, 10, 1, 0), "2024-05-01 10:00"));
+        assertFalse(ExecutionStore.isRegistered(LocalDateTime.of(2024, 5, 1, 10, 0, 0), ""));
+        assertFalse(ExecutionStore.isRegistered(LocalDateTime.of(2024, 5, 1, 10, 0, 0), "unknown"));
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of CrontabScheduler.
+ *
+ * CrontabScheduler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * CrontabScheduler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CrontabScheduler. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.crontab;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GroupCommitTest {
+
+    @Test
+    void burst() throws Exception {
+        AtomicLong written = new AtomicLong();
+        AtomicLong synced = new AtomicLong();
+        AtomicInteger syncs = new AtomicInteger();
+        GroupCommit commit = new GroupCommit(5, () -> {
+            syncs.incrementAndGet();
+            synced.set(written.get());
+            Thread.sleep(2);
+        });
+
+        int threads = 50;
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger notDurable = new AtomicInteger();
+        ArrayList<Thread> list = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long sequence;
+                synchronized (written) {
+                    written.incrementAndGet();
+                    sequence = commit.register();
+                }
+                commit.await(sequence);
+                // the sync has seen this write
+                if (synced.get() < sequence) notDurable.incrementAndGet();
+            });
+            thread.start();
+            list.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : list) {
+            thread.join();
+        }
+
+        assertEquals(0, notDurable.get());
+        assertTrue(syncs.get() < threads / 2, "a burst needs few syncs: " + syncs.get());
+        assertEquals(syncs.get(), commit.getSyncCount());
+    }
+
+    @Test
+    void failedSync() {
+        AtomicInteger calls = new AtomicInteger();
+        GroupCommit commit = new GroupCommit(0, () -> {
+            if (calls.incrementAndGet() == 1) throw new IOException("disk full");
+        });
+        long sequence = commit.register();
+        assertThrows(RuntimeException.class, () -> commit.await(sequence));
+        // the next waiter syncs again
+        commit.await(sequence);
+        assertEquals(2, calls.get());
+        assertEquals(1, commit.getSyncCount());
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of CrontabScheduler.
+ *
+ * CrontabScheduler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * CrontabScheduler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CrontabScheduler. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.crontab;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JobGraphTest {
+
+    private final List<String> runs = new CopyOnWriteArrayList<>();
+
+    private Cronjob job(String name, String options) throws Exception {
+        return job(name, options, null);
+    }
+
+    private Cronjob job(String name, String options, CountDownLatch latch) throws Exception {
+        Cronjob cronjob = new Cronjob("0 0 0 ? * * *", new Job_Logging(name, "msg") {
+            @Override
+            public void work() {
+                if (latch != null) {
+                    latch.countDown();
+                    try {
+                        assertTrue(latch.await(5, TimeUnit.SECONDS), "dependents must run at the same time");
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+                runs.add(name);
+            }
+        }, JobOptions.parse(options));
+        cronjob.prefs.remove(cronjob.prefId);
+        return cronjob;
+    }
+
+    private void clean(List<Cronjob> jobs) {
+        for (Cronjob job : jobs) job.prefs.remove(job.prefId);
+    }
+
+    @Test
+    void runAfterUpstreams() throws Exception {
+        ArrayList<Cronjob> jobs = new ArrayList<>();
+        jobs.add(job("GraphA", null));
+        jobs.add(job("GraphB", null));
+        jobs.add(job("GraphC", "after=GraphA|GraphB"));
+        jobs.add(job("GraphD", "after=GraphC"));
+
+        WorkerPools pools = new WorkerPools();
+        JobGraph graph = new JobGraph(jobs, pools);
+        assertFalse(graph.isDependent(jobs.get(0)));
+        assertTrue(graph.isDependent(jobs.get(2)));
+        assertEquals(List.of(jobs.get(0), jobs.get(1)), graph.getUpstreams(jobs.get(2)));
+
+        LocalDateTime fire = LocalDateTime.of(2024, 5, 1, 0, 0);
+        assertTrue(jobs.get(0).execute(fire));
+        graph.join();
+        assertEquals(List.of("GraphA"), runs, "GraphC waits for GraphB");
+
+        assertTrue(jobs.get(1).execute(fire));
+        graph.join();
+        assertEquals(List.of("GraphA", "GraphB", "GraphC", "GraphD"), runs);
+        assertEquals(fire.format(UTILS.formatter), jobs.get(3).getLastExecution());
+
+        pools.shutdown();
+        clean(jobs);
+    }
+
+    @Test
+    void parallelBranches() throws Exception {
+        CountDownLatch latch = new CountDownLatch(2);
+        ArrayList<Cronjob> jobs = new ArrayList<>();
+        jobs.add(job("ParallelRoot", null));
+        jobs.add(job("ParallelLeft", "after=ParallelRoot", latch));
+        jobs.add(job("ParallelRight", "after=ParallelRoot", latch));
+
+        WorkerPools pools = new WorkerPools();
+        JobGraph graph = new JobGraph(jobs, pools);
+        assertTrue(jobs.get(0).execute(LocalDateTime.of(2024, 5, 1, 0, 0)));
+        graph.join();
+        assertEquals(3, runs.size());
+        assertEquals(0, latch.getCount());
+
+        pools.shutdown();
+        clean(jobs);
+    }
+
+    @Test
+    void invalidGraph() throws Exception {
+        ArrayList<Cronjob> cycle = new ArrayList<>();
+        cycle.add(job("CycleA", "after=CycleC"));
+        cycle.add(job("CycleB", "after=CycleA"));
+        cycle.add(job("CycleC", "after=CycleB"));
+        RuntimeException e = assertThrows(RuntimeException.class, () -> new JobGraph(cycle, new WorkerPools()));
+        assertTrue(e.getMessage().contains("Cycle"));
+
+        ArrayList<Cronjob> unknown = new ArrayList<>();
+        unknown.add(job("Known", "after=Unknown"));
+        assertThrows(RuntimeException.class, () -> new JobGraph(unknown, new WorkerPools()));
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of CrontabScheduler.
+ *
+ * CrontabScheduler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * CrontabScheduler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CrontabScheduler. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.crontab;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JobOptionsTest {
+
+    @Test
+    void parse() {
+        JobOptions options = JobOptions.parse(" misfire=CATCH_UP, Misfire.Max = 3 ,");
+        assertEquals("CATCH_UP", options.get("misfire"));
+        assertEquals(3, options.getInt("misfire.max", 10));
+        assertEquals(10, options.getInt("unknown", 10));
+        assertEquals("default", options.get("unknown", "default"));
+        assertEquals("misfire=CATCH_UP, misfire.max=3", options.toIniString());
+
+        options.set("misfire.max", null);
+        assertEquals("misfire=CATCH_UP", options.toIniString());
+
+        assertTrue(JobOptions.parse(null).isEmpty());
+        assertTrue(JobOptions.parse("  ").isEmpty());
+        assertThrows(RuntimeException.class, () -> JobOptions.parse("misfire"));
+    }
+
+    @Test
+    void iniString() throws Exception {
+        Cronjob cronjob = Cronjob.getFromIniString("0 0/5 * ? * * *; LOGGING ;JobName ;JobMsg ;misfire=coalesce");
+        assertEquals(MisfirePolicy.COALESCE, cronjob.getMisfirePolicy());
+        assertEquals("0 0/5 * ? * * *; LOGGING ;JobName ;JobMsg ;misfire=coalesce", cronjob.toIniString());
+
+        // without options the ini string is unchanged
+        cronjob = Cronjob.getFromIniString("0 0/5 * ? * * *; LOGGING ;JobName ;JobMsg");
+        assertEquals(MisfirePolicy.SKIP, cronjob.getMisfirePolicy());
+        assertEquals("0 0/5 * ? * * *; LOGGING ;JobName ;JobMsg", cronjob.toIniString());
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of CrontabScheduler.
+ *
+ * CrontabScheduler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * CrontabScheduler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CrontabScheduler. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.crontab;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JobThreadsTest {
+
+    @AfterEach
+    void afterEach() {
+        JobThreads.setVirtual(false);
+    }
+
+    @Test
+    void platformThreads() throws InterruptedException {
+        assertFalse(JobThreads.isVirtual());
+        Thread thread = JobThreads.start(() -> {
+        }, "platform");
+        thread.join();
+        assertFalse(thread.isVirtual());
+        assertEquals("platform", thread.getName());
+    }
+
+    @Test
+    void virtualThreads() throws InterruptedException {
+        JobThreads.setVirtual(true);
+        final AtomicBoolean workVirtual = new AtomicBoolean(false);
+
+        CancelTimeOutJob job = new CancelTimeOutJob("virtual test job") {
+            @Override
+            protected void work() {
+                workVirtual.set(Thread.currentThread().isVirtual());
+            }
+        };
+
+        Thread thread = JobThreads.start(job, "virtual");
+        thread.join();
+        assertTrue(thread.isVirtual());
+        assertTrue(workVirtual.get(), "work must be executed at a virtual thread");
+        assertTrue(job.getReadyProperty().get());
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of CrontabScheduler.
+ *
+ * CrontabScheduler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * CrontabScheduler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CrontabScheduler. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.crontab;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LeaseStoreTest {
+
+    private static final int FIRE_TIMES = 200;
+
+    @TempDir
+    File dir;
+
+    @Test
+    void acquireOnce() {
+        LeaseStore store = new LeaseStore(dir);
+        LocalDateTime fire = LocalDateTime.of(2024, 5, 1, 10, 0);
+
+        long token = store.acquire("CronJob0 * * ? * * *Backup", fire);
+        assertTrue(token > ExecutionStore.BLOCKED);
+        assertEquals(ExecutionStore.BLOCKED, store.acquire("CronJob0 * * ? * * *Backup", fire));
+        assertEquals(fire.format(UTILS.formatter), store.getLastExecution("CronJob0 * * ? * * *Backup"));
+        assertTrue(store.isCurrent("CronJob0 * * ? * * *Backup", token));
+
+        // the fencing token increases with every execution
+        long next = store.acquire("CronJob0 * * ? * * *Backup", fire.plusMinutes(1));
+        assertEquals(token + 1, next);
+        assertFalse(store.isCurrent("CronJob0 * * ? * * *Backup", token));
+
+        // another job has its own lease
+        assertEquals("", store.getLastExecution("CronJob0 * * ? * * *Other"));
+        assertTrue(store.acquire("CronJob0 * * ? * * *Other", fire) > ExecutionStore.BLOCKED);
+    }
+
+    @Test
+    void staleExecutionTime() {
+        LeaseStore store = new LeaseStore(dir);
+        LocalDateTime fire = LocalDateTime.of(2024, 5, 1, 10, 0);
+        assertTrue(store.acquire("StaleJob", fire) > ExecutionStore.BLOCKED);
+        assertEquals(ExecutionStore.BLOCKED, store.acquire("StaleJob", fire.minusMinutes(5)));
+        assertEquals(fire.format(UTILS.formatter), store.getLastExecution("StaleJob"));
+    }
+
+    @Test
+    void concurrentStores() {
+        // two stores at the same directory, like two scheduler instances
+        LeaseStore store1 = new LeaseStore(dir);
+        LeaseStore store2 = new LeaseStore(dir);
+        Set<Integer> acquired = ConcurrentHashMap.newKeySet();
+        AtomicInteger count = new AtomicInteger(0);
+        ArrayList<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            LeaseStore store = t % 2 == 0 ? store1 : store2;
+            futures.add(CompletableFuture.runAsync(() -> {
+                for (int i : acquireAll(store, "ConcurrentJob")) {
+                    acquired.add(i);
+                    count.incrementAndGet();
+                }
+            }));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+
+        // no execution time runs twice, the last one runs
+        assertEquals(acquired.size(), count.get());
+        assertTrue(acquired.contains(FIRE_TIMES - 1));
+    }
+
+    @Test
+    void twoProcesses() throws Exception {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        Process child = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                Child.class.getName(), dir.getAbsolutePath())
+                .redirectError(ProcessBuilder.Redirect.DISCARD).start();
+
+        ArrayList<Integer> acquired = acquireAll(new LeaseStore(dir), "ProcessJob");
+        String output = new String(child.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        assertEquals(0, child.waitFor());
+        ArrayList<Integer> childAcquired = new ArrayList<>();
+        for (String line : output.split("\n")) {
+            if (line.startsWith(Child.PREFIX)) childAcquired.add(Integer.parseInt(line.substring(Child.PREFIX.length()).trim()));
+        }
+
+        // no execution time runs in both processes
+        for (int i : childAcquired) {
+            assertFalse(acquired.contains(i), "execution " + i + " runs twice");
+        }
+        assertTrue(acquired.contains(FIRE_TIMES - 1) || childAcquired.contains(FIRE_TIMES - 1));
+    }
+
+    @Test
+    void cronjobWithLeaseStore() throws Exception {
+        ExecutionStore old = Cronjob.getExecutionStore();
+        try {
+            Cronjob.setExecutionStore(new LeaseStore(dir));
+            AtomicInteger runChk = new AtomicInteger(0);
+            Cronjob cronjob = new Cronjob("0 * * ? * * *", new Job_Logging("LeaseJob", "msg") {
+                @Override
+                public void work() {
+                    runChk.incrementAndGet();
+                }
+            });
+            LocalDateTime fire = LocalDateTime.of(2024, 5, 1, 10, 0);
+            assertTrue(cronjob.execute(fire));
+            assertFalse(cronjob.execute(fire));
+            assertEquals(1, runChk.get());
+            assertEquals(fire.format(UTILS.formatter), cronjob.getLastExecution());
+        } finally {
+            Cronjob.setExecutionStore(old);
+        }
+    }
+
+    private static ArrayList<Integer> acquireAll(LeaseStore store, String jobId) {
+        ArrayList<Integer> acquired = new ArrayList<>();
+        LocalDateTime start = LocalDateTime.of(2024, 5, 1, 0, 0);
+        for (int i = 0; i < FIRE_TIMES; i++) {
+            if (store.acquire(jobId, start.plusMinutes(i)) > ExecutionStore.BLOCKED) acquired.add(i);
+        }
+        return acquired;
+    }
+
+    /**
+     * Acquires every execution time in a second process and prints the owned executions.
+     */
+    static class Child {
+        static final String PREFIX = "acquired:";
+
+        public static void main(String[] args) {
+            for (int i : acquireAll(new LeaseStore(new File(args[0])), "ProcessJob")) {
+                System.out.println(PREFIX + i);
+            }
+        }
+    }
+
+    @Test
+    void interrupted() throws Exception {
+        LeaseStore store = new LeaseStore(dir);
+        LocalDateTime fire = LocalDateTime.of(2024, 5, 1, 10, 0);
+        long token = store.acquire("job", fire);
+        // the execution runs at this process
+        assertNull(store.takeInterrupted("job"));
+        store.finished("job", token, true);
+        assertNull(store.takeInterrupted("job"));
+
+        // the process died while the execution was running
+        store.writeLease("job", fire, token, CronjobTest.deadPid());
+        ExecutionStore.Claim claim = store.takeInterrupted("job");
+        assertEquals(fire, claim.fireTime);
+        assertEquals(token, claim.token);
+        assertNull(store.takeInterrupted("job"), "taken over by this process");
+        assertTrue(store.isCurrent("job", token));
+        // an older token doesn't finish the execution
+        store.finished("job", token - 1, false);
+        assertEquals(UTILS.PID, store.getOwner("job"));
+        store.finished("job", token, false);
+        assertEquals(0, store.getOwner("job"));
+        assertNull(new LeaseStore(dir).takeInterrupted("job"));
+        assertNull(store.takeInterrupted("unknown"));
+    }
+
+    @Test
+    void tornWrite() throws Exception {
+        LeaseStore store = new LeaseStore(dir);
+        LocalDateTime fire = LocalDateTime.of(2024, 5, 1, 10, 0);
+        long token = store.acquire("job", fire);
+        assertEquals(token + 1, store.acquire("job", fire.plusMinutes(1)));
+
+        // a crash tears the write of the second execution, the first one is the last complete lease
+        byte[] bytes = Files.readAllBytes(store.getFile("job").toPath());
+        String second = fire.plusMinutes(1).format(UTILS.formatter);
+        int slot = new String(bytes, 0, LeaseStore.SLOT_SIZE, StandardCharsets.UTF_8).startsWith(second) ? 0 : LeaseStore.SLOT_SIZE;
+        bytes[slot + 20] ^= 1;
+        Files.write(store.getFile("job").toPath(), bytes);
+        assertEquals(fire.format(UTILS.formatter), store.getLastExecution("job"));
+        assertTrue(store.isCurrent("job", token));
+        // the token doesn't go back
+        assertEquals(token + 1, store.acquire("job", fire.plusMinutes(1)));
+
+        // a file without complete lease starts again instead of failing
+        Files.write(store.getFile("job").toPath(), "2024-05-01 10:01\n1".getBytes(StandardCharsets.UTF_8));
+        assertEquals("", store.getLastExecution("job"));
+        assertTrue(store.acquire("job", fire) > ExecutionStore.BLOCKED);
+    }
+}
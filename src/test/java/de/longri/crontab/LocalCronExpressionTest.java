@@ -0,0 +1,209 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of CrontabScheduler.
+ *
+ * CrontabScheduler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * CrontabScheduler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CrontabScheduler. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.crontab;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.text.ParseException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalCronExpressionTest {
+
+    @Test
+    void hashToken() throws ParseException {
+        String replaced = LocalCronExpression.replaceHashTokens("0 H H ? * * *", "Backup");
+        assertEquals(replaced, LocalCronExpression.replaceHashTokens("0 H H ? * * *", "Backup"), "must be stable");
+        assertFalse(replaced.contains("H"));
+
+        // values in range and spread over the range
+        HashSet<String> minutes = new HashSet<>();
+        for (int i = 0; i < 200; i++) {
+            String[] fields = LocalCronExpression.replaceHashTokens("H H H(2-4) H * ? *", "Job" + i).split(" ");
+            int second = Integer.parseInt(fields[0]);
+            int minute = Integer.parseInt(fields[1]);
+            int hour = Integer.parseInt(fields[2]);
+            int day = Integer.parseInt(fields[3]);
+            assertTrue(second >= 0 && second <= 59);
+            assertTrue(minute >= 0 && minute <= 59);
+            assertTrue(hour >= 2 && hour <= 4);
+            assertTrue(day >= 1 && day <= 28);
+            minutes.add(fields[1]);
+        }
+        assertTrue(minutes.size() > 40, "minutes must be spread");
+
+        // names like THU are no hash token
+        assertEquals("0 0 12 ? * THU *", LocalCronExpression.replaceHashTokens("0 0 12 ? * THU *", "Job"));
+
+        assertThrows(ParseException.class, () -> LocalCronExpression.replaceHashTokens("0 H(50-70) * ? * * *", "Job"));
+        assertThrows(ParseException.class, () -> LocalCronExpression.replaceHashTokens("0 H * ? * * *", null));
+        assertThrows(ParseException.class, () -> new LocalCronExpression("0 Hx * ? * * *", "Job"));
+    }
+
+    @Test
+    void hashStep() throws ParseException {
+        LocalCronExpression cronExpr = new LocalCronExpression("0 H/15 * ? * * *", "Backup");
+        assertEquals("0 H/15 * ? * * *", cronExpr.toString());
+
+        LocalDateTime next = cronExpr.nextTimeAfter(LocalDateTime.of(2024, 5, 1, 10, 0, 0).minusSeconds(1));
+        assertTrue(next.getMinute() < 15);
+        assertEquals(next.plusMinutes(15), cronExpr.nextTimeAfter(next));
+        assertEquals(next.plusMinutes(30), cronExpr.nextTimeAfter(next.plusMinutes(15)));
+    }
+
+    @Test
+    void batch() throws ParseException {
+        LocalCronExpression cronExpr = new LocalCronExpression("0 0 12 L * ? *");
+        LocalDateTime start = LocalDateTime.of(2023, 12, 15, 0, 0);
+
+        FireTimeBuffer buffer = cronExpr.nextTimeAfter(start, 5);
+        assertEquals(5, buffer.size());
+        LocalDateTime next = start;
+        for (int i = 0; i < buffer.size(); i++) {
+            next = cronExpr.nextTimeAfter(next);
+            assertEquals(next, buffer.getTime(i));
+            assertEquals(FireTimeBuffer.toEpochSecond(next), buffer.get(i));
+        }
+        assertEquals(LocalDateTime.of(2024, 2, 29, 12, 0), buffer.getTime(2));
+
+        // the buffer is reused, the barrier is exclusive
+        assertSame(buffer, cronExpr.nextTimeAfter(start, LocalDateTime.of(2024, 3, 31, 12, 0), buffer));
+        assertEquals(3, buffer.size());
+        assertEquals(LocalDateTime.of(2024, 2, 29, 12, 0), buffer.getTime(2));
+        assertEquals(4, cronExpr.nextTimeAfter(start, LocalDateTime.of(2024, 3, 31, 12, 0, 1), buffer).size());
+
+        // at most n before the barrier
+        assertEquals(2, cronExpr.nextTimeAfter(start, 2, LocalDateTime.of(2025, 1, 1, 0, 0), buffer).size());
+        assertEquals(0, cronExpr.nextTimeAfter(start, LocalDateTime.of(2023, 12, 31, 12, 0), buffer).size());
+
+        // no further execution time
+        LocalCronExpression once = new LocalCronExpression("0 0 0 1 1 ? 2030");
+        assertEquals(1, once.nextTimeAfter(start, 10).size());
+        assertThrows(IndexOutOfBoundsException.class, () -> once.nextTimeAfter(start, 10).get(1));
+    }
+
+    @Test
+    void daylightSaving() throws ParseException {
+        LocalCronExpression daily = new LocalCronExpression("0 30 2 * * ? *");
+        daily.setZone(ZoneId.of("Europe/Berlin"));
+
+        // 02:30 doesn't exist on 2030-03-31, the job runs once when the clock jumps to 03:00
+        LocalDateTime next = daily.nextTimeAfter(LocalDateTime.of(2030, 3, 31, 1, 0));
+        assertEquals(LocalDateTime.of(2030, 3, 31, 3, 0), next);
+        assertEquals(Instant.parse("2030-03-31T01:00:00Z").toEpochMilli(), daily.toEpochMilli(next));
+        assertEquals(LocalDateTime.of(2030, 4, 1, 2, 30), daily.nextTimeAfter(next));
+
+        // 02:30 exists twice on 2030-10-27, the job runs once at the first one
+        next = daily.nextTimeAfter(LocalDateTime.of(2030, 10, 27, 1, 0));
+        assertEquals(LocalDateTime.of(2030, 10, 27, 2, 30), next);
+        assertEquals(Instant.parse("2030-10-27T00:30:00Z").toEpochMilli(), daily.toEpochMilli(next));
+        assertEquals(LocalDateTime.of(2030, 10, 28, 2, 30), daily.nextTimeAfter(next));
+
+        // a job of every minute skips the gap and doesn't repeat the overlap
+        LocalCronExpression minutely = new LocalCronExpression("0 * * ? * * *");
+        minutely.setZone(ZoneId.of("Europe/Berlin"));
+        assertEquals(LocalDateTime.of(2030, 3, 31, 3, 0), minutely.nextTimeAfter(LocalDateTime.of(2030, 3, 31, 1, 59)));
+        assertEquals(LocalDateTime.of(2030, 3, 31, 3, 1), minutely.nextTimeAfter(LocalDateTime.of(2030, 3, 31, 3, 0)));
+        long secondPass = Instant.parse("2030-10-27T01:30:00Z").getEpochSecond();
+        assertEquals(Instant.parse("2030-10-27T02:00:00Z").getEpochSecond(), minutely.nextFireEpochSecond(secondPass));
+    }
+
+    @Test
+    void daylightSavingBatch() throws ParseException {
+        String[] expressions = {"0 */15 * ? * * *", "0 30 2 * * ? *", "0 0/20 1-3 ? * * *", "* * 2 ? * * *"};
+        String[] zones = {"Europe/Berlin", "America/New_York", "Australia/Lord_Howe"};
+        LocalDateTime[] days = {LocalDateTime.of(2030, 3, 31, 0, 0), LocalDateTime.of(2030, 10, 27, 0, 0),
+                LocalDateTime.of(2030, 3, 10, 0, 0), LocalDateTime.of(2030, 11, 3, 0, 0),
+                LocalDateTime.of(2030, 4, 7, 0, 0), LocalDateTime.of(2030, 10, 6, 0, 0)};
+        FireTimeBuffer buffer = new FireTimeBuffer();
+        for (String zone : zones) {
+            for (String expression : expressions) {
+                LocalCronExpression cron = new LocalCronExpression(expression);
+                cron.setZone(ZoneId.of(zone));
+                for (LocalDateTime day : days) {
+                    for (LocalDateTime after = day; after.isBefore(day.plusHours(4)); after = after.plusMinutes(7)) {
+                        LocalDateTime barrier = after.plusHours(3);
+                        // the batch and the count run like the single execution times
+                        ArrayList<LocalDateTime> expected = new ArrayList<>();
+                        LocalDateTime next = cron.nextTimeAfter(after);
+                        while (next != null && cron.toEpochMilli(next) < cron.toEpochMilli(barrier)) {
+                            expected.add(next);
+                            next = cron.nextTimeAfter(next);
+                        }
+                        String message = zone + " " + expression + " " + after;
+                        cron.nextTimeAfter(after, Integer.MAX_VALUE, barrier, buffer);
+                        assertEquals(expected.size(), buffer.size(), message);
+                        for (int i = 0; i < expected.size(); i++) {
+                            assertEquals(expected.get(i), buffer.getTime(i), message);
+                        }
+                        assertEquals(expected.size(), cron.count(after, barrier), message);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void timeZoneOption() throws Exception {
+        Cronjob job = new Cronjob("0 0 12 ? * * *", new Job_Logging("TzJob", "msg"), JobOptions.parse("tz=America/New_York"));
+        assertEquals(ZoneId.of("America/New_York"), job.cronExpression.getZone());
+        assertEquals(ZoneId.systemDefault(), new Cronjob("0 0 12 ? * * *", new Job_Logging("NoTzJob", "msg")).cronExpression.getZone());
+
+        // noon in New York
+        Trigger trigger = new Trigger(job, LocalDateTime.of(2030, 7, 1, 12, 0), false);
+        assertEquals(Instant.parse("2030-07-01T16:00:00Z").toEpochMilli(), trigger.fireTime);
+
+        assertThrows(RuntimeException.class, () -> new Cronjob("0 0 12 ? * * *", new Job_Logging("BadTzJob", "msg"), JobOptions.parse("tz=Mars/Olympus")));
+    }
+
+    @Test
+    void staggerJobList() throws Exception {
+        CronJobList list = new CronJobList(new File("./notExistingStaggerTest.ini"));
+        for (int i = 0; i < 4; i++) {
+            list.add(new Cronjob("0 0 * ? * * *", new Job_Logging("StaggerJob" + i, "msg")));
+        }
+        list.add(new Cronjob("0 30 * ? * * *", new Job_Logging("OtherJob", "msg")));
+        // the same schedule written in lower case, and hash tokens which are replaced by different values
+        list.add(new Cronjob("0 0 12 ? * mon-fri *", new Job_Logging("LowerCaseJob", "msg")));
+        list.add(new Cronjob("0 0 12 ? * MON-FRI *", new Job_Logging("UpperCaseJob", "msg")));
+        list.add(new Cronjob("H H * ? * * *", new Job_Logging("HashJob0", "msg")));
+        list.add(new Cronjob("H H * ? * * *", new Job_Logging("HashJob1", "msg")));
+        assertNotSame(list.get(7).cronExpression.EXPRESSION, list.get(8).cronExpression.EXPRESSION);
+        list.stagger(60);
+
+        assertEquals(0, list.get(0).getStaggerSeconds());
+        assertEquals(15, list.get(1).getStaggerSeconds());
+        assertEquals(30, list.get(2).getStaggerSeconds());
+        assertEquals(45, list.get(3).getStaggerSeconds());
+        assertEquals(0, list.get(4).getStaggerSeconds(), "a single job isn't delayed");
+        assertEquals(0, list.get(5).getStaggerSeconds());
+        assertEquals(30, list.get(6).getStaggerSeconds(), "the same compiled schedule");
+        assertEquals(0, list.get(7).getStaggerSeconds());
+        assertEquals(0, list.get(8).getStaggerSeconds(), "different schedules after the hash tokens are replaced");
+
+        Trigger trigger = new Trigger(list.get(1), LocalDateTime.of(2024, 5, 1, 10, 0, 0), false);
+        assertEquals(LocalCronExpression.toDate(trigger.next).getTime() + 15000, trigger.fireTime);
+    }
+}
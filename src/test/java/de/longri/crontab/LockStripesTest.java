@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of CrontabScheduler.
+ *
+ * CrontabScheduler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * CrontabScheduler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CrontabScheduler. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.crontab;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.IdentityHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LockStripesTest {
+
+    @Test
+    void stripes() {
+        LockStripes locks = new LockStripes(50);
+        assertEquals(64, locks.size());
+        assertEquals(1, new LockStripes(1).size());
+        assertSame(locks.get("job1"), locks.get(new String("job1")));
+
+        // the jobs are spread over the locks
+        IdentityHashMap<Object, Boolean> used = new IdentityHashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            used.put(locks.get("Job" + i), true);
+        }
+        assertTrue(used.size() > 48, "used locks: " + used.size());
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of CrontabScheduler.
+ *
+ * CrontabScheduler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * CrontabScheduler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CrontabScheduler. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.crontab;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.prefs.BackingStoreException;
+import java.util.prefs.Preferences;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PreferencesExecutionStoreTest {
+
+    private final Preferences prefs = Preferences.userRoot().node(PreferencesExecutionStoreTest.class.getName());
+
+    @AfterEach
+    void removeNode() throws BackingStoreException {
+        prefs.removeNode();
+    }
+
+    @Test
+    void longJobId() {
+        PreferencesExecutionStore store = new PreferencesExecutionStore(prefs);
+        LocalDateTime fire = LocalDateTime.of(2024, 5, 1, 10, 0);
+        // the job id holds the cron expression and the job name, the keys are longer than allowed
+        String jobId = "CronJob0 0/5 8-18 ? JAN-DEC MON-FRI * " + "A long job name of a backup ".repeat(3);
+        String other = jobId.replace("backup", "report");
+        assertTrue(jobId.length() > Preferences.MAX_KEY_LENGTH);
+
+        long token = store.acquire(jobId, fire);
+        assertTrue(token > ExecutionStore.BLOCKED);
+        assertEquals(ExecutionStore.BLOCKED, store.acquire(jobId, fire));
+        assertEquals(fire.format(UTILS.formatter), store.getLastExecution(jobId));
+        assertTrue(store.isCurrent(jobId, token));
+        assertEquals("", store.getLastExecution(other), "a shortened key is unique");
+
+        store.finished(jobId, token, true);
+        assertNull(store.takeInterrupted(jobId));
+        for (String key : new String[]{"", PreferencesExecutionStore.TOKEN_SUFFIX, PreferencesExecutionStore.OWNER_SUFFIX}) {
+            assertTrue(PreferencesExecutionStore.key(jobId, key).length() <= Preferences.MAX_KEY_LENGTH);
+        }
+
+        // a short key is kept, so the registered executions are still found
+        assertEquals("CronJob0 * * ? * * *Backup.token", PreferencesExecutionStore.key("CronJob0 * * ? * * *Backup", ".token"));
+    }
+}
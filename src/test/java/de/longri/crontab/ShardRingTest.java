@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of CrontabScheduler.
+ *
+ * CrontabScheduler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * CrontabScheduler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CrontabScheduler. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.crontab;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardRingTest {
+
+    @Test
+    void spreadAndMove() {
+        ShardRing ring = new ShardRing(List.of("node1", "node2", "node3"));
+        ShardRing smaller = new ShardRing(List.of("node1", "node3"));
+        assertEquals(List.of("node1", "node2", "node3"), List.copyOf(ring.getNodes()));
+
+        HashMap<String, Integer> counts = new HashMap<>();
+        int moved = 0;
+        for (int i = 0; i < 3000; i++) {
+            String owner = ring.getOwner("Job" + i);
+            assertEquals(owner, ring.getOwner("Job" + i), "must be stable");
+            counts.merge(owner, 1, Integer::sum);
+
+            // only the jobs of the removed node move
+            String newOwner = smaller.getOwner("Job" + i);
+            if (!owner.equals(newOwner)) {
+                assertEquals("node2", owner);
+                moved++;
+            }
+        }
+        assertEquals(counts.get("node2"), moved);
+        for (int count : counts.values()) {
+            assertTrue(count > 500, "jobs must be spread over all nodes: " + counts);
+        }
+    }
+
+    @Test
+    void sameOnEveryNode() {
+        // the order of the nodes doesn't matter
+        ShardRing ring1 = new ShardRing(List.of("a", "b", "c"));
+        ShardRing ring2 = new ShardRing(List.of("c", "a", "b", "a"));
+        for (int i = 0; i < 100; i++) {
+            assertEquals(ring1.getOwner("Job" + i), ring2.getOwner("Job" + i));
+        }
+        assertNull(new ShardRing(List.of()).getOwner("Job"));
+    }
+}
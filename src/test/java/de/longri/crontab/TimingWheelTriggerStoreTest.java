@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of CrontabScheduler.
+ *
+ * CrontabScheduler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * CrontabScheduler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CrontabScheduler. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.crontab;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimingWheelTriggerStoreTest {
+
+    @Test
+    void sameOrderAsHeap() throws Exception {
+        Cronjob cronjob = new Cronjob("0 0 12 ? * * *", new Job_Logging("WheelTestJob", "msg"));
+        LocalDateTime start = LocalDateTime.of(2024, 3, 1, 10, 17, 23);
+        long startTime = LocalCronExpression.toDate(start).getTime();
+
+        TimingWheelTriggerStore wheel = new TimingWheelTriggerStore(startTime);
+        HeapTriggerStore heap = new HeapTriggerStore();
+
+        // edges of the wheel levels
+        long[] edges = {-5, 0, 1, 59, 60, 61, 3599, 3600, 3601, 86399, 86400, 86401,
+                365L * 86400 - 1, 365L * 86400, 400L * 86400};
+        ArrayList<Long> offsets = new ArrayList<>();
+        for (long edge : edges) offsets.add(edge);
+        Random random = new Random(42);
+        for (int i = 0; i < 5000; i++) {
+            offsets.add((long) random.nextInt(2 * 365 * 86400));
+        }
+        for (long offset : offsets) {
+            Trigger trigger = new Trigger(cronjob, start.plusSeconds(offset), false);
+            wheel.add(trigger);
+            heap.add(trigger);
+        }
+        assertEquals(heap.size(), wheel.size());
+
+        long now = startTime;
+        while (heap.size() > 0) {
+            // overdue triggers are reported at the current time of the wheel
+            assertTrue(wheel.nextFireTime() <= Math.max(heap.nextFireTime(), now), "wheel must not wake up later than the earliest trigger");
+            now += 1000L * (1 + random.nextInt(6 * 3600));
+
+            ArrayList<Trigger> expected = new ArrayList<>();
+            Trigger trigger;
+            while ((trigger = heap.pollDue(now)) != null) expected.add(trigger);
+            ArrayList<Trigger> actual = new ArrayList<>();
+            while ((trigger = wheel.pollDue(now)) != null) actual.add(trigger);
+
+            expected.sort(Comparator.comparingLong(t -> t.fireTime));
+            actual.sort(Comparator.comparingLong(t -> t.fireTime));
+            assertEquals(expected, actual);
+            assertEquals(heap.size(), wheel.size());
+        }
+        assertEquals(Long.MAX_VALUE, wheel.nextFireTime());
+    }
+
+    @Test
+    void exactSecond() throws Exception {
+        Cronjob cronjob = new Cronjob("0 0 12 ? * * *", new Job_Logging("WheelTestJob", "msg"));
+        LocalDateTime start = LocalDateTime.of(2024, 3, 1, 23, 59, 58);
+        long startTime = LocalCronExpression.toDate(start).getTime();
+
+        TimingWheelTriggerStore wheel = new TimingWheelTriggerStore(startTime);
+        Trigger trigger = new Trigger(cronjob, start.plusHours(2).plusSeconds(5), false);
+        wheel.add(trigger);
+
+        // one second before the execution time the trigger isn't due
+        assertNull(wheel.pollDue(trigger.fireTime - 1000));
+        assertNull(wheel.pollDue(trigger.fireTime - 1));
+        assertEquals(trigger.fireTime, wheel.nextFireTime());
+        assertSame(trigger, wheel.pollDue(trigger.fireTime));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void remove() throws Exception {
+        Cronjob cronjob1 = new Cronjob("0 0 12 ? * * *", new Job_Logging("WheelTestJob1", "msg"));
+        Cronjob cronjob2 = new Cronjob("0 0 12 ? * * *", new Job_Logging("WheelTestJob2", "msg"));
+        LocalDateTime start = LocalDateTime.of(2024, 3, 1, 10, 0, 0);
+        TimingWheelTriggerStore wheel = new TimingWheelTriggerStore(LocalCronExpression.toDate(start).getTime());
+        wheel.add(new Trigger(cronjob1, start.plusSeconds(10), false));
+        wheel.add(new Trigger(cronjob1, start.plusDays(500), true));
+        wheel.add(new Trigger(cronjob2, start.plusHours(3), false));
+        assertEquals(3, wheel.size());
+
+        assertTrue(wheel.remove(cronjob1));
+        assertEquals(1, wheel.size());
+        assertFalse(wheel.remove(cronjob1));
+
+        wheel.clear();
+        assertEquals(0, wheel.size());
+    }
+}
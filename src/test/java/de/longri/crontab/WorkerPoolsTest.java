@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of CrontabScheduler.
+ *
+ * CrontabScheduler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * CrontabScheduler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CrontabScheduler. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.crontab;
+
+import org.ini4j.Ini;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WorkerPoolsTest {
+
+    @Test
+    void poolPerJobType() throws Exception {
+        Ini ini = new Ini();
+        ini.put("pools", "global", 4);
+        ini.put("pools", "COPY", 1);
+        ini.put("pools", "COPY.queue", 2);
+        WorkerPools pools = new WorkerPools(ini.get("pools"));
+
+        Cronjob copy = new Cronjob("0 0 0 ? * * *", new Job_Copy("copy", "-s source -t target"));
+        Cronjob logging = new Cronjob("0 0 0 ? * * *", new Job_Logging("logging", "msg"));
+        assertNotSame(pools.getPool(copy), pools.getPool(logging));
+        assertEquals(1, pools.getPool(copy).getMaximumPoolSize());
+        assertEquals(4, pools.getPool(logging).getMaximumPoolSize());
+
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger running = new AtomicInteger(0);
+        AtomicInteger maxRunning = new AtomicInteger(0);
+        Runnable copyTask = () -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            running.decrementAndGet();
+        };
+
+        // one running and two waiting copy jobs, the next one is rejected
+        pools.submit(copy, copyTask);
+        pools.submit(copy, copyTask);
+        pools.submit(copy, copyTask);
+        assertThrows(RejectedExecutionException.class, () -> pools.submit(copy, copyTask));
+        assertEquals(2, pools.getQueueSize());
+
+        // a logging job doesn't wait behind the copy jobs
+        CountDownLatch logged = new CountDownLatch(1);
+        pools.submit(logging, logged::countDown);
+        assertTrue(logged.await(5, TimeUnit.SECONDS));
+
+        release.countDown();
+        pools.shutdown();
+        assertTrue(pools.getPool(copy).awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(1, maxRunning.get());
+    }
+
+    @Test
+    void unboundedWithoutConfiguration() throws Exception {
+        WorkerPools pools = new WorkerPools(null);
+        Cronjob copy = new Cronjob("0 0 0 ? * * *", new Job_Copy("copy", "-s source -t target"));
+
+        CountDownLatch started = new CountDownLatch(10);
+        CountDownLatch release = new CountDownLatch(1);
+        for (int i = 0; i < 10; i++) {
+            pools.submit(copy, () -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+        }
+        assertTrue(started.await(5, TimeUnit.SECONDS), "all jobs must run at the same time");
+        release.countDown();
+        pools.shutdown();
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2024 Longri
+ *
+ * This file is part of CrontabScheduler.
+ *
+ * CrontabScheduler is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * CrontabScheduler is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with CrontabScheduler. If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.longri.crontab;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneOffsetTransition;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ZoneTableTest {
+
+    private static final String[] ZONES = {"UTC", "Europe/Berlin", "America/New_York", "Australia/Lord_Howe", "Asia/Kolkata", "America/Sao_Paulo"};
+
+    @Test
+    void sameAsZoneRules() {
+        Random random = new Random(7);
+        for (String name : ZONES) {
+            ZoneId zone = ZoneId.of(name);
+            ZoneTable table = ZoneTable.of(zone.getRules());
+            for (int i = 0; i < 20000; i++) {
+                long epochSecond = 1_600_000_000L + random.nextInt(400_000_000);
+                assertEquals(zone.getRules().getOffset(Instant.ofEpochSecond(epochSecond)).getTotalSeconds(),
+                        table.offsetAt(epochSecond), name + " " + epochSecond);
+
+                LocalDateTime local = LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC);
+                assertEquals(toEpochSecond(local, zone), table.toEpochSecond(epochSecond), name + " " + local);
+            }
+        }
+    }
+
+    /**
+     * Like {@link LocalDateTime#atZone(ZoneId)}, but a time in a gap is the end of the gap.
+     */
+    static long toEpochSecond(LocalDateTime local, ZoneId zone) {
+        ZoneOffsetTransition transition = zone.getRules().getTransition(local);
+        if (transition != null && transition.isGap()) return transition.toEpochSecond();
+        return local.atZone(zone).toEpochSecond();
+    }
+
+    @Test
+    void gapAndOverlap() {
+        ZoneId berlin = ZoneId.of("Europe/Berlin");
+        ZoneTable table = ZoneTable.of(berlin);
+        assertSame(table, ZoneTable.of(berlin));
+
+        // alternating zones keep their tables
+        ZoneTable lagos = ZoneTable.of(ZoneId.of("Africa/Lagos").getRules());
+        assertSame(table, ZoneTable.of(berlin.getRules()));
+        assertSame(lagos, ZoneTable.of(ZoneId.of("Africa/Lagos").getRules()));
+
+        // 2030-03-31 02:00 - 02:59 doesn't exist, the clock jumps at 01:00 UTC
+        long jump = Instant.parse("2030-03-31T01:00:00Z").getEpochSecond();
+        assertEquals(jump, table.toEpochSecond(local(2030, 3, 31, 2, 0)));
+        assertEquals(jump, table.toEpochSecond(local(2030, 3, 31, 2, 59)));
+        assertEquals(jump, table.toEpochSecond(local(2030, 3, 31, 3, 0)));
+        assertEquals(jump - 60, table.toEpochSecond(local(2030, 3, 31, 1, 59)));
+
+        // 2030-10-27 02:00 - 02:59 exists twice, the first one with +02:00 counts
+        assertEquals(Instant.parse("2030-10-27T00:30:00Z").getEpochSecond(), table.toEpochSecond(local(2030, 10, 27, 2, 30)));
+        assertEquals(Instant.parse("2030-10-27T02:00:00Z").getEpochSecond(), table.toEpochSecond(local(2030, 10, 27, 3, 0)));
+
+        ZoneOffsetTransition transition = berlin.getRules().nextTransition(Instant.parse("2030-01-01T00:00:00Z"));
+        assertEquals(3600, table.offsetAt(transition.toEpochSecond() - 1));
+        assertEquals(7200, table.offsetAt(transition.toEpochSecond()));
+    }
+
+    private static long local(int year, int month, int day, int hour, int minute) {
+        return LocalDateTime.of(year, month, day, hour, minute).toEpochSecond(ZoneOffset.UTC);
+    }
+}